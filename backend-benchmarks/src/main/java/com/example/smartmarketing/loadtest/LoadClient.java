@@ -0,0 +1,135 @@
+package com.example.smartmarketing.loadtest;
+
+import com.example.smartmarketing.loadtest.LoadStats.Milestone;
+
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * One simulated user: sends an intent per stage and waits for its state_update before sending the next,
+ * driving SEGMENT → EMAIL → JOURNEY → DEPLOYMENT → ANALYTICS for the requested number of loops.
+ */
+final class LoadClient implements WebSocket.Listener {
+
+    private static final String[] INTENTS = {
+            "Target inactive VIP customers who have not purchased in 60 days",
+            "Friendly tone, hero image and a clear call to action",
+            "Send a reminder after three days if the email was not opened",
+            "Start the campaign deployment",
+            "Show me the funnel and where we lose people"
+    };
+
+    private final LoadStats stats;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private final StringBuilder partial = new StringBuilder();
+    private int loopsLeft;
+    private int stage;
+    private long sentAt;
+    private boolean sawStageStart;
+    private boolean sawThinking;
+
+    LoadClient(LoadStats stats, int loops) {
+        this.stats = stats;
+        this.loopsLeft = loops;
+    }
+
+    CompletableFuture<Void> done() {
+        return done;
+    }
+
+    @Override
+    public void onOpen(WebSocket webSocket) {
+        webSocket.request(1);
+        sendIntent(webSocket);
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        partial.append(data);
+        if (last) {
+            String frame = partial.toString();
+            partial.setLength(0);
+            onFrame(webSocket, frame);
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        if (!done.isDone()) {
+            fail("closed_" + statusCode);
+        }
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        fail("socket_error");
+    }
+
+    void fail(String kind) {
+        if (done.complete(null)) {
+            stats.error(kind);
+        }
+    }
+
+    private void onFrame(WebSocket webSocket, String frame) {
+        if (done.isDone()) {
+            return;
+        }
+        long elapsed = System.nanoTime() - sentAt;
+        // Frames start with their type, so a prefix check avoids parsing every frame
+        if (frame.startsWith("{\"type\":\"stage_start\"")) {
+            if (!sawStageStart) {
+                sawStageStart = true;
+                stats.record(Milestone.STAGE_START, stage, elapsed);
+            }
+        } else if (frame.startsWith("{\"type\":\"thinking\"")) {
+            if (!sawThinking) {
+                sawThinking = true;
+                stats.record(Milestone.FIRST_THINKING, stage, elapsed);
+            }
+        } else if (frame.startsWith("{\"type\":\"state_update\"")) {
+            stats.record(Milestone.STATE_UPDATE, stage, elapsed);
+            stats.stageCompleted();
+            advance(webSocket);
+        } else if (frame.startsWith("{\"type\":\"busy\"")) {
+            fail("busy");
+            webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "busy");
+        }
+    }
+
+    private void advance(WebSocket webSocket) {
+        stage++;
+        if (stage == LoadStats.STAGES.length) {
+            stage = 0;
+            stats.loopCompleted();
+            if (--loopsLeft == 0) {
+                done.complete(null);
+                webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "done");
+                return;
+            }
+        }
+        sendIntent(webSocket);
+    }
+
+    private void sendIntent(WebSocket webSocket) {
+        sawStageStart = false;
+        sawThinking = false;
+        sentAt = System.nanoTime();
+        webSocket.sendText("{\"type\":\"intent\",\"intent\":\"" + INTENTS[stage] + "\"}", true)
+                .exceptionally(error -> {
+                    fail("send_failed");
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.smartmarketing.loadtest;
+
+import com.example.smartmarketing.SmartMarketingApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Opens many concurrent WebSocket clients against {@code /ws/assistant}, each driving the full
+ * SEGMENT → EMAIL → JOURNEY → DEPLOYMENT → ANALYTICS loop, and prints per-stage latency percentiles.
+ * <p>
+ * Without {@code --url} the backend is started in this JVM on a random port with
+ * {@code assistant.timeline.zero-delay=true}, so the numbers reflect the server rather than the pacing
+ * in thinking-steps.json. Run it from the repository root with:
+ *
+ * <pre>
+ * mvn -Pbenchmarks -pl backend-benchmarks -am verify \
+ *   -Dbenchmarks.main=com.example.smartmarketing.loadtest.LoadGenerator -Dbenchmarks.args="--clients 1000"
+ * </pre>
+ *
+ * Options: {@code --clients N} (1000), {@code --loops N} (1), {@code --connect-rate N} connections per second (500),
+ * {@code --recipients N} per deployment (100), {@code --timeout-seconds N} (300) and {@code --url ws://...}.
+ * Any other {@code --key=value} argument is passed on to the in-process application,
+ * e.g. {@code --assistant.executor.max-concurrency=400}.
+ */
+public final class LoadGenerator {
+
+    private static final String ORIGIN = "http://localhost:5173";
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = 1000;
+        int loops = 1;
+        int connectRate = 500;
+        int recipients = 100;
+        long timeoutSeconds = 300;
+        String url = null;
+        List<String> appArgs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--clients" -> clients = Integer.parseInt(args[++i]);
+                case "--loops" -> loops = Integer.parseInt(args[++i]);
+                case "--connect-rate" -> connectRate = Integer.parseInt(args[++i]);
+                case "--recipients" -> recipients = Integer.parseInt(args[++i]);
+                case "--timeout-seconds" -> timeoutSeconds = Long.parseLong(args[++i]);
+                case "--url" -> url = args[++i];
+                default -> {
+                    if (!args[i].startsWith("--") || !args[i].contains("=")) {
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                    }
+                    appArgs.add(args[i]);
+                }
+            }
+        }
+
+        ConfigurableApplicationContext app = null;
+        if (url == null) {
+            app = startApplication(recipients, appArgs);
+            url = "ws://localhost:" + app.getEnvironment().getProperty("local.server.port") + "/ws/assistant";
+        }
+
+        try {
+            run(URI.create(url), clients, loops, connectRate, timeoutSeconds);
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+        }
+    }
+
+    private static void run(URI uri, int clients, int loops, int connectRate, long timeoutSeconds)
+            throws InterruptedException {
+        System.out.printf("Driving %d clients x %d loops against %s%n", clients, loops, uri);
+        LoadStats stats = new LoadStats();
+        HttpClient http = HttpClient.newHttpClient();
+        List<LoadClient> started = new ArrayList<>(clients);
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, connectRate);
+        long start = System.nanoTime();
+
+        for (int i = 0; i < clients; i++) {
+            // Spread connections evenly so the handshake burst does not dominate the first stage
+            long due = start + i * intervalNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            LoadClient client = new LoadClient(stats, loops);
+            started.add(client);
+            http.newWebSocketBuilder()
+                    .header("Origin", ORIGIN)
+                    .buildAsync(uri, client)
+                    .exceptionally(error -> {
+                        client.fail("connect_failed");
+                        return null;
+                    });
+        }
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(
+                started.stream().map(LoadClient::done).toArray(CompletableFuture[]::new));
+        try {
+            all.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            started.forEach(client -> client.fail("timeout"));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        stats.print(System.out, clients, System.nanoTime() - start);
+    }
+
+    /**
+     * Start the backend on a random port, without pacing, and with deployments sized to {@code recipients}
+     * so the DEPLOYMENT stage does not dominate the run.
+     */
+    private static ConfigurableApplicationContext startApplication(int recipients, List<String> appArgs)
+            throws IOException {
+        Path dataDir = Files.createTempDirectory("smart-marketing-load");
+        dataDir.toFile().deleteOnExit();
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode deployment;
+        try (InputStream in = new ClassPathResource("data/deployment-config.json").getInputStream()) {
+            deployment = (ObjectNode) mapper.readTree(in);
+        }
+        deployment.put("totalRecipients", recipients);
+        Path deploymentFile = dataDir.resolve("deployment-config.json");
+        mapper.writeValue(deploymentFile.toFile(), deployment);
+        deploymentFile.toFile().deleteOnExit();
+
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--assistant.timeline.zero-delay=true",
+                "--assistant.data.watch=false",
+                "--assistant.data.external-dir=" + dataDir.toAbsolutePath()));
+        args.addAll(appArgs);
+        return SpringApplication.run(SmartMarketingApplication.class, args.toArray(String[]::new));
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.smartmarketing.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms per stage and milestone, plus throughput and error counters, shared by all clients.
+ * Latencies are recorded in microseconds from the moment the intent was sent.
+ */
+final class LoadStats {
+
+    /** Milestones of one stage, in the order a client observes them. */
+    enum Milestone {
+        STAGE_START("time to stage_start"),
+        FIRST_THINKING("time to first thinking"),
+        STATE_UPDATE("time to state_update");
+
+        final String label;
+
+        Milestone(String label) {
+            this.label = label;
+        }
+    }
+
+    static final String[] STAGES = {"segment", "email", "journey", "deployment", "analytics"};
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final Histogram[][] latencies = new Histogram[Milestone.values().length][STAGES.length];
+    private final LongAdder completedStages = new LongAdder();
+    private final LongAdder completedLoops = new LongAdder();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    LoadStats() {
+        for (Histogram[] perStage : latencies) {
+            for (int s = 0; s < perStage.length; s++) {
+                perStage[s] = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+            }
+        }
+    }
+
+    void record(Milestone milestone, int stage, long elapsedNanos) {
+        long micros = Math.min(HIGHEST_TRACKABLE_MICROS, TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+        latencies[milestone.ordinal()][stage].recordValue(micros);
+    }
+
+    void stageCompleted() {
+        completedStages.increment();
+    }
+
+    void loopCompleted() {
+        completedLoops.increment();
+    }
+
+    void error(String kind) {
+        errors.computeIfAbsent(kind, k -> new LongAdder()).increment();
+    }
+
+    long completedStages() {
+        return completedStages.sum();
+    }
+
+    long errorCount() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    void print(PrintStream out, int clients, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        out.printf("%nClients: %d   elapsed: %.1f s%n", clients, seconds);
+        out.printf("Loops completed: %d   stages completed: %d (%.1f stages/s)%n",
+                completedLoops.sum(), completedStages.sum(), completedStages.sum() / seconds);
+        Map<String, Long> sortedErrors = new TreeMap<>();
+        errors.forEach((kind, count) -> sortedErrors.put(kind, count.sum()));
+        out.printf("Errors: %d %s%n", errorCount(), sortedErrors.isEmpty() ? "" : sortedErrors);
+
+        for (Milestone milestone : Milestone.values()) {
+            out.printf("%n%s (ms)%n", milestone.label);
+            out.printf("  %-11s %8s %9s %9s %9s %9s %9s%n", "stage", "count", "p50", "p90", "p99", "p99.9", "max");
+            for (int s = 0; s < STAGES.length; s++) {
+                Histogram h = latencies[milestone.ordinal()][s];
+                out.printf("  %-11s %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n", STAGES[s], h.getTotalCount(),
+                        millis(h.getValueAtPercentile(50)), millis(h.getValueAtPercentile(90)),
+                        millis(h.getValueAtPercentile(99)), millis(h.getValueAtPercentile(99.9)),
+                        millis(h.getMaxValue()));
+            }
+        }
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.smartmarketing.segment;
+
+import com.example.smartmarketing.config.CustomerStoreProperties;
+import com.example.smartmarketing.config.SegmentProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top-K lead selection with partitioned bounded heaps against sorting every member, on a segment
+ * containing the whole customer base.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class LeadRankerBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    @Param({"10", "100"})
+    public int k;
+
+    private CustomerStore store;
+    private LeadRanker ranker;
+    private Bitmap members;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = new CustomerStore(new CustomerStoreProperties(rows, 42));
+        ranker = new LeadRanker(store, new SegmentProperties(k, LeadTieBreak.CUSTOMER_ID, 500, 4));
+        members = Bitmap.full(rows);
+    }
+
+    @Benchmark
+    public int[] topK() {
+        return ranker.top(members, k, LeadTieBreak.CUSTOMER_ID);
+    }
+
+    @Benchmark
+    public int[] fullSort() {
+        // Same packed key as LeadRanker with the CUSTOMER_ID tie-break, sorted in full
+        long[] keys = new long[members.cardinality()];
+        int n = 0;
+        for (int customer = members.nextSetBit(0); customer >= 0; customer = members.nextSetBit(customer + 1)) {
+            keys[n++] = ((long) store.score(customer) << 48) | (Integer.MAX_VALUE - customer);
+        }
+        Arrays.sort(keys);
+        int[] top = new int[Math.min(k, n)];
+        for (int i = 0; i < top.length; i++) {
+            top[i] = Integer.MAX_VALUE - (int) (keys[n - 1 - i] & 0x7FFF_FFFFL);
+        }
+        return top;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.smartmarketing.segment;
+
+import com.example.smartmarketing.config.CustomerStoreProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluating the demo segment (Gold/Platinum, inactive over 60 days, opted in, engagement 30-65).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SegmentEvaluatorBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    private SegmentEvaluator evaluator;
+    private final SegmentFilter filter = new SegmentFilter(
+            Set.of(LoyaltyTier.GOLD, LoyaltyTier.PLATINUM), 60, true, 30, 65);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        evaluator = new SegmentEvaluator(new CustomerStore(new CustomerStoreProperties(rows, 42)));
+    }
+
+    @Benchmark
+    public SegmentMatch evaluate() {
+        return evaluator.evaluate(filter);
+    }
+}
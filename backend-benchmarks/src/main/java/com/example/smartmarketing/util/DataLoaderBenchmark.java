@@ -0,0 +1,65 @@
+package com.example.smartmarketing.util;
+
+import com.example.smartmarketing.config.DataProperties;
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading data files directly ({@link DataLoader#loadJson}) against reading the parsed snapshot,
+ * which is what request handling does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataLoaderBenchmark {
+
+    @Param({"segment-data.json", "analytics-data.json", "thinking-steps.json"})
+    public String file;
+
+    private DataLoader dataLoader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataLoader = new DataLoader(new DataProperties("", false, 250), new AssistantMetrics(new SimpleMeterRegistry()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        dataLoader.close();
+    }
+
+    @Benchmark
+    public JsonNode loadJson() {
+        return dataLoader.loadJson(file);
+    }
+
+    @Benchmark
+    public List<DataSnapshot.ThinkingStep> loadThinkingSteps() {
+        return dataLoader.loadThinkingSteps("analytics");
+    }
+
+    @Benchmark
+    public DataSnapshot snapshot() {
+        return dataLoader.snapshot();
+    }
+}
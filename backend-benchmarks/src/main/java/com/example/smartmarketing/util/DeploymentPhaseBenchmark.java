@@ -0,0 +1,48 @@
+package com.example.smartmarketing.util;
+
+import com.example.smartmarketing.config.DataProperties;
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phase lookup for deployment progress frames ({@link DataSnapshot.DeploymentConfig#phaseFor(int)},
+ * formerly the handler's getDeploymentPhase), over every progress value from 0 to 100.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeploymentPhaseBenchmark {
+
+    private DataSnapshot.DeploymentConfig config;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        DataLoader dataLoader = new DataLoader(new DataProperties("", false, 250), new AssistantMetrics(new SimpleMeterRegistry()));
+        config = dataLoader.snapshot().deployment();
+        dataLoader.close();
+    }
+
+    @Benchmark
+    public void phaseForEveryProgress(Blackhole blackhole) {
+        for (int progress = 0; progress <= 100; progress++) {
+            blackhole.consume(config.phaseFor(progress));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.smartmarketing.ws;
+
+import com.example.smartmarketing.analytics.FunnelAnalyticsEngine;
+import com.example.smartmarketing.analytics.FunnelWindow;
+import com.example.smartmarketing.config.AdmissionProperties;
+import com.example.smartmarketing.config.AnalyticsProperties;
+import com.example.smartmarketing.config.CompressionProperties;
+import com.example.smartmarketing.config.ConversationExecutorProperties;
+import com.example.smartmarketing.config.CustomerStoreProperties;
+import com.example.smartmarketing.config.DataProperties;
+import com.example.smartmarketing.config.DeploymentProperties;
+import com.example.smartmarketing.config.OutboundProperties;
+import com.example.smartmarketing.config.ReplayProperties;
+import com.example.smartmarketing.config.ResultCacheProperties;
+import com.example.smartmarketing.config.SegmentProperties;
+import com.example.smartmarketing.config.StateStoreProperties;
+import com.example.smartmarketing.config.TimelineProperties;
+import com.example.smartmarketing.deploy.DeploymentPipeline;
+import com.example.smartmarketing.deploy.SimulatedDeliverySink;
+import com.example.smartmarketing.exec.AdmissionController;
+import com.example.smartmarketing.exec.ConversationExecutor;
+import com.example.smartmarketing.exec.TimelineScheduler;
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import com.example.smartmarketing.segment.CustomerStore;
+import com.example.smartmarketing.segment.LeadRanker;
+import com.example.smartmarketing.segment.LeadTieBreak;
+import com.example.smartmarketing.segment.SegmentEvaluator;
+import com.example.smartmarketing.state.ConversationStateCache;
+import com.example.smartmarketing.state.InMemoryConversationStateStore;
+import com.example.smartmarketing.util.DataLoader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The handler and its collaborators wired by hand with the application defaults, minus Spring.
+ * The customer store is kept small so setup stays fast; segment benchmarks size their own.
+ */
+final class AssistantFixture implements AutoCloseable {
+
+    final DataLoader dataLoader;
+    final ConversationExecutor executor;
+    final TimelineScheduler scheduler;
+    final FunnelAnalyticsEngine analytics;
+    final MarketingAssistantHandler handler;
+
+    AssistantFixture() throws IOException {
+        AssistantMetrics metrics = new AssistantMetrics(new SimpleMeterRegistry());
+        this.dataLoader = new DataLoader(new DataProperties("", false, 250), metrics);
+        this.executor = new ConversationExecutor(new ConversationExecutorProperties(
+                ConversationExecutorProperties.Mode.AUTO, 200, 1000));
+        this.scheduler = new TimelineScheduler(new TimelineProperties(1, false), executor);
+        DeploymentPipeline pipeline = new DeploymentPipeline(
+                new SimulatedDeliverySink(dataLoader, new DeploymentProperties("simulated", 4, 0.05)),
+                scheduler, new DeploymentProperties("simulated", 4, 0.05));
+        CustomerStore store = new CustomerStore(new CustomerStoreProperties(100_000, 42));
+        this.analytics = new FunnelAnalyticsEngine(new AnalyticsProperties(1000, FunnelWindow.HOUR, 10_000));
+        StateStoreProperties stateStore = new StateStoreProperties("memory", "conversations", 2, 100_000, 2_000, 10_000);
+        ConversationStateCache conversations = new ConversationStateCache(
+                new InMemoryConversationStateStore(stateStore), stateStore, metrics);
+        SegmentProperties segment = new SegmentProperties(10, LeadTieBreak.CUSTOMER_ID, 500, 4);
+        AdmissionController admission = new AdmissionController(
+                new AdmissionProperties(true, 10_000, 1_000, 50, 500, 2_000, 2_000, true, 1.5), scheduler, metrics);
+        this.handler = new MarketingAssistantHandler(dataLoader, executor, scheduler, pipeline,
+                new SegmentEvaluator(store), new LeadRanker(store, segment),
+                analytics, metrics, new OutboundProperties(10_000, 524_288, List.of("deployment_progress")),
+                new CompressionProperties(true, 1024, 6), conversations,
+                new ReplayProperties(512, 262_144, 30_000), new ResultCacheProperties(true, 4_194_304, 300_000, true),
+                segment, admission);
+    }
+
+    @Override
+    public void close() throws IOException, InterruptedException {
+        handler.shutdown();
+        analytics.shutdown();
+        scheduler.shutdown();
+        executor.shutdown();
+        dataLoader.close();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.smartmarketing.ws;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inbound frame handling up to the point where a stage would be scheduled: JSON parsing, type dispatch
+ * and the pre-encoded reply for ping.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandleTextMessageBenchmark {
+
+    private final TextMessage ping = new TextMessage("{\"type\":\"ping\"}");
+    private final TextMessage unknownType = new TextMessage("{\"type\":\"typing\",\"intent\":\"Target inactive VIP customers\"}");
+    private final TextMessage emptyIntent = new TextMessage("{\"type\":\"intent\",\"intent\":\"\"}");
+
+    private AssistantFixture fixture;
+    private StubWebSocketSession session;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = new AssistantFixture();
+        session = new StubWebSocketSession();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Benchmark
+    public Object ping() throws Exception {
+        fixture.handler.handleTextMessage(session, ping);
+        return session.lastMessage();
+    }
+
+    @Benchmark
+    public Object ignoredType() throws Exception {
+        fixture.handler.handleTextMessage(session, unknownType);
+        return session.lastMessage();
+    }
+
+    @Benchmark
+    public Object emptyIntent() throws Exception {
+        fixture.handler.handleTextMessage(session, emptyIntent);
+        return session.lastMessage();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.smartmarketing.ws;
+
+import com.example.smartmarketing.util.DataSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-stage result builders of {@link MarketingAssistantHandler.MockStateFactory}.
+ * The segment builder includes evaluating the segment over the fixture's 100K customers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateFactoryBenchmark {
+
+    private AssistantFixture fixture;
+    private MarketingAssistantHandler.MockStateFactory factory;
+    private DataSnapshot data;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = new AssistantFixture();
+        factory = fixture.handler.stateFactory();
+        data = fixture.dataLoader.snapshot();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Benchmark
+    public MockStateUpdate segment() {
+        return factory.segmentFromIntent(data, "Target inactive VIP customers");
+    }
+
+    @Benchmark
+    public MockStateUpdate email() {
+        return factory.emailFromIntent(data, "Friendly tone with a clear CTA");
+    }
+
+    @Benchmark
+    public MockStateUpdate journey() {
+        return factory.journeyFromIntent(data, "Add a reminder after three days");
+    }
+
+    @Benchmark
+    public MockStateUpdate analytics() {
+        return factory.analyticsFromIntent(data, "Show me the funnel");
+    }
+
+    @Benchmark
+    public Object deploymentRecipients() {
+        return factory.deploymentRecipients(data);
+    }
+}
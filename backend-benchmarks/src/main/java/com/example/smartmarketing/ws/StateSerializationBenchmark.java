@@ -0,0 +1,72 @@
+package com.example.smartmarketing.ws;
+
+import com.example.smartmarketing.util.DataSnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * state_update encoding: the Jackson tree built by {@link MockStateUpdate#toStateNode(ObjectMapper)}
+ * against the streaming {@link StateFrameWriter}. Run with {@code -prof gc} to compare bytes per frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateSerializationBenchmark {
+
+    @Param({"segment", "email", "analytics"})
+    public String stage;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final StateFrameWriter writer = new StateFrameWriter(mapper);
+    private AssistantFixture fixture;
+    private MockStateUpdate update;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = new AssistantFixture();
+        DataSnapshot data = fixture.dataLoader.snapshot();
+        MarketingAssistantHandler.MockStateFactory factory = fixture.handler.stateFactory();
+        update = switch (stage) {
+            case "segment" -> factory.segmentFromIntent(data, "Target inactive VIP customers");
+            case "email" -> factory.emailFromIntent(data, "Friendly tone with a clear CTA");
+            case "analytics" -> factory.analyticsFromIntent(data, "Show me the funnel");
+            default -> throw new IllegalArgumentException(stage);
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Benchmark
+    public TextMessage treeToString() {
+        var root = mapper.createObjectNode();
+        root.put("type", "state_update");
+        root.set("state", update.toStateNode(mapper));
+        return new TextMessage(root.toString());
+    }
+
+    @Benchmark
+    public TextMessage streamingWriter() {
+        return writer.stateUpdate(update);
+    }
+}
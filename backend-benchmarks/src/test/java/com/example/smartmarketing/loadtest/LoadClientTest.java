@@ -0,0 +1,102 @@
+package com.example.smartmarketing.loadtest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LoadClientTest {
+
+    private final LoadStats stats = new LoadStats();
+    private WebSocket webSocket;
+
+    @BeforeEach
+    void setUp() {
+        webSocket = mock(WebSocket.class);
+        when(webSocket.sendText(anyString(), anyBoolean())).thenReturn(CompletableFuture.completedFuture(webSocket));
+        when(webSocket.sendClose(anyInt(), anyString())).thenReturn(CompletableFuture.completedFuture(webSocket));
+    }
+
+    @Test
+    void clientDrivesEveryStageAndClosesAfterItsLoops() {
+        LoadClient client = new LoadClient(stats, 2);
+        client.onOpen(webSocket);
+
+        for (int i = 0; i < 2 * LoadStats.STAGES.length; i++) {
+            assertFalse(client.done().isDone());
+            frame(client, "{\"type\":\"stage_start\",\"stage\":\"x\"}");
+            frame(client, "{\"type\":\"thinking\",\"step\":\"one\"}");
+            frame(client, "{\"type\":\"thinking\",\"step\":\"two\"}");
+            frame(client, "{\"type\":\"state_update\",\"state\":{}}");
+        }
+
+        assertTrue(client.done().isDone());
+        assertEquals(2 * LoadStats.STAGES.length, stats.completedStages());
+        assertEquals(0, stats.errorCount());
+        // One intent per stage, starting with the segment intent on open
+        verify(webSocket, times(2 * LoadStats.STAGES.length)).sendText(contains("\"type\":\"intent\""), eq(true));
+        verify(webSocket).sendClose(WebSocket.NORMAL_CLOSURE, "done");
+
+        // Only the first thinking frame of a stage is timed
+        String report = report();
+        assertTrue(report.contains("Loops completed: 2"), report);
+        for (String stage : LoadStats.STAGES) {
+            assertTrue(report.matches("(?s).*time to first thinking.*\\n  " + stage + " +2 .*"), report);
+        }
+    }
+
+    @Test
+    void fragmentedFramesAreReassembled() {
+        LoadClient client = new LoadClient(stats, 1);
+        client.onOpen(webSocket);
+
+        client.onText(webSocket, "{\"type\":\"state_", false);
+        assertEquals(0, stats.completedStages());
+        client.onText(webSocket, "update\",\"state\":{}}", true);
+        assertEquals(1, stats.completedStages());
+    }
+
+    @Test
+    void busyAndUnexpectedClosesCountOneErrorEach() {
+        LoadClient busy = new LoadClient(stats, 1);
+        busy.onOpen(webSocket);
+        frame(busy, "{\"type\":\"busy\",\"retryAfterMs\":500}");
+        busy.onClose(webSocket, WebSocket.NORMAL_CLOSURE, "busy");
+
+        LoadClient dropped = new LoadClient(stats, 1);
+        dropped.onOpen(webSocket);
+        dropped.onClose(webSocket, 1011, "");
+
+        assertTrue(busy.done().isDone());
+        assertTrue(dropped.done().isDone());
+        assertEquals(2, stats.errorCount());
+        assertTrue(report().contains("{busy=1, closed_1011=1}"), report());
+    }
+
+    private void frame(LoadClient client, String frame) {
+        client.onText(webSocket, frame, true);
+    }
+
+    private String report() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        stats.print(new PrintStream(out, true, StandardCharsets.UTF_8), 1, 1_000_000_000L);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
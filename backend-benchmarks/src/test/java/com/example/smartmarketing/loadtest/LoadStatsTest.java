@@ -0,0 +1,80 @@
+package com.example.smartmarketing.loadtest;
+
+import com.example.smartmarketing.loadtest.LoadStats.Milestone;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoadStatsTest {
+
+    private final LoadStats stats = new LoadStats();
+
+    @Test
+    void percentilesAreReportedPerStageAndMilestone() {
+        // 1..1000 ms to state_update for the email stage; nothing for the others
+        for (int millis = 1; millis <= 1_000; millis++) {
+            stats.record(Milestone.STATE_UPDATE, 1, TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+        stats.record(Milestone.STAGE_START, 0, TimeUnit.MILLISECONDS.toNanos(3));
+
+        String[] email = row(print(), Milestone.STATE_UPDATE, "email");
+        assertEquals("1000", email[1]);
+        assertEquals(500, Double.parseDouble(email[2]), 1);
+        assertEquals(900, Double.parseDouble(email[3]), 1);
+        assertEquals(990, Double.parseDouble(email[4]), 1);
+        assertEquals(1_000, Double.parseDouble(email[6]), 1);
+
+        assertEquals("0", row(print(), Milestone.STATE_UPDATE, "segment")[1]);
+        assertEquals(3, Double.parseDouble(row(print(), Milestone.STAGE_START, "segment")[6]), 0.01);
+    }
+
+    @Test
+    void latenciesBeyondTheTrackableRangeAreClamped() {
+        stats.record(Milestone.STATE_UPDATE, 0, TimeUnit.HOURS.toNanos(1));
+
+        double max = Double.parseDouble(row(print(), Milestone.STATE_UPDATE, "segment")[6]);
+        assertEquals(TimeUnit.MINUTES.toMillis(10), max, TimeUnit.MINUTES.toMillis(10) / 1_000.0);
+    }
+
+    @Test
+    void countersAndErrorsAreSummed() {
+        stats.stageCompleted();
+        stats.stageCompleted();
+        stats.loopCompleted();
+        stats.error("busy");
+        stats.error("busy");
+        stats.error("socket_error");
+
+        assertEquals(2, stats.completedStages());
+        assertEquals(3, stats.errorCount());
+        String report = print();
+        assertTrue(report.contains("Loops completed: 1   stages completed: 2"), report);
+        assertTrue(report.contains("Errors: 3 {busy=2, socket_error=1}"), report);
+    }
+
+    private String print() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        stats.print(new PrintStream(out, true, StandardCharsets.UTF_8), 1, TimeUnit.SECONDS.toNanos(1));
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Columns of one stage's row under a milestone: stage, count, p50, p90, p99, p99.9, max.
+     */
+    private static String[] row(String report, Milestone milestone, String stage) {
+        String section = report.substring(report.indexOf(milestone.label + " (ms)"));
+        for (String line : section.split("\n")) {
+            String[] columns = line.trim().split("\\s+");
+            if (columns[0].equals(stage)) {
+                return columns;
+            }
+        }
+        throw new AssertionError("No row for " + stage + " in\n" + report);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.smartmarketing.ws;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HandleTextMessageBenchmarkTest {
+
+    private final HandleTextMessageBenchmark benchmark = new HandleTextMessageBenchmark();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        benchmark.setUp();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        benchmark.tearDown();
+    }
+
+    @Test
+    void pingIsAnsweredOnTheStubSession() throws Exception {
+        TextMessage reply = assertInstanceOf(TextMessage.class, benchmark.ping());
+        assertTrue(reply.getPayload().contains("Backend is ready."), reply.getPayload());
+    }
+
+    @Test
+    void ignoredFramesRunWithoutAReply() throws Exception {
+        // Both only parse and dispatch, so the last frame is still the reply to the ping
+        Object ready = benchmark.ping();
+        benchmark.ignoredType();
+        benchmark.emptyIntent();
+        assertSame(ready, benchmark.ignoredType());
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.smartmarketing.ws;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StateSerializationBenchmarkTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    void bothEncodingsProduceTheSameDocumentForEveryStage() throws Exception {
+        // Otherwise the suite compares two different amounts of work
+        for (String stage : new String[] {"segment", "email", "analytics"}) {
+            StateSerializationBenchmark benchmark = new StateSerializationBenchmark();
+            benchmark.stage = stage;
+            benchmark.setUp();
+            try {
+                assertEquals(MAPPER.readTree(benchmark.treeToString().getPayload()),
+                        MAPPER.readTree(benchmark.streamingWriter().getPayload()), stage);
+            } finally {
+                benchmark.tearDown();
+            }
+        }
+    }
+}
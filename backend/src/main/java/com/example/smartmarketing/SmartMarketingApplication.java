@@ -2,12 +2,14 @@ package com.example.smartmarketing;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 /**
  * Entry point for the Smart Marketing POC backend.
  * This Boot application exposes a WebSocket endpoint that the React frontend can connect to.
  */
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class SmartMarketingApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,129 @@
+package com.example.smartmarketing.analytics;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
+
+/**
+ * Event ingestion and funnel read-out for campaigns.
+ * <p>
+ * {@code POST /api/analytics/campaigns/{campaignId}/events} takes a batch such as
+ * {@code [{"type": "impression", "count": 500}, {"type": "click"}]}; {@code count} defaults to 1,
+ * so high-volume producers should pre-aggregate instead of posting one request per event. A batch is
+ * acknowledged, and counted, once the {@link FunnelEventLog} made it durable. Campaign ids are up to 64
+ * letters, digits, dots, dashes and underscores; a new one is refused once the engine keeps its maximum.
+ */
+@RestController
+@RequestMapping("/api/analytics")
+public class AnalyticsController {
+
+    /**
+     * One entry of an ingestion batch.
+     *
+     * @param type  event type, e.g. {@code impression}, {@code click}, {@code landing_view}
+     * @param count number of events of this type; 1 when omitted
+     */
+    public record EventBatch(String type, Long count) {
+    }
+
+    private static final Pattern CAMPAIGN_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    private final FunnelAnalyticsEngine engine;
+    private final FunnelEventLog eventLog;
+
+    public AnalyticsController(FunnelAnalyticsEngine engine, FunnelEventLog eventLog) {
+        this.engine = engine;
+        this.eventLog = eventLog;
+    }
+
+    @PostMapping("/campaigns/{campaignId}/events")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public CompletableFuture<Map<String, Long>> ingest(@PathVariable String campaignId,
+                                                       @RequestBody List<EventBatch> batches) {
+        if (!CAMPAIGN_ID.matcher(campaignId).matches()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid campaign id");
+        }
+        // Validate the whole batch first so a bad entry does not leave it half applied
+        FunnelEvent[] events = new FunnelEvent[batches.size()];
+        long[] counts = new long[batches.size()];
+        for (int i = 0; i < events.length; i++) {
+            EventBatch batch = batches.get(i);
+            try {
+                events[i] = FunnelEvent.fromWire(batch.type());
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+            }
+            if (batch.count() != null && batch.count() < 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Event count must not be negative");
+            }
+            counts[i] = batch.count() != null ? batch.count() : 1;
+        }
+        if (!engine.admit(campaignId)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Too many campaigns");
+        }
+
+        return eventLog.append(campaignId, events, counts).thenApply(durable -> {
+            long accepted = 0;
+            for (int i = 0; i < events.length; i++) {
+                engine.record(campaignId, events[i], counts[i]);
+                accepted += counts[i];
+            }
+            return Map.of("accepted", accepted);
+        });
+    }
+
+    /**
+     * Stage rate changes and the worst-declining transition over a sliding window
+     * ({@code minute}, {@code hour} or {@code day}).
+     */
+    @GetMapping("/campaigns/{campaignId}/trend")
+    public Map<String, Object> trend(@PathVariable String campaignId,
+                                     @RequestParam(defaultValue = "hour") String window) {
+        FunnelWindow funnelWindow;
+        try {
+            funnelWindow = FunnelWindow.valueOf(window.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown window: " + window);
+        }
+        FunnelTrend trend = engine.trend(campaignId, funnelWindow);
+        Map<String, Double> changes = new LinkedHashMap<>();
+        for (FunnelEvent event : FunnelEvent.values()) {
+            changes.put(event.wireName(), trend.change(event));
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("window", funnelWindow.label());
+        body.put("changes", changes);
+        if (trend.bottleneck() != null) {
+            body.put("bottleneck", Map.of(
+                    "from", trend.bottleneckFrom().wireName(),
+                    "to", trend.bottleneck().wireName(),
+                    "dropoffRate", trend.dropoffRate(),
+                    "previousDropoffRate", trend.previousDropoff()));
+        }
+        return body;
+    }
+
+    @GetMapping("/campaigns/{campaignId}/funnel")
+    public Map<String, Long> funnel(@PathVariable String campaignId) {
+        FunnelCounts counts = engine.counts(campaignId);
+        Map<String, Long> stages = new LinkedHashMap<>();
+        for (FunnelEvent event : FunnelEvent.values()) {
+            stages.put(event.wireName(), counts.count(event));
+        }
+        return stages;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.smartmarketing.analytics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live funnel counters of one campaign. Each stage is a {@link LongAdder}, so concurrent
+ * ingestion threads update separate cells instead of contending on one word.
+ * <p>
+ * The sliding windows are fed by {@link #tick()}, which turns the growth of the counters since the
+ * previous tick into one window increment; ingestion itself never touches them. Totals restored from the
+ * event log count towards {@link #counts()} but not the windows, so a restart does not show as a spike.
+ */
+final class CampaignFunnel {
+
+    private final LongAdder[] counters = new LongAdder[FunnelEvent.count()];
+    private final LongAdder[] restored = new LongAdder[FunnelEvent.count()];
+    private final SlidingWindow[] windows;
+    private long[] lastSampled = new long[FunnelEvent.count()];   // tick thread only
+
+    CampaignFunnel(long tickMillis) {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+            restored[i] = new LongAdder();
+        }
+        FunnelWindow[] kinds = FunnelWindow.values();
+        this.windows = new SlidingWindow[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            windows[i] = new SlidingWindow(kinds[i], tickMillis);
+        }
+    }
+
+    void add(FunnelEvent event, long count) {
+        counters[event.ordinal()].add(count);
+    }
+
+    void restore(long[] counts) {
+        for (int i = 0; i < restored.length; i++) {
+            restored[i].add(counts[i]);
+        }
+    }
+
+    /**
+     * Point-in-time totals. Not atomic across stages: events recorded while sampling may be
+     * counted in one stage and not yet in the next.
+     */
+    long[] counts() {
+        long[] counts = new long[counters.length];
+        for (int i = 0; i < counters.length; i++) {
+            counts[i] = counters[i].sum() + restored[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * Advance every window by the counts recorded since the previous tick. Called from a single thread.
+     */
+    void tick() {
+        long[] sampled = new long[counters.length];
+        for (int i = 0; i < counters.length; i++) {
+            sampled[i] = counters[i].sum();
+        }
+        long[] delta = new long[sampled.length];
+        for (int i = 0; i < sampled.length; i++) {
+            delta[i] = sampled[i] - lastSampled[i];
+        }
+        lastSampled = sampled;
+        for (SlidingWindow window : windows) {
+            window.tick(delta);
+        }
+    }
+
+    FunnelTrend trend(FunnelWindow window) {
+        return windows[window.ordinal()].trend();
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.smartmarketing.analytics;
+
+import com.example.smartmarketing.config.AnalyticsProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ingests funnel events and keeps live per-campaign stage counters.
+ * Recording is a map lookup plus a {@link LongAdder} increment, so ingestion scales with cores;
+ * reads sum the counters on demand.
+ * <p>
+ * A single tick thread folds the counters into per-campaign sliding windows every {@code tickMs},
+ * and each window republishes its {@link FunnelTrend} when a bucket closes. Trend reads are therefore
+ * constant time regardless of how much history the windows cover.
+ * <p>
+ * Every campaign keeps its counters and windows for the life of the process, so new campaigns are only
+ * admitted up to {@code maxCampaigns}.
+ */
+@Component
+public class FunnelAnalyticsEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(FunnelAnalyticsEngine.class);
+
+    private final ConcurrentMap<String, CampaignFunnel> campaigns = new ConcurrentHashMap<>();
+    private final LongAdder totalEvents = new LongAdder();
+    private final Object newCampaigns = new Object();
+    private final long tickMillis;
+    private final int maxCampaigns;
+    private final FunnelWindow reportWindow;
+    private final ScheduledExecutorService ticker;
+
+    public FunnelAnalyticsEngine(AnalyticsProperties properties) {
+        this.tickMillis = Math.max(1, properties.tickMs());
+        this.reportWindow = properties.reportWindow();
+        this.maxCampaigns = properties.maxCampaigns();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "funnel-window-tick");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Make room for a campaign's events before they are logged: true when it is known or was just added,
+     * false when {@code maxCampaigns} are already kept.
+     */
+    public boolean admit(String campaignId) {
+        return funnel(campaignId) != null;
+    }
+
+    /**
+     * Count events of a campaign. Returns false, recording nothing, when the campaign is new and
+     * {@code maxCampaigns} are already kept.
+     */
+    public boolean record(String campaignId, FunnelEvent event, long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Event count must not be negative: " + count);
+        }
+        CampaignFunnel funnel = funnel(campaignId);
+        if (funnel == null) {
+            return false;
+        }
+        funnel.add(event, count);
+        totalEvents.add(count);
+        return true;
+    }
+
+    /**
+     * Add totals recorded before this process started, e.g. replayed from the {@link FunnelEventLog}.
+     * They count towards {@link #counts} but not the sliding windows or {@link #totalEvents}.
+     * Returns false, restoring nothing, when the campaign does not fit under {@code maxCampaigns}.
+     */
+    public boolean restore(String campaignId, long[] counts) {
+        CampaignFunnel funnel = funnel(campaignId);
+        if (funnel == null) {
+            return false;
+        }
+        funnel.restore(counts);
+        return true;
+    }
+
+    /**
+     * Current totals of a campaign; all zero when it has no events yet.
+     */
+    public FunnelCounts counts(String campaignId) {
+        CampaignFunnel funnel = campaigns.get(campaignId);
+        return new FunnelCounts(campaignId, funnel != null ? funnel.counts() : new long[FunnelEvent.count()]);
+    }
+
+    /**
+     * Trend of a campaign over the configured {@code assistant.analytics.report-window}.
+     */
+    public FunnelTrend trend(String campaignId) {
+        return trend(campaignId, reportWindow);
+    }
+
+    public FunnelTrend trend(String campaignId, FunnelWindow window) {
+        CampaignFunnel funnel = campaigns.get(campaignId);
+        return funnel != null ? funnel.trend(window) : FunnelTrend.empty(window);
+    }
+
+    public Set<String> campaignIds() {
+        return Set.copyOf(campaigns.keySet());
+    }
+
+    /**
+     * Events recorded across all campaigns since startup.
+     */
+    public long totalEvents() {
+        return totalEvents.sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    private void tick() {
+        try {
+            for (CampaignFunnel funnel : campaigns.values()) {
+                funnel.tick();
+            }
+        } catch (RuntimeException e) {
+            // Keep ticking: an exception would cancel the periodic task
+            log.warn("Funnel window tick failed", e);
+        }
+    }
+
+    /**
+     * The funnel of a campaign, added if there is room; null when it is new and the cap is reached.
+     */
+    private CampaignFunnel funnel(String campaignId) {
+        CampaignFunnel funnel = campaigns.get(campaignId);
+        if (funnel != null) {
+            return funnel;
+        }
+        // New campaigns are rare: serialize them so concurrent ones cannot overshoot the cap together
+        synchronized (newCampaigns) {
+            funnel = campaigns.get(campaignId);
+            if (funnel == null && campaigns.size() < maxCampaigns) {
+                funnel = new CampaignFunnel(tickMillis);
+                campaigns.put(campaignId, funnel);
+            }
+            return funnel;
+        }
+    }
+}
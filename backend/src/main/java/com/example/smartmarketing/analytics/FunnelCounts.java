@@ -0,0 +1,43 @@
+package com.example.smartmarketing.analytics;
+
+/**
+ * Stage totals of a campaign funnel, indexed by {@link FunnelEvent#ordinal()}.
+ */
+public record FunnelCounts(String campaignId, long[] counts) {
+
+    public long count(FunnelEvent event) {
+        return counts[event.ordinal()];
+    }
+
+    /**
+     * Percentage of the previous stage that reached this one; 100 for the first stage.
+     */
+    public double stageRate(FunnelEvent event) {
+        if (event.ordinal() == 0) {
+            return 100.0;
+        }
+        return percent(counts[event.ordinal()], counts[event.ordinal() - 1]);
+    }
+
+    /**
+     * Leads generated per impression, in percent.
+     */
+    public double overallConversionRate() {
+        return percent(count(FunnelEvent.LEAD), count(FunnelEvent.IMPRESSION));
+    }
+
+    /**
+     * These counts plus a fixed baseline per stage, e.g. the historical totals from analytics-data.json.
+     */
+    public FunnelCounts plus(long[] baseline) {
+        long[] sum = counts.clone();
+        for (int i = 0; i < sum.length && i < baseline.length; i++) {
+            sum[i] += baseline[i];
+        }
+        return new FunnelCounts(campaignId, sum);
+    }
+
+    static double percent(long part, long whole) {
+        return whole == 0 ? 0.0 : part * 100.0 / whole;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.smartmarketing.analytics;
+
+import java.util.Locale;
+
+/**
+ * Funnel stages in order. Each event type counts towards the stage of the same name.
+ */
+public enum FunnelEvent {
+    IMPRESSION("Impressions"),
+    CLICK("Clicks"),
+    LANDING_VIEW("Landing Page Views"),
+    FORM_START("Form Starts"),
+    LEAD("Leads Generated"),
+    QUALIFIED_LEAD("Qualified Leads"),
+    CONVERSION("Conversions");
+
+    private static final FunnelEvent[] VALUES = values();
+
+    private final String stageName;
+
+    FunnelEvent(String stageName) {
+        this.stageName = stageName;
+    }
+
+    public String stageName() {
+        return stageName;
+    }
+
+    /**
+     * Event type as sent by clients, e.g. {@code landing_view}.
+     */
+    public String wireName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    public static FunnelEvent fromWire(String type) {
+        for (FunnelEvent event : VALUES) {
+            if (event.wireName().equalsIgnoreCase(type)) {
+                return event;
+            }
+        }
+        throw new IllegalArgumentException("Unknown funnel event type: " + type);
+    }
+
+    static int count() {
+        return VALUES.length;
+    }
+}
@@ -0,0 +1,578 @@
+package com.example.smartmarketing.analytics;
+
+import com.example.smartmarketing.config.EventLogProperties;
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of ingested funnel events, so campaign totals survive restarts without a database.
+ * <p>
+ * Records are 32 bytes, little-endian: timestamp millis, count, campaign index, event ordinal, a reserved
+ * word and a CRC32C of the other 28 bytes. They are written into memory-mapped segment files of
+ * {@code segmentBytes}, created as the previous one fills up; campaign ids live in a dictionary file and
+ * records refer to them by index. One committer thread forces what was written since its last pass, once
+ * per {@code groupCommitMs}, so concurrent ingestion requests share an fsync; each {@link #append}
+ * completes once its records are durable. New dictionary lines are forced by the same pass, before the
+ * records that refer to them.
+ * <p>
+ * On startup the segments are read sequentially and their totals restored into the
+ * {@link FunnelAnalyticsEngine}. A record failing its checksum is a write that a crash cut short before it
+ * was acknowledged when it lies in the last segment, or when it is all zeros: records never span a page,
+ * and an acknowledged record always had the pages before it forced. The log is cut there, the segments a
+ * spilling batch had opened after it are deleted, and appends resume from that point. Any other bad record
+ * is corruption: the file is copied aside with a {@code .corrupt} suffix, cut at that record, and replay
+ * carries on with the segments after it.
+ */
+@Component
+public class FunnelEventLog {
+
+    /**
+     * Receives records in log order.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        void accept(String campaignId, FunnelEvent event, long count, long timestampMillis);
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(FunnelEventLog.class);
+    private static final int RECORD_BYTES = 32;
+    private static final int CHECKSUMMED_BYTES = 28;
+    private static final String DICTIONARY_FILE = "campaigns";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String QUARANTINE_SUFFIX = ".corrupt";
+    private static final FunnelEvent[] EVENTS = FunnelEvent.values();
+
+    /**
+     * Receives records as stored: campaign dictionary index and event ordinal.
+     */
+    @FunctionalInterface
+    private interface RecordVisitor {
+        void accept(int campaign, int event, long count, long timestampMillis);
+    }
+
+    private static final class Segment {
+
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        // Committer thread only
+        private int forcedUpTo;
+
+        private Segment(FileChannel channel, MappedByteBuffer buffer) {
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentBytes;
+    private final long groupCommitMs;
+    private final AssistantMetrics metrics;
+    private final Thread committer;
+
+    // Guarded by "this"
+    private final List<String> campaigns = new ArrayList<>();
+    private final Map<String, Integer> campaignIndex = new HashMap<>();
+    private final List<Path> segmentFiles = new ArrayList<>();
+    private final List<Segment> rolled = new ArrayList<>();
+    private final List<Segment> open = new ArrayList<>();
+    private final List<CompletableFuture<Void>> pending = new ArrayList<>();
+    private final CRC32C crc = new CRC32C();
+    private FileChannel dictionary;
+    private boolean dictionaryWritten;
+    private Segment current;
+    private int position;
+    private long nextSegment;
+    private boolean closed;
+
+    public FunnelEventLog(EventLogProperties properties, FunnelAnalyticsEngine engine, AssistantMetrics metrics)
+            throws IOException {
+        this.enabled = properties.enabled();
+        this.directory = Path.of(properties.directory());
+        this.segmentBytes = Math.max(1, properties.segmentBytes() / RECORD_BYTES) * RECORD_BYTES;
+        this.groupCommitMs = Math.max(0, properties.groupCommitMs());
+        this.metrics = metrics;
+        if (!enabled) {
+            this.committer = null;
+            return;
+        }
+        Files.createDirectories(directory);
+        synchronized (this) {
+            openDictionary();
+            recover(engine);
+        }
+        this.committer = new Thread(this::commitLoop, "event-log-commit");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * Append one record per event of a batch. The returned future completes once they are durable, or
+     * exceptionally when they could not be written.
+     */
+    public CompletableFuture<Void> append(String campaignId, FunnelEvent[] events, long[] counts) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            if (closed) {
+                durable.completeExceptionally(new IllegalStateException("Event log is closed"));
+                return durable;
+            }
+            try {
+                int campaign = campaign(campaignId);
+                // Open every segment the batch spills into before writing, so a failure leaves no records behind
+                List<Segment> spill = reserve(events.length);
+                for (int i = 0; i < events.length; i++) {
+                    if (position == current.buffer.capacity()) {
+                        roll(spill.remove(0));
+                    }
+                    write(current.buffer, position, now, counts[i], campaign, events[i].ordinal());
+                    position += RECORD_BYTES;
+                }
+            } catch (IOException e) {
+                durable.completeExceptionally(e);
+                return durable;
+            }
+            pending.add(durable);
+            notifyAll();
+        }
+        return durable;
+    }
+
+    /**
+     * Read every record appended so far, in order, at sequential disk speed. Appends carry on meanwhile;
+     * records appended after the call started are not visited. Returns the number of records read.
+     */
+    public long replay(Visitor visitor) throws IOException {
+        List<Path> files;
+        List<String> names;
+        int tail;
+        synchronized (this) {
+            if (!enabled) {
+                return 0;
+            }
+            files = List.copyOf(segmentFiles);
+            names = List.copyOf(campaigns);
+            tail = position;
+        }
+        long bytes = 0;
+        for (int i = 0; i < files.size(); i++) {
+            bytes += scan(files.get(i), names.size(), i == files.size() - 1 ? tail : Long.MAX_VALUE,
+                    (campaign, event, count, timestampMillis) ->
+                            visitor.accept(names.get(campaign), EVENTS[event], count, timestampMillis));
+        }
+        return bytes / RECORD_BYTES;
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        synchronized (this) {
+            if (!enabled || closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        // The committer makes the last appends durable before it exits
+        committer.join(5_000);
+        synchronized (this) {
+            IOException failure = null;
+            for (Segment segment : open) {
+                try {
+                    segment.channel.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            open.clear();
+            dictionary.close();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Load the campaign dictionary. A last line without its newline was cut by a crash before any record
+     * referred to it, and is dropped.
+     */
+    private void openDictionary() throws IOException {
+        dictionary = FileChannel.open(directory.resolve(DICTIONARY_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        byte[] content = Files.readAllBytes(directory.resolve(DICTIONARY_FILE));
+        int end = 0;
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] == '\n') {
+                String id = URLDecoder.decode(new String(content, end, i - end, StandardCharsets.UTF_8),
+                        StandardCharsets.UTF_8);
+                campaignIndex.put(id, campaigns.size());
+                campaigns.add(id);
+                end = i + 1;
+            }
+        }
+        dictionary.truncate(end);
+        dictionary.position(end);
+    }
+
+    /**
+     * Replay the segments into the engine and position the writer after the last intact record.
+     */
+    private void recover(FunnelAnalyticsEngine engine) throws IOException {
+        long started = System.nanoTime();
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+        long[][] totals = new long[campaigns.size()][EVENTS.length];
+        RecordVisitor restore = (campaign, event, count, timestampMillis) -> totals[campaign][event] += count;
+        long bytes = 0;
+        int resumeAt = -1;
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            long size = Files.size(file);
+            long valid = scan(file, campaigns.size(), Long.MAX_VALUE, restore);
+            bytes += valid;
+            segmentFiles.add(file);
+            nextSegment = segmentNumber(file) + 1;
+            if (valid == size) {
+                continue;
+            }
+            if (i < files.size() - 1 && written(file, valid)) {
+                quarantine(file, valid, size);
+                truncate(file, valid);
+                continue;
+            }
+            // A crash cut the log here: drop whatever follows, so a remapped segment continues with zeros
+            truncate(file, valid);
+            resumeAt = (int) valid;
+            for (Path spilled : files.subList(i + 1, files.size())) {
+                Files.delete(spilled);
+                log.warn("Deleted event log segment {}, opened by a batch that was never acknowledged", spilled);
+            }
+            break;
+        }
+        if (resumeAt >= 0 && resumeAt < segmentBytes) {
+            current = openSegment(segmentFiles.get(segmentFiles.size() - 1));
+            position = resumeAt;
+        } else {
+            Path file = segmentFile(nextSegment);
+            current = openSegment(file);
+            segmentFiles.add(file);
+            nextSegment++;
+            position = 0;
+        }
+        int dropped = 0;
+        for (int campaign = 0; campaign < totals.length; campaign++) {
+            if (!engine.restore(campaigns.get(campaign), totals[campaign])) {
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            log.warn("{} logged campaigns exceed assistant.analytics.max-campaigns and were not restored", dropped);
+        }
+        metrics.eventLogReplayed(bytes / RECORD_BYTES, System.nanoTime() - started);
+        log.info("Replayed {} funnel events of {} campaigns from {}", bytes / RECORD_BYTES, totals.length, directory);
+    }
+
+    /**
+     * Keep a copy of a segment that is corrupt before its end, for inspection, before it is cut.
+     */
+    private void quarantine(Path file, long valid, long size) throws IOException {
+        Path copy = file.resolveSibling(file.getFileName() + QUARANTINE_SUFFIX);
+        Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+        log.error("Event log segment {} is corrupt after {} intact records: its last {} bytes are not replayed. "
+                        + "The original is kept as {}; later segments are replayed as usual",
+                file, valid / RECORD_BYTES, size - valid, copy);
+    }
+
+    /**
+     * Whether the record at {@code at} was ever written: a record the file ends within, or one of zeros,
+     * was not.
+     */
+    private static boolean written(Path file, long at) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+            if (channel.read(record, at) < RECORD_BYTES) {
+                return false;
+            }
+            for (int i = 0; i < RECORD_BYTES; i++) {
+                if (record.get(i) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    /**
+     * Visit the intact records among the first {@code limit} bytes of a segment. Returns how many bytes
+     * they take up; less than the file size when a record failed its checksum.
+     */
+    private static long scan(Path file, int campaignCount, long limit, RecordVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int size = (int) (Math.min(channel.size(), limit) / RECORD_BYTES * RECORD_BYTES);
+            if (size == 0) {
+                return 0;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            CRC32C checksum = new CRC32C();
+            for (int at = 0; at < size; at += RECORD_BYTES) {
+                int campaign = buffer.getInt(at + 16);
+                int event = buffer.getInt(at + 20);
+                if (checksum(checksum, buffer, at) != buffer.getInt(at + CHECKSUMMED_BYTES)
+                        || campaign < 0 || campaign >= campaignCount || event < 0 || event >= EVENTS.length) {
+                    return at;
+                }
+                visitor.accept(campaign, event, buffer.getLong(at + 8), buffer.getLong(at));
+            }
+            return size;
+        }
+    }
+
+    private void write(MappedByteBuffer buffer, int at, long timestampMillis, long count, int campaign, int event) {
+        buffer.putLong(at, timestampMillis)
+                .putLong(at + 8, count)
+                .putInt(at + 16, campaign)
+                .putInt(at + 20, event)
+                .putInt(at + 24, 0);
+        buffer.putInt(at + CHECKSUMMED_BYTES, checksum(crc, buffer, at));
+    }
+
+    private static int checksum(CRC32C checksum, ByteBuffer buffer, int at) {
+        checksum.reset();
+        checksum.update(buffer.limit(at + CHECKSUMMED_BYTES).position(at));
+        buffer.limit(buffer.capacity());
+        return (int) checksum.getValue();
+    }
+
+    /**
+     * Index of a campaign in the dictionary, added if it is new. The committer forces the dictionary
+     * before the records, so an acknowledged record never refers to a campaign a crash could lose; an
+     * unacknowledged one that does fails its check on recovery like a torn record. Caller holds the lock.
+     */
+    private int campaign(String campaignId) throws IOException {
+        Integer index = campaignIndex.get(campaignId);
+        if (index != null) {
+            return index;
+        }
+        ByteBuffer line = ByteBuffer.wrap((URLEncoder.encode(campaignId, StandardCharsets.UTF_8) + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+        while (line.hasRemaining()) {
+            dictionary.write(line);
+        }
+        dictionaryWritten = true;
+        campaignIndex.put(campaignId, campaigns.size());
+        campaigns.add(campaignId);
+        return campaigns.size() - 1;
+    }
+
+    /**
+     * Open the segments that {@code records} more records spill into once the current one is full. When
+     * one cannot be opened, those opened so far are closed and deleted again. Caller holds the lock.
+     */
+    private List<Segment> reserve(int records) throws IOException {
+        List<Segment> spill = new ArrayList<>();
+        long missing = records - (long) (current.buffer.capacity() - position) / RECORD_BYTES;
+        try {
+            for (; missing > 0; missing -= segmentBytes / RECORD_BYTES) {
+                spill.add(openSegment(segmentFile(nextSegment + spill.size())));
+            }
+        } catch (IOException e) {
+            for (int i = 0; i < spill.size(); i++) {
+                try {
+                    close(spill.get(i));
+                    Files.deleteIfExists(segmentFile(nextSegment + i));
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+        return spill;
+    }
+
+    /**
+     * Continue in a segment opened by {@link #reserve}; the committer forces the full one. Caller holds
+     * the lock.
+     */
+    private void roll(Segment next) {
+        segmentFiles.add(segmentFile(nextSegment++));
+        rolled.add(current);
+        current = next;
+        position = 0;
+    }
+
+    private Path segmentFile(long number) {
+        return directory.resolve(String.format("%010d%s", number, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Map a segment file, creating it if needed, and track it until it is closed. Caller holds the lock.
+     */
+    private Segment openSegment(Path file) throws IOException {
+        boolean created = !Files.exists(file);
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer;
+        try {
+            // Mapping past the end grows the file; the new space reads as zeros
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (created) {
+            forceDirectory();
+        }
+        Segment segment = new Segment(channel, buffer);
+        open.add(segment);
+        return segment;
+    }
+
+    /**
+     * Close a segment that is no longer written to.
+     */
+    private void close(Segment segment) throws IOException {
+        synchronized (this) {
+            open.remove(segment);
+        }
+        segment.channel.close();
+    }
+
+    /**
+     * Make a new segment's directory entry durable. Not every platform can open a directory; there the
+     * file system is trusted to keep it.
+     */
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Could not force event log directory {}", directory, e);
+        }
+    }
+
+    private void commitLoop() {
+        while (true) {
+            synchronized (this) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+            }
+            if (groupCommitMs > 0) {
+                try {
+                    // Let more appends join this fsync
+                    Thread.sleep(groupCommitMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            commit();
+        }
+    }
+
+    /**
+     * Force everything written so far and complete the appends it covers.
+     */
+    private void commit() {
+        List<Segment> full;
+        Segment segment;
+        int upTo;
+        List<CompletableFuture<Void>> batch;
+        boolean forceDictionary;
+        synchronized (this) {
+            forceDictionary = dictionaryWritten;
+            dictionaryWritten = false;
+            full = new ArrayList<>(rolled);
+            rolled.clear();
+            segment = current;
+            upTo = position;
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+        long started = System.nanoTime();
+        try {
+            if (forceDictionary) {
+                dictionary.force(false);
+            }
+            for (Segment done : full) {
+                force(done, done.buffer.capacity());
+            }
+            force(segment, upTo);
+        } catch (IOException | RuntimeException e) {
+            log.error("Event log commit failed", e);
+            synchronized (this) {
+                // The next pass forces the dictionary and the full segments again
+                dictionaryWritten |= forceDictionary;
+                rolled.addAll(0, full);
+            }
+            batch.forEach(append -> append.completeExceptionally(e));
+            return;
+        }
+        for (Segment done : full) {
+            try {
+                close(done);
+            } catch (IOException e) {
+                log.warn("Could not close a full event log segment", e);
+            }
+        }
+        metrics.eventLogCommitted(batch.size(), System.nanoTime() - started);
+        batch.forEach(append -> append.complete(null));
+    }
+
+    private static void force(Segment segment, int upTo) {
+        if (upTo > segment.forcedUpTo) {
+            segment.buffer.force(segment.forcedUpTo, upTo - segment.forcedUpTo);
+            segment.forcedUpTo = upTo;
+        }
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Unexpected file in event log: " + file, e);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.smartmarketing.analytics;
+
+/**
+ * Funnel movement over one {@link FunnelWindow}: stage counts in the current and the previous span,
+ * the change of each stage's conversion rate, and the transition whose rate fell the most.
+ * Computed once per bucket by the window, so reading it is constant time.
+ *
+ * @param current         stage counts in the current span, indexed by {@link FunnelEvent#ordinal()}
+ * @param previous        stage counts in the span before it
+ * @param changes         relative change of each stage rate in percent, or null where either span lacks data
+ * @param bottleneck      stage at the end of the worst-declining transition, or null when no rate declined
+ * @param dropoffRate     share lost on the bottleneck transition in the current span, in percent
+ * @param previousDropoff share lost on the same transition in the previous span, in percent
+ */
+public record FunnelTrend(
+        FunnelWindow window,
+        long[] current,
+        long[] previous,
+        Double[] changes,
+        FunnelEvent bottleneck,
+        double dropoffRate,
+        double previousDropoff
+) {
+
+    static FunnelTrend empty(FunnelWindow window) {
+        int stages = FunnelEvent.count();
+        return new FunnelTrend(window, new long[stages], new long[stages], new Double[stages], null, 0, 0);
+    }
+
+    /**
+     * Computes the trend in O(stages) from the running window sums.
+     */
+    static FunnelTrend of(FunnelWindow window, long[] current, long[] previous) {
+        FunnelEvent[] events = FunnelEvent.values();
+        Double[] changes = new Double[events.length];
+        FunnelEvent bottleneck = null;
+        double worstChange = 0;
+        for (int i = 1; i < events.length; i++) {
+            if (current[i - 1] == 0 || previous[i - 1] == 0 || previous[i] == 0) {
+                continue;
+            }
+            double currentRate = FunnelCounts.percent(current[i], current[i - 1]);
+            double previousRate = FunnelCounts.percent(previous[i], previous[i - 1]);
+            double change = (currentRate - previousRate) * 100.0 / previousRate;
+            changes[i] = change;
+            if (change < worstChange) {
+                worstChange = change;
+                bottleneck = events[i];
+            }
+        }
+
+        double dropoff = 0;
+        double previousDropoff = 0;
+        if (bottleneck != null) {
+            int to = bottleneck.ordinal();
+            dropoff = 100.0 - FunnelCounts.percent(current[to], current[to - 1]);
+            previousDropoff = 100.0 - FunnelCounts.percent(previous[to], previous[to - 1]);
+        }
+        return new FunnelTrend(window, current, previous, changes, bottleneck, dropoff, previousDropoff);
+    }
+
+    /**
+     * True when the current span has seen any events.
+     */
+    public boolean hasData() {
+        for (long count : current) {
+            if (count != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Double change(FunnelEvent event) {
+        return changes[event.ordinal()];
+    }
+
+    /**
+     * Stage the bottleneck transition starts from, or null when there is no bottleneck.
+     */
+    public FunnelEvent bottleneckFrom() {
+        return bottleneck == null ? null : FunnelEvent.values()[bottleneck.ordinal() - 1];
+    }
+}
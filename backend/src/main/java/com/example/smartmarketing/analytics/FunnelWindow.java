@@ -0,0 +1,42 @@
+package com.example.smartmarketing.analytics;
+
+import java.time.Duration;
+
+/**
+ * Sliding windows kept per campaign. Each window is a ring of {@code buckets} buckets for the current
+ * span plus as many for the span before it, so trends compare like with like.
+ */
+public enum FunnelWindow {
+    MINUTE(Duration.ofMinutes(1), 60, "minute"),
+    HOUR(Duration.ofHours(1), 60, "hour"),
+    DAY(Duration.ofDays(1), 96, "24 hours");
+
+    private final Duration span;
+    private final int buckets;
+    private final String label;
+
+    FunnelWindow(Duration span, int buckets, String label) {
+        this.span = span;
+        this.buckets = buckets;
+        this.label = label;
+    }
+
+    public Duration span() {
+        return span;
+    }
+
+    public int buckets() {
+        return buckets;
+    }
+
+    public long bucketMillis() {
+        return span.toMillis() / buckets;
+    }
+
+    /**
+     * Human-readable span, as in "the last hour".
+     */
+    public String label() {
+        return label;
+    }
+}
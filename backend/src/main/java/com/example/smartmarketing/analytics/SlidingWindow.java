@@ -0,0 +1,73 @@
+package com.example.smartmarketing.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Ring buffer of per-bucket stage counts for one {@link FunnelWindow}.
+ * <p>
+ * The ring holds two spans of buckets: the newest {@code buckets} form the current span, the ones before
+ * them the previous span. Running sums for both spans are maintained as buckets are pushed: the new bucket
+ * joins the current sum, the bucket that ages out of the current span moves to the previous sum, and the
+ * overwritten slot leaves it. Every push is O(stages), independent of how much history the window covers.
+ * <p>
+ * Only the tick thread mutates the window; readers see the last published {@link FunnelTrend}.
+ */
+final class SlidingWindow {
+
+    private final FunnelWindow window;
+    private final int stages = FunnelEvent.count();
+    private final int buckets;
+    private final int ticksPerBucket;
+    private final long[] ring;
+    private final long[] current = new long[stages];
+    private final long[] previous = new long[stages];
+    private final long[] pending = new long[stages];
+    private int head;
+    private int ticks;
+    private volatile FunnelTrend trend;
+
+    SlidingWindow(FunnelWindow window, long tickMillis) {
+        this.window = window;
+        this.buckets = window.buckets();
+        this.ticksPerBucket = (int) Math.max(1, window.bucketMillis() / tickMillis);
+        this.ring = new long[2 * buckets * stages];
+        this.trend = FunnelTrend.empty(window);
+    }
+
+    /**
+     * Add the counts recorded since the previous tick; closes a bucket every {@code ticksPerBucket} ticks.
+     */
+    void tick(long[] delta) {
+        for (int s = 0; s < stages; s++) {
+            pending[s] += delta[s];
+        }
+        if (++ticks < ticksPerBucket) {
+            return;
+        }
+        ticks = 0;
+        push(pending);
+        Arrays.fill(pending, 0);
+        trend = FunnelTrend.of(window, current.clone(), previous.clone());
+    }
+
+    FunnelTrend trend() {
+        return trend;
+    }
+
+    private void push(long[] bucket) {
+        int slots = 2 * buckets;
+        int oldest = head * stages;
+        int crossing = ((head + buckets) % slots) * stages;
+        for (int s = 0; s < stages; s++) {
+            // Oldest slot leaves the previous span
+            previous[s] -= ring[oldest + s];
+            // Bucket pushed one span ago moves from the current span to the previous one
+            long aged = ring[crossing + s];
+            current[s] -= aged;
+            previous[s] += aged;
+            ring[oldest + s] = bucket[s];
+            current[s] += bucket[s];
+        }
+        head = (head + 1) % slots;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.smartmarketing.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Admission control for {@code /ws/assistant} (prefix {@code assistant.admission}).
+ *
+ * @param enabled            admit every connection and stage when false
+ * @param maxConnections     open WebSocket connections; handshakes beyond it get 503 with Retry-After
+ * @param maxInFlightStages  stages computing at once; the adaptive limit never goes above it. A stage holds its
+ *                           slot until its result is computed (a deployment: its recipients), not while its
+ *                           frames are paced or its emails sent, so this stays within the executor's capacity
+ * @param minInFlightStages  floor of the adaptive limit
+ * @param queueCapacity      stages waiting, in arrival order, for a free slot; beyond it intents get a busy reply
+ * @param queueTimeoutMs     how long a stage waits for a slot before its intent gets a busy reply
+ * @param retryAfterMs       base of the retry hint in busy replies, scaled up with the queue and jittered
+ * @param adaptive           adjust the limit from observed stage latency
+ * @param latencyTolerance   how much slower than their long-run average stages may get before the limit
+ *                           shrinks, e.g. 1.5 for 50% slower
+ */
+@ConfigurationProperties(prefix = "assistant.admission")
+public record AdmissionProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("10000") int maxConnections,
+        @DefaultValue("1000") int maxInFlightStages,
+        @DefaultValue("50") int minInFlightStages,
+        @DefaultValue("500") int queueCapacity,
+        @DefaultValue("2000") long queueTimeoutMs,
+        @DefaultValue("2000") long retryAfterMs,
+        @DefaultValue("true") boolean adaptive,
+        @DefaultValue("1.5") double latencyTolerance
+) {
+}
@@ -0,0 +1,20 @@
+package com.example.smartmarketing.config;
+
+import com.example.smartmarketing.analytics.FunnelWindow;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Funnel analytics settings (prefix {@code assistant.analytics}).
+ *
+ * @param tickMs       how often live counters are folded into the sliding windows; the finest bucket is one second
+ * @param reportWindow window whose trend the analytics stage reports
+ * @param maxCampaigns campaigns kept in memory; events for further new campaign ids are refused
+ */
+@ConfigurationProperties(prefix = "assistant.analytics")
+public record AnalyticsProperties(
+        @DefaultValue("1000") long tickMs,
+        @DefaultValue("hour") FunnelWindow reportWindow,
+        @DefaultValue("10000") int maxCampaigns
+) {
+}
@@ -0,0 +1,24 @@
+package com.example.smartmarketing.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Outbound frame encoding (prefix {@code assistant.compression}).
+ * <p>
+ * Clients opt into binary frames with {@code {"type":"ping","encoding":"deflate"}} or {@code "cbor"}. Only
+ * frames of at least {@code thresholdBytes} are encoded, so the many small thinking and progress frames cost
+ * no CPU. The container's permessage-deflate extension is negotiated as usual; a connection that uses it is
+ * not deflated a second time.
+ *
+ * @param enabled        allow clients to opt into binary frames of raw-DEFLATE compressed JSON or CBOR
+ * @param thresholdBytes frames with a smaller UTF-8 payload stay plain text frames
+ * @param level          {@link java.util.zip.Deflater} level, 1 (fastest) to 9 (smallest)
+ */
+@ConfigurationProperties(prefix = "assistant.compression")
+public record CompressionProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("1024") int thresholdBytes,
+        @DefaultValue("6") int level
+) {
+}
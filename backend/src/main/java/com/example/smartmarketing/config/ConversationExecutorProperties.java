@@ -0,0 +1,26 @@
+package com.example.smartmarketing.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for the executor that runs conversation stages (prefix {@code assistant.executor}).
+ *
+ * @param mode             {@code auto} picks virtual threads when the JVM supports them (JDK 21+),
+ *                         {@code virtual} requires them, {@code platform} always uses a bounded platform pool
+ * @param maxConcurrency   maximum number of stage tasks running at the same time
+ * @param queueCapacity    number of tasks allowed to wait once all workers are busy; further tasks are refused
+ */
+@ConfigurationProperties(prefix = "assistant.executor")
+public record ConversationExecutorProperties(
+        @DefaultValue("auto") Mode mode,
+        @DefaultValue("200") int maxConcurrency,
+        @DefaultValue("1000") int queueCapacity
+) {
+
+    public enum Mode {
+        AUTO,
+        VIRTUAL,
+        PLATFORM
+    }
+}
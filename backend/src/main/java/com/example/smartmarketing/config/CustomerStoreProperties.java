@@ -0,0 +1,17 @@
+package com.example.smartmarketing.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Synthetic customer base that segments are evaluated against (prefix {@code assistant.customers}).
+ *
+ * @param size number of customers generated at startup; about 5 bytes of column data per customer
+ * @param seed random seed, so the same size always yields the same customers
+ */
+@ConfigurationProperties(prefix = "assistant.customers")
+public record CustomerStoreProperties(
+        @DefaultValue("2400000") int size,
+        @DefaultValue("42") long seed
+) {
+}
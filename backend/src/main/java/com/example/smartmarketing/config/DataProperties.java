@@ -0,0 +1,21 @@
+package com.example.smartmarketing.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Where mock data files are read from (prefix {@code assistant.data}).
+ *
+ * @param externalDir      optional directory that overrides files from classpath:data/;
+ *                         files missing there still come from the classpath
+ * @param watch            reload the snapshot when a file in {@code externalDir} changes
+ * @param reloadDebounceMs quiet period after the last change before reloading, so editors
+ *                         that write a file in several steps trigger a single reload
+ */
+@ConfigurationProperties(prefix = "assistant.data")
+public record DataProperties(
+        @DefaultValue("") String externalDir,
+        @DefaultValue("true") boolean watch,
+        @DefaultValue("250") long reloadDebounceMs
+) {
+}
@@ -0,0 +1,20 @@
+package com.example.smartmarketing.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Deployment pipeline settings (prefix {@code assistant.deployment}). Campaign-level values such as
+ * throughput, batch size and retries live in deployment-config.json.
+ *
+ * @param sink                         delivery sink to use; {@code simulated} is the in-process stub
+ * @param maxInFlightBatches           batches a single run may have scheduled or sending at once
+ * @param simulatedTransientFailureRate share of deliveries the stub rejects with a retryable error
+ */
+@ConfigurationProperties(prefix = "assistant.deployment")
+public record DeploymentProperties(
+        @DefaultValue("simulated") String sink,
+        @DefaultValue("4") int maxInFlightBatches,
+        @DefaultValue("0.05") double simulatedTransientFailureRate
+) {
+}
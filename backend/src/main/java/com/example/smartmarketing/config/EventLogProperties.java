@@ -0,0 +1,23 @@
+package com.example.smartmarketing.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Funnel event log settings (prefix {@code assistant.event-log}).
+ *
+ * @param enabled       append ingested funnel events to the log and replay it into the funnel totals on startup;
+ *                      off by default, so totals start from zero on every run
+ * @param directory     folder of the log's segment files and campaign dictionary
+ * @param segmentBytes  size of each memory-mapped segment file, rounded down to whole 32-byte records
+ * @param groupCommitMs how long the committer waits to gather appends into one fsync; ingestion requests are
+ *                      acknowledged once theirs is done
+ */
+@ConfigurationProperties(prefix = "assistant.event-log")
+public record EventLogProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("events") String directory,
+        @DefaultValue("67108864") int segmentBytes,
+        @DefaultValue("5") long groupCommitMs
+) {
+}
@@ -0,0 +1,22 @@
+package com.example.smartmarketing.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+/**
+ * Per-session outbound buffering (prefix {@code assistant.outbound}).
+ *
+ * @param sendTimeLimitMs  longest a single send to the client may block before the session is closed
+ * @param bufferSizeLimit  payload waiting for a slow client, in characters, before the session is closed
+ * @param coalesceTypes    frame types where only the latest queued frame matters; an older one still waiting
+ *                         for the client is replaced instead of sent
+ */
+@ConfigurationProperties(prefix = "assistant.outbound")
+public record OutboundProperties(
+        @DefaultValue("10000") long sendTimeLimitMs,
+        @DefaultValue("524288") int bufferSizeLimit,
+        @DefaultValue("deployment_progress") List<String> coalesceTypes
+) {
+}
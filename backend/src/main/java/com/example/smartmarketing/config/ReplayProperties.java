@@ -0,0 +1,20 @@
+package com.example.smartmarketing.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Reconnect-and-resume for clients that ping with {@code "replay":true} (prefix {@code assistant.replay}).
+ *
+ * @param maxFrames       outbound frames kept per conversation for replay
+ * @param maxChars        payload characters kept per conversation for replay
+ * @param detachTimeoutMs how long a conversation whose connection dropped keeps running, waiting for
+ *                        the client to reconnect, before its stage is cancelled
+ */
+@ConfigurationProperties(prefix = "assistant.replay")
+public record ReplayProperties(
+        @DefaultValue("512") int maxFrames,
+        @DefaultValue("262144") int maxChars,
+        @DefaultValue("30000") long detachTimeoutMs
+) {
+}
@@ -0,0 +1,22 @@
+package com.example.smartmarketing.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Cache of encoded stage results shared by all conversations (prefix {@code assistant.result-cache}).
+ *
+ * @param enabled           build every stage result afresh when false
+ * @param maxChars          encoded state_update characters kept; least recently used results are dropped beyond it
+ * @param ttlMs             how long a result is served after it was built
+ * @param prefetchNextStage build the next stage's result in the background once a stage's result is
+ *                          sent, where it does not depend on the next intent (email, journey)
+ */
+@ConfigurationProperties(prefix = "assistant.result-cache")
+public record ResultCacheProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("4194304") long maxChars,
+        @DefaultValue("300000") long ttlMs,
+        @DefaultValue("true") boolean prefetchNextStage
+) {
+}
@@ -0,0 +1,22 @@
+package com.example.smartmarketing.config;
+
+import com.example.smartmarketing.segment.LeadTieBreak;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Segment preview and membership streaming settings (prefix {@code assistant.segment}).
+ *
+ * @param topLeads       number of highest-scoring leads shown with a segment
+ * @param tieBreak       how leads with the same score are ordered
+ * @param pageSize       members per segment_page frame
+ * @param maxPageCredits pages a client may have requested but not yet received; larger grants are capped
+ */
+@ConfigurationProperties(prefix = "assistant.segment")
+public record SegmentProperties(
+        @DefaultValue("10") int topLeads,
+        @DefaultValue("customer_id") LeadTieBreak tieBreak,
+        @DefaultValue("500") int pageSize,
+        @DefaultValue("4") int maxPageCredits
+) {
+}
@@ -0,0 +1,28 @@
+package com.example.smartmarketing.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Conversation state store settings (prefix {@code assistant.state-store}).
+ *
+ * @param type                   {@code memory} keeps conversations in this process; {@code file} writes one
+ *                               JSON file per conversation to {@code directory}, which nodes sharing that
+ *                               directory can all resume
+ * @param directory              folder of the file store
+ * @param ioThreads              threads doing file store reads and writes
+ * @param memoryMaxConversations conversations the memory store keeps before dropping the least recently saved
+ * @param nearCacheTtlMs         how long a node serves a conversation from its local copy before reading the
+ *                               store again, i.e. how stale another node's writes may look
+ * @param nearCacheMaxEntries    conversations cached locally per node
+ */
+@ConfigurationProperties(prefix = "assistant.state-store")
+public record StateStoreProperties(
+        @DefaultValue("memory") String type,
+        @DefaultValue("conversations") String directory,
+        @DefaultValue("2") int ioThreads,
+        @DefaultValue("100000") int memoryMaxConversations,
+        @DefaultValue("2000") long nearCacheTtlMs,
+        @DefaultValue("10000") int nearCacheMaxEntries
+) {
+}
@@ -0,0 +1,18 @@
+package com.example.smartmarketing.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for the paced-emission timer (prefix {@code assistant.timeline}).
+ *
+ * @param timerThreads threads that only fire timers; the steps themselves run on the conversation executor
+ * @param zeroDelay    ignore timeline pauses (e.g. thinking step delays) so load tests measure the server,
+ *                     not the configured pacing; deployment throughput limits still apply
+ */
+@ConfigurationProperties(prefix = "assistant.timeline")
+public record TimelineProperties(
+        @DefaultValue("1") int timerThreads,
+        @DefaultValue("false") boolean zeroDelay
+) {
+}
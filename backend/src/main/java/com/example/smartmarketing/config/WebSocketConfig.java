@@ -1,29 +1,82 @@
 package com.example.smartmarketing.config;
 
+import com.example.smartmarketing.exec.AdmissionController;
 import com.example.smartmarketing.ws.MarketingAssistantHandler;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
 
 /**
  * Basic WebSocket configuration that registers a single handler at /ws/assistant.
+ * Handshakes go through the {@link AdmissionController}'s connection limit.
  */
 @Configuration
 @EnableWebSocket
 public class WebSocketConfig implements WebSocketConfigurer {
 
+    /** Request attribute holding the handshake attributes, to release a connection the upgrade failed for */
+    private static final String HANDSHAKE_ATTRIBUTES = WebSocketConfig.class.getName() + ".handshakeAttributes";
+
     private final MarketingAssistantHandler assistantHandler;
+    private final AdmissionController admission;
 
-    public WebSocketConfig(MarketingAssistantHandler assistantHandler) {
+    public WebSocketConfig(MarketingAssistantHandler assistantHandler, AdmissionController admission) {
         this.assistantHandler = assistantHandler;
+        this.admission = admission;
     }
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(assistantHandler, "/ws/assistant")
+                .addInterceptors(new AdmissionInterceptor())
                 .setAllowedOrigins("http://localhost:5173");
     }
-}
 
+    /**
+     * Turns handshakes beyond {@code assistant.admission.max-connections} away with 503 and Retry-After,
+     * and gives the connection back when the upgrade fails after it was counted.
+     */
+    private final class AdmissionInterceptor implements HandshakeInterceptor {
 
+        @Override
+        public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                       WebSocketHandler wsHandler, Map<String, Object> attributes) {
+            if (!admission.tryConnect(attributes)) {
+                response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+                response.getHeaders().set(HttpHeaders.RETRY_AFTER,
+                        Long.toString(Math.max(1, (admission.retryAfterMs() + 999) / 1000)));
+                return false;
+            }
+            if (request instanceof ServletServerHttpRequest servletRequest) {
+                servletRequest.getServletRequest().setAttribute(HANDSHAKE_ATTRIBUTES, attributes);
+            }
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Exception exception) {
+            if (!(request instanceof ServletServerHttpRequest servletRequest)
+                    || !(response instanceof ServletServerHttpResponse servletResponse)) {
+                return;
+            }
+            boolean upgraded = exception == null
+                    && servletResponse.getServletResponse().getStatus() == HttpStatus.SWITCHING_PROTOCOLS.value();
+            if (!upgraded && servletRequest.getServletRequest().getAttribute(HANDSHAKE_ATTRIBUTES) instanceof Map<?, ?> attributes) {
+                admission.disconnected((Map<String, Object>) attributes);
+            }
+        }
+    }
+}
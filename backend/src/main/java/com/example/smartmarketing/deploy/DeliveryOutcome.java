@@ -0,0 +1,10 @@
+package com.example.smartmarketing.deploy;
+
+public enum DeliveryOutcome {
+    /** Accepted by the sink. */
+    DELIVERED,
+    /** Transient failure (throttling, timeout); the pipeline retries with backoff. */
+    RETRY,
+    /** Permanent failure (hard bounce, invalid address); not retried. */
+    FAILED
+}
@@ -0,0 +1,16 @@
+package com.example.smartmarketing.deploy;
+
+import java.util.List;
+
+/**
+ * Destination for rendered campaign emails (ESP API, SMTP relay, message queue...).
+ * Implementations are called from several worker threads at once and must be thread-safe.
+ */
+public interface DeliverySink {
+
+    /**
+     * Deliver one batch. Returns one outcome per email, in the same order.
+     * Throwing marks the whole batch as {@link DeliveryOutcome#RETRY}.
+     */
+    List<DeliveryOutcome> deliver(List<OutboundEmail> batch);
+}
@@ -0,0 +1,165 @@
+package com.example.smartmarketing.deploy;
+
+import com.example.smartmarketing.config.DeploymentProperties;
+import com.example.smartmarketing.exec.TimelineScheduler;
+import com.example.smartmarketing.template.CompiledTemplate;
+import com.example.smartmarketing.template.EmailBatchRenderer;
+import com.example.smartmarketing.template.EmailRecipient;
+import com.example.smartmarketing.util.DataSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends a campaign to its recipients through the configured {@link DeliverySink}.
+ * <p>
+ * Recipients are partitioned into batches of {@code batchSize}. Each batch reserves permits from a
+ * per-run token bucket refilled at {@code throughputPerSecond} and is scheduled once its permits are
+ * due, so throttling never parks a thread. Retryable failures go back to the queue after an
+ * exponential backoff until {@code maxRetries} is exhausted. At most {@code maxInFlightBatches}
+ * batches per run are scheduled or sending at any time. A batch that cannot be rendered or dispatched
+ * (the executor is saturated) fails the whole run, so nothing waits on recipients that never get an outcome.
+ */
+@Component
+public class DeploymentPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(DeploymentPipeline.class);
+
+    private final DeliverySink sink;
+    private final TimelineScheduler scheduler;
+    private final EmailBatchRenderer renderer = new EmailBatchRenderer();
+    private final int maxInFlightBatches;
+
+    public DeploymentPipeline(DeliverySink sink, TimelineScheduler scheduler, DeploymentProperties properties) {
+        this.sink = sink;
+        this.scheduler = scheduler;
+        this.maxInFlightBatches = Math.max(1, properties.maxInFlightBatches());
+    }
+
+    /**
+     * Start sending. Returns immediately; progress is visible through the run's live counters.
+     */
+    public DeploymentRun start(List<EmailRecipient> recipients, CompiledTemplate template,
+                               Map<String, String> sharedValues, DataSnapshot.DeploymentConfig config) {
+        int batchSize = Math.max(1, config.batchSize());
+        TokenBucket bucket = new TokenBucket(config.throughputPerSecond(), batchSize);
+        DeploymentRun run = new DeploymentRun(recipients.size(), template, Map.copyOf(sharedValues), bucket);
+        for (int from = 0; from < recipients.size(); from += batchSize) {
+            int to = Math.min(recipients.size(), from + batchSize);
+            run.ready.add(new DeploymentRun.Batch(List.copyOf(recipients.subList(from, to)), 1));
+        }
+        if (recipients.isEmpty()) {
+            run.completion().complete(null);
+            return run;
+        }
+        pump(run, config);
+        return run;
+    }
+
+    /**
+     * Schedule queued batches until the in-flight limit is reached.
+     */
+    private void pump(DeploymentRun run, DataSnapshot.DeploymentConfig config) {
+        synchronized (run) {
+            while (!run.isDone() && run.inFlightBatches < maxInFlightBatches) {
+                DeploymentRun.Batch batch = run.ready.poll();
+                if (batch == null) {
+                    return;
+                }
+                run.inFlightBatches++;
+                long waitNanos = run.bucket.reserve(batch.recipients().size());
+                scheduler.schedule(() -> send(run, batch, config), TimeUnit.NANOSECONDS.toMillis(waitNanos + 999_999))
+                        .whenComplete((ignored, error) -> {
+                            if (error instanceof RejectedExecutionException) {
+                                // The batch never ran: give its slot back, and fail the run instead of hanging
+                                synchronized (run) {
+                                    run.inFlightBatches--;
+                                }
+                                abort(run, error);
+                            }
+                        });
+            }
+        }
+    }
+
+    private void send(DeploymentRun run, DeploymentRun.Batch batch, DataSnapshot.DeploymentConfig config) {
+        List<EmailRecipient> retry = new ArrayList<>();
+        try {
+            if (run.isDone()) {
+                return;
+            }
+            List<OutboundEmail> emails = new ArrayList<>(batch.recipients().size());
+            renderer.renderEach(run.template, batch.recipients(), run.sharedValues,
+                    (recipient, html) -> emails.add(new OutboundEmail(recipient, html.toString())));
+
+            List<DeliveryOutcome> outcomes;
+            try {
+                outcomes = sink.deliver(emails);
+            } catch (RuntimeException e) {
+                log.warn("Delivery sink failed for a batch of {}, will retry", emails.size(), e);
+                outcomes = null;
+            }
+
+            int delivered = 0;
+            int failed = 0;
+            for (int i = 0; i < emails.size(); i++) {
+                DeliveryOutcome outcome = outcomes != null && i < outcomes.size() ? outcomes.get(i) : DeliveryOutcome.RETRY;
+                switch (outcome) {
+                    case DELIVERED -> delivered++;
+                    case FAILED -> failed++;
+                    case RETRY -> {
+                        if (batch.attempt() <= config.maxRetries()) {
+                            retry.add(batch.recipients().get(i));
+                        } else {
+                            failed++;
+                        }
+                    }
+                }
+            }
+            run.recordDelivered(delivered);
+            run.recordFailed(failed);
+            run.outstanding.addAndGet(-(delivered + failed));
+
+            if (!retry.isEmpty()) {
+                run.recordRetried(retry.size());
+                long backoffMs = (long) config.retryBackoffMs() << Math.min(10, batch.attempt() - 1);
+                DeploymentRun.Batch next = new DeploymentRun.Batch(List.copyOf(retry), batch.attempt() + 1);
+                scheduler.schedule(() -> {
+                    run.ready.add(next);
+                    pump(run, config);
+                }, backoffMs).whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        // The retried recipients would never get an outcome
+                        abort(run, error);
+                    }
+                });
+            }
+        } catch (RuntimeException e) {
+            abort(run, e);
+        } finally {
+            synchronized (run) {
+                run.inFlightBatches--;
+            }
+            if (run.outstanding.get() == 0) {
+                run.completion().complete(null);
+            } else {
+                pump(run, config);
+            }
+        }
+    }
+
+    /**
+     * Fail a run whose remaining recipients can no longer get an outcome.
+     */
+    private static void abort(DeploymentRun run, Throwable error) {
+        if (run.completion().completeExceptionally(error)) {
+            log.warn("Deployment aborted with {} of {} recipients processed", run.processed(), run.totalRecipients(), error);
+        }
+    }
+}
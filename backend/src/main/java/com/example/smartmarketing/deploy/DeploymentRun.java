@@ -0,0 +1,116 @@
+package com.example.smartmarketing.deploy;
+
+import com.example.smartmarketing.template.CompiledTemplate;
+import com.example.smartmarketing.template.EmailRecipient;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One deployment in progress. Counters are updated live by {@link DeploymentPipeline} workers and
+ * can be sampled at any time for progress reporting.
+ */
+public final class DeploymentRun {
+
+    record Batch(List<EmailRecipient> recipients, int attempt) {
+    }
+
+    private final int totalRecipients;
+    private final long startedNanos = System.nanoTime();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    // Pipeline bookkeeping
+    final CompiledTemplate template;
+    final Map<String, String> sharedValues;
+    final TokenBucket bucket;
+    final Queue<Batch> ready = new ConcurrentLinkedQueue<>();
+    final AtomicInteger outstanding;
+    int inFlightBatches;   // guarded by this
+
+    DeploymentRun(int totalRecipients, CompiledTemplate template, Map<String, String> sharedValues, TokenBucket bucket) {
+        this.totalRecipients = totalRecipients;
+        this.template = template;
+        this.sharedValues = sharedValues;
+        this.bucket = bucket;
+        this.outstanding = new AtomicInteger(totalRecipients);
+    }
+
+    public int totalRecipients() {
+        return totalRecipients;
+    }
+
+    public int delivered() {
+        return delivered.intValue();
+    }
+
+    /**
+     * Recipients that failed permanently or ran out of retries.
+     */
+    public int failed() {
+        return failed.intValue();
+    }
+
+    /**
+     * Delivery attempts that were retried.
+     */
+    public int retried() {
+        return retried.intValue();
+    }
+
+    /**
+     * Recipients with a final outcome (delivered or failed).
+     */
+    public int processed() {
+        return delivered() + failed();
+    }
+
+    public long elapsedMillis() {
+        return (System.nanoTime() - startedNanos) / 1_000_000;
+    }
+
+    /**
+     * Observed final outcomes per second since the run started.
+     */
+    public double throughputPerSecond() {
+        long elapsed = System.nanoTime() - startedNanos;
+        return elapsed <= 0 ? 0 : processed() * 1_000_000_000.0 / elapsed;
+    }
+
+    /**
+     * Completes when every recipient has a final outcome; cancelled by {@link #cancel()}.
+     */
+    public CompletableFuture<Void> completion() {
+        return completion;
+    }
+
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    /**
+     * Stop dispatching; batches already handed to the sink still finish.
+     */
+    public boolean cancel() {
+        return completion.cancel(false);
+    }
+
+    void recordDelivered(int count) {
+        delivered.add(count);
+    }
+
+    void recordFailed(int count) {
+        failed.add(count);
+    }
+
+    void recordRetried(int count) {
+        retried.add(count);
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.smartmarketing.deploy;
+
+import com.example.smartmarketing.template.EmailRecipient;
+
+/**
+ * A personalised email ready for a {@link DeliverySink}.
+ */
+public record OutboundEmail(EmailRecipient recipient, String html) {
+}
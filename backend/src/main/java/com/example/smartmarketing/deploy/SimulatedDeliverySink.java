@@ -0,0 +1,45 @@
+package com.example.smartmarketing.deploy;
+
+import com.example.smartmarketing.config.DeploymentProperties;
+import com.example.smartmarketing.util.DataLoader;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * In-process stub sink for demos and tests. Permanently fails {@code failureRate} of emails
+ * (from deployment-config.json), rejects a further share with a retryable error, and accepts the rest.
+ */
+@Component
+@ConditionalOnProperty(name = "assistant.deployment.sink", havingValue = "simulated", matchIfMissing = true)
+public class SimulatedDeliverySink implements DeliverySink {
+
+    private final DataLoader dataLoader;
+    private final double transientFailureRate;
+
+    public SimulatedDeliverySink(DataLoader dataLoader, DeploymentProperties properties) {
+        this.dataLoader = dataLoader;
+        this.transientFailureRate = properties.simulatedTransientFailureRate();
+    }
+
+    @Override
+    public List<DeliveryOutcome> deliver(List<OutboundEmail> batch) {
+        double failureRate = dataLoader.snapshot().deployment().failureRate();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<DeliveryOutcome> outcomes = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            double roll = random.nextDouble();
+            if (roll < failureRate) {
+                outcomes.add(DeliveryOutcome.FAILED);
+            } else if (roll < failureRate + transientFailureRate) {
+                outcomes.add(DeliveryOutcome.RETRY);
+            } else {
+                outcomes.add(DeliveryOutcome.DELIVERED);
+            }
+        }
+        return outcomes;
+    }
+}
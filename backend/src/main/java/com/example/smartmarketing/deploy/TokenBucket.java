@@ -0,0 +1,36 @@
+package com.example.smartmarketing.deploy;
+
+/**
+ * Token bucket that hands out reservations instead of blocking: {@link #reserve(int)} takes the
+ * permits immediately and returns how long the caller must wait before using them.
+ * Callers schedule the work after that delay, so no thread sleeps while throttled.
+ */
+final class TokenBucket {
+
+    private final double permitsPerNano;
+    private final double capacity;
+    private double available;
+    private long lastRefillNanos;
+
+    TokenBucket(int permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive: " + permitsPerSecond);
+        }
+        this.permitsPerNano = permitsPerSecond / 1_000_000_000.0;
+        this.capacity = Math.max(1, burst);
+        this.available = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Reserve permits; returns the wait in nanoseconds before they may be used (0 when available now).
+     * The balance may go negative, which pushes later reservations further out.
+     */
+    synchronized long reserve(int permits) {
+        long now = System.nanoTime();
+        available = Math.min(capacity, available + (now - lastRefillNanos) * permitsPerNano);
+        lastRefillNanos = now;
+        available -= permits;
+        return available >= 0 ? 0 : (long) Math.ceil(-available / permitsPerNano);
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.smartmarketing.exec;
+
+import com.example.smartmarketing.config.AdmissionProperties;
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Global admission control for the assistant: bounds open connections and stages in flight, so a traffic
+ * spike queues briefly and is then turned away with a retry hint instead of degrading every conversation.
+ * <p>
+ * A stage that finds every slot taken waits in a FIFO queue for at most {@code queueTimeoutMs}; when the
+ * queue is full, or the wait times out, its intent gets a busy reply. With {@code adaptive} on, the stage
+ * limit follows observed latency, starting at {@code maxInFlightStages}: every window of completed stages
+ * is compared with the long-run average duration of each stage, the limit shrinks when the window ran more
+ * than {@code latencyTolerance} times slower, and grows back by about its square root while it did not.
+ * A stage gives its slot back once its result is computed, before its paced frames are sent (a deployment
+ * once its recipients are, before its send pipeline runs), so slower here means the executor is falling behind.
+ */
+@Component
+public class AdmissionController {
+
+    /** Marks connections counted against {@code maxConnections}, in the handshake and session attributes. */
+    private static final String CONNECTION_ATTRIBUTE = "admission.connection";
+    private static final double LIMIT_SMOOTHING = 0.2;
+    /** Weight of one run in a stage's long-run average, about the last 500 runs */
+    private static final double BASELINE_SMOOTHING = 0.002;
+    /** Completed stages per limit update, so one slow run does not move the limit */
+    private static final int WINDOW_SAMPLES = 50;
+    private static final double MIN_GRADIENT = 0.5;
+
+    private enum State { QUEUED, ADMITTED, DONE }
+
+    /**
+     * One stage's claim on a slot. The stage starts once {@link #granted()} completes; it completes
+     * exceptionally with {@link AdmissionRejectedException} when the stage is turned away. Every ticket
+     * must be {@link #release released} when its stage ends, however it ends.
+     */
+    public final class Ticket {
+
+        private final CompletableFuture<Void> granted = new CompletableFuture<>();
+        private final long queuedAt = System.nanoTime();
+        // Guarded by the controller
+        private State state = State.QUEUED;
+        private long admittedAt;
+        // Set under the lock before the ticket is settled, and never reset
+        private boolean claimed;
+
+        private Ticket() {
+        }
+
+        public CompletableFuture<Void> granted() {
+            return granted;
+        }
+
+        /**
+         * The stage ended: free its slot, or leave the queue if it never got one. {@code completed} when it
+         * ran to the end, so its duration can feed the adaptive limit.
+         */
+        public void release(String stage, boolean completed) {
+            AdmissionController.this.release(this, stage, completed);
+        }
+    }
+
+    private final AdmissionProperties properties;
+    private final TimelineScheduler scheduler;
+    private final AssistantMetrics metrics;
+    private final AtomicInteger connections = new AtomicInteger();
+
+    // Guarded by "this"
+    private final Deque<Ticket> queue = new ArrayDeque<>();
+    private final Map<String, Double> baselineNanos = new HashMap<>();
+    private double limit;
+    private int inFlight;
+    private double windowRatios;
+    private int windowSamples;
+
+    public AdmissionController(AdmissionProperties properties, TimelineScheduler scheduler, AssistantMetrics metrics) {
+        this.properties = properties;
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        this.limit = properties.maxInFlightStages();
+    }
+
+    /**
+     * Count a connection being opened; false when {@code maxConnections} are already open. The mark left in
+     * {@code attributes} makes {@link #disconnected} release it exactly once.
+     */
+    public boolean tryConnect(Map<String, Object> attributes) {
+        if (!properties.enabled()) {
+            return true;
+        }
+        if (connections.incrementAndGet() > properties.maxConnections()) {
+            connections.decrementAndGet();
+            metrics.admissionRejected("connections");
+            return false;
+        }
+        attributes.put(CONNECTION_ATTRIBUTE, Boolean.TRUE);
+        return true;
+    }
+
+    /**
+     * Release the connection counted by {@link #tryConnect} with these attributes, if any.
+     */
+    public void disconnected(Map<String, Object> attributes) {
+        if (attributes.remove(CONNECTION_ATTRIBUTE) != null) {
+            connections.decrementAndGet();
+        }
+    }
+
+    /**
+     * Claim a slot for a stage: granted at once, queued, or rejected at once when the queue is full.
+     */
+    public Ticket admitStage() {
+        Ticket ticket = new Ticket();
+        boolean queued = false;
+        synchronized (this) {
+            if (!properties.enabled() || (queue.isEmpty() && inFlight < currentLimit())) {
+                claim(ticket);
+            } else if (queue.size() < properties.queueCapacity()) {
+                queue.addLast(ticket);
+                queued = true;
+            } else {
+                ticket.state = State.DONE;
+            }
+        }
+        if (!queued) {
+            settle(ticket, "queue_full");
+            return ticket;
+        }
+        // The wait is also checked as slots free up, in case this timer cannot run on a saturated executor
+        scheduler.schedule(this::expireWaiting, properties.queueTimeoutMs());
+        return ticket;
+    }
+
+    /**
+     * How long a turned-away client should wait before retrying: the base hint, scaled by how far the
+     * queue is over the limit, with ±20% jitter so rejected clients do not all come back at once.
+     */
+    public synchronized long retryAfterMs() {
+        double scale = 1 + queue.size() / Math.max(1.0, limit);
+        double jitter = 0.8 + 0.4 * ThreadLocalRandom.current().nextDouble();
+        return Math.round(properties.retryAfterMs() * scale * jitter);
+    }
+
+    public int connections() {
+        return connections.get();
+    }
+
+    public synchronized int inFlightStages() {
+        return inFlight;
+    }
+
+    public synchronized int queuedStages() {
+        return queue.size();
+    }
+
+    public synchronized int stageLimit() {
+        return currentLimit();
+    }
+
+    private int currentLimit() {
+        return (int) Math.round(limit);
+    }
+
+    private void release(Ticket ticket, String stage, boolean completed) {
+        List<Ticket> settled;
+        synchronized (this) {
+            switch (ticket.state) {
+                case QUEUED -> {
+                    // Cancelled while waiting
+                    queue.remove(ticket);
+                    ticket.state = State.DONE;
+                }
+                case ADMITTED -> {
+                    ticket.state = State.DONE;
+                    inFlight--;
+                    if (completed && properties.adaptive()) {
+                        adapt(stage, System.nanoTime() - ticket.admittedAt);
+                    }
+                }
+                case DONE -> {
+                }
+            }
+            settled = pollWaiting();
+        }
+        settled.forEach(waiting -> settle(waiting, "queue_timeout"));
+    }
+
+    /**
+     * Gradient step, once per window: shrink the limit in proportion to how much slower than their
+     * long-run average the window's stages ran (beyond the tolerance, by at most half), otherwise grow it
+     * by about its square root, but only while it is in use.
+     */
+    private void adapt(String stage, long elapsedNanos) {
+        Double baseline = baselineNanos.get(stage);
+        double base = baseline == null ? Math.max(1, elapsedNanos) : baseline;
+        // The average drifts with lasting changes too (e.g. in the configured pacing): those become the new normal
+        baselineNanos.put(stage, base + (elapsedNanos - base) * BASELINE_SMOOTHING);
+        windowRatios += elapsedNanos / base;
+        if (++windowSamples < WINDOW_SAMPLES) {
+            return;
+        }
+        double slowdown = windowRatios / windowSamples;
+        windowRatios = 0;
+        windowSamples = 0;
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, properties.latencyTolerance() / Math.max(1e-9, slowdown)));
+        double target = gradient < 1.0 || inFlight >= limit / 2
+                ? limit * gradient + Math.sqrt(limit)
+                : limit;
+        limit = Math.max(properties.minInFlightStages(),
+                Math.min(properties.maxInFlightStages(), limit * (1 - LIMIT_SMOOTHING) + target * LIMIT_SMOOTHING));
+    }
+
+    /**
+     * Take queued tickets off the queue while slots are free: claimed, or turned away when they waited too
+     * long. Caller holds the lock, and settles the returned tickets once it released it.
+     */
+    private List<Ticket> pollWaiting() {
+        List<Ticket> polled = new ArrayList<>();
+        long now = System.nanoTime();
+        while (!queue.isEmpty() && inFlight < currentLimit()) {
+            Ticket next = queue.pollFirst();
+            if (expired(next, now)) {
+                next.state = State.DONE;
+            } else {
+                claim(next);
+            }
+            polled.add(next);
+        }
+        return polled;
+    }
+
+    private void expireWaiting() {
+        List<Ticket> expired = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            while (!queue.isEmpty() && expired(queue.peekFirst(), now)) {
+                Ticket ticket = queue.pollFirst();
+                ticket.state = State.DONE;
+                expired.add(ticket);
+            }
+        }
+        expired.forEach(ticket -> settle(ticket, "queue_timeout"));
+    }
+
+    private boolean expired(Ticket ticket, long now) {
+        return now - ticket.queuedAt >= TimeUnit.MILLISECONDS.toNanos(properties.queueTimeoutMs());
+    }
+
+    /**
+     * Take a slot for {@code ticket}. Caller holds the lock.
+     */
+    private void claim(Ticket ticket) {
+        ticket.state = State.ADMITTED;
+        ticket.claimed = true;
+        ticket.admittedAt = System.nanoTime();
+        inFlight++;
+    }
+
+    /**
+     * Complete a ticket taken off the queue, outside the lock: the stage's next steps may run right
+     * away on this thread. A claimed ticket whose stage was cancelled meanwhile gives its slot back.
+     */
+    private void settle(Ticket ticket, String rejectReason) {
+        if (ticket.claimed) {
+            if (ticket.granted.complete(null)) {
+                metrics.stageAdmitted(ticket.admittedAt - ticket.queuedAt);
+            } else {
+                release(ticket, null, false);
+            }
+        } else if (ticket.granted.completeExceptionally(new AdmissionRejectedException(rejectReason))) {
+            metrics.admissionRejected(rejectReason);
+        }
+    }
+}
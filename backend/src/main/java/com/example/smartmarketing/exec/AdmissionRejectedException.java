@@ -0,0 +1,19 @@
+package com.example.smartmarketing.exec;
+
+/**
+ * A stage was turned away by the {@link AdmissionController}: the wait queue was full
+ * ({@code queue_full}) or the stage waited longer than the queue timeout ({@code queue_timeout}).
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final String reason;
+
+    public AdmissionRejectedException(String reason) {
+        super("Stage not admitted: " + reason, null, false, false);
+        this.reason = reason;
+    }
+
+    public String reason() {
+        return reason;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.smartmarketing.exec;
+
+import com.example.smartmarketing.config.ConversationExecutorProperties;
+import com.example.smartmarketing.config.ConversationExecutorProperties.Mode;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded executor for conversation work.
+ * Replaces the former thread-per-intent model: at most {@code maxConcurrency} tasks run at once,
+ * up to {@code queueCapacity} wait, and tasks beyond that are refused with {@link RejectedExecutionException}.
+ * Refusing is the only policy: every submitter completes a future, a timeline or an admission ticket from its
+ * task, and fails them when the task is refused. A dropped task would leave them pending forever, and a task
+ * run on the caller would stall the timer thread that paces every session.
+ * Workers are virtual threads when the JVM supports them (JDK 21+) and platform threads otherwise.
+ */
+@Component
+public class ConversationExecutor implements Executor {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationExecutor.class);
+
+    private final ThreadPoolExecutor pool;
+    private final String threadKind;
+    private final LongAdder rejected = new LongAdder();
+
+    public ConversationExecutor(ConversationExecutorProperties properties) {
+        ThreadFactory virtualFactory = properties.mode() == Mode.PLATFORM ? null : virtualThreadFactory();
+        if (properties.mode() == Mode.VIRTUAL && virtualFactory == null) {
+            throw new IllegalStateException("assistant.executor.mode=virtual requires JDK 21 or newer");
+        }
+        this.threadKind = virtualFactory != null ? "virtual" : "platform";
+
+        ThreadFactory factory = virtualFactory != null ? virtualFactory : platformThreadFactory();
+        this.pool = new ThreadPoolExecutor(
+                properties.maxConcurrency(),
+                properties.maxConcurrency(),
+                30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.queueCapacity())),
+                factory,
+                this::reject);
+        this.pool.allowCoreThreadTimeOut(true);
+
+        log.info("Conversation executor started: {} threads, maxConcurrency={}, queueCapacity={}",
+                threadKind, properties.maxConcurrency(), properties.queueCapacity());
+    }
+
+    /**
+     * Submit a task. Throws {@link RejectedExecutionException} when the executor is saturated or shut down.
+     */
+    @Override
+    public void execute(Runnable task) {
+        pool.execute(task);
+    }
+
+    public ExecutorStats stats() {
+        return new ExecutorStats(
+                threadKind,
+                pool.getPoolSize(),
+                pool.getActiveCount(),
+                pool.getQueue().size(),
+                pool.getCompletedTaskCount(),
+                rejected.sum());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        pool.shutdown();
+        if (!pool.awaitTermination(5, TimeUnit.SECONDS)) {
+            pool.shutdownNow();
+        }
+    }
+
+    private void reject(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Conversation executor is shut down");
+        }
+        rejected.increment();
+        throw new RejectedExecutionException("Conversation executor saturated: "
+                + executor.getActiveCount() + " running, " + executor.getQueue().size() + " queued");
+    }
+
+    private static ThreadFactory platformThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, "conversation-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Look up {@code Thread.ofVirtual().name(...).factory()} reflectively so the code
+     * still compiles for Java 17. Returns null when virtual threads are unavailable.
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "conversation-vt-", 1L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
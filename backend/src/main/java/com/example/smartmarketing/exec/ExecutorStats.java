@@ -0,0 +1,21 @@
+package com.example.smartmarketing.exec;
+
+/**
+ * Point-in-time view of the conversation executor.
+ *
+ * @param threadKind     "virtual" or "platform"
+ * @param poolSize       worker threads currently alive
+ * @param activeThreads  workers currently running a task
+ * @param queuedTasks    tasks waiting for a worker
+ * @param completedTasks tasks finished since startup
+ * @param rejectedTasks  tasks refused because workers and queue were full
+ */
+public record ExecutorStats(
+        String threadKind,
+        int poolSize,
+        int activeThreads,
+        int queuedTasks,
+        long completedTasks,
+        long rejectedTasks
+) {
+}
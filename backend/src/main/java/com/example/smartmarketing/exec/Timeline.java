@@ -0,0 +1,100 @@
+package com.example.smartmarketing.exec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Immutable sequence of paced steps, e.g. the thinking steps of a stage.
+ * Each step runs after the pause that precedes it; a waiting timeline holds no thread,
+ * see {@link TimelineScheduler}.
+ */
+public final class Timeline {
+
+    /**
+     * One emission of a timeline (typically a WebSocket send).
+     */
+    @FunctionalInterface
+    public interface Step {
+        void run() throws Exception;
+    }
+
+    /**
+     * A step that starts background work; the timeline resumes once the returned stage completes.
+     */
+    @FunctionalInterface
+    public interface AsyncStep {
+        CompletionStage<?> start() throws Exception;
+    }
+
+    record Entry(long delayMs, Step step, AsyncStep asyncStep) {
+    }
+
+    private final List<Entry> entries;
+
+    private Timeline(List<Entry> entries) {
+        this.entries = List.copyOf(entries);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    List<Entry> entries() {
+        return entries;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * This timeline, held back until the future {@code gate} returns completes, e.g. an admission.
+     */
+    public Timeline after(AsyncStep gate) {
+        List<Entry> gated = new ArrayList<>(entries.size() + 1);
+        gated.add(new Entry(0, null, gate));
+        gated.addAll(entries);
+        return new Timeline(gated);
+    }
+
+    public static final class Builder {
+
+        private final List<Entry> entries = new ArrayList<>();
+        private long pendingDelayMs;
+
+        private Builder() {
+        }
+
+        /**
+         * Wait before the next step. Consecutive pauses add up.
+         */
+        public Builder pause(long delayMs) {
+            pendingDelayMs += Math.max(0, delayMs);
+            return this;
+        }
+
+        /**
+         * Run a step once the pending pause has elapsed.
+         */
+        public Builder then(Step step) {
+            entries.add(new Entry(pendingDelayMs, step, null));
+            pendingDelayMs = 0;
+            return this;
+        }
+
+        /**
+         * Start asynchronous work and wait for it without holding a thread. Cancelling the timeline
+         * cancels the awaited stage when it is a {@link java.util.concurrent.Future}.
+         */
+        public Builder thenAwait(AsyncStep step) {
+            entries.add(new Entry(pendingDelayMs, null, step));
+            pendingDelayMs = 0;
+            return this;
+        }
+
+        public Timeline build() {
+            return new Timeline(entries);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.smartmarketing.exec;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * Handle to a timeline started by {@link TimelineScheduler}.
+ * The completion future finishes normally after the last step, exceptionally when a step throws,
+ * and with a {@link java.util.concurrent.CancellationException} after {@link #cancel()}.
+ */
+public final class TimelineRun {
+
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private final CompletableFuture<Void> settled = new CompletableFuture<>();
+    private volatile Future<?> awaiting;
+    // Guarded by "this"
+    private int runningSteps;
+
+    TimelineRun() {
+        completion.whenComplete((ignored, error) -> settleIfIdle());
+    }
+
+    /**
+     * Stop the timeline. Steps that have not started yet will not run.
+     */
+    public boolean cancel() {
+        boolean cancelled = completion.cancel(false);
+        Future<?> pending = awaiting;
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        return cancelled;
+    }
+
+    public CompletableFuture<Void> completion() {
+        return completion;
+    }
+
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    /**
+     * Completes once the run is done and none of its steps is still executing. After {@link #cancel()}
+     * a step that had already started keeps running to its end; this is when it has returned.
+     */
+    public CompletableFuture<Void> settled() {
+        return settled;
+    }
+
+    /**
+     * Mark a step as executing; false when the run is already done and the step must not start.
+     */
+    synchronized boolean beginStep() {
+        if (completion.isDone()) {
+            return false;
+        }
+        runningSteps++;
+        return true;
+    }
+
+    void endStep() {
+        synchronized (this) {
+            runningSteps--;
+        }
+        settleIfIdle();
+    }
+
+    private void settleIfIdle() {
+        synchronized (this) {
+            if (runningSteps > 0 || !completion.isDone()) {
+                return;
+            }
+        }
+        settled.complete(null);
+    }
+
+    /**
+     * The timer or asynchronous step the run is currently waiting on; cancelled together with the run,
+     * or right away when the run was cancelled while it was being set up.
+     */
+    void awaiting(Future<?> pending) {
+        this.awaiting = pending;
+        if (completion.isDone()) {
+            pending.cancel(false);
+        }
+    }
+}
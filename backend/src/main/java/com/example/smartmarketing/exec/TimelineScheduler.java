@@ -0,0 +1,177 @@
+package com.example.smartmarketing.exec;
+
+import com.example.smartmarketing.config.TimelineProperties;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link Timeline}s without parking a thread per conversation.
+ * Pauses are delayed tasks on a small timer pool; when a pause elapses the next steps are handed
+ * to the {@link ConversationExecutor}. Steps without a pause in between run back to back on the same worker.
+ */
+@Component
+public class TimelineScheduler {
+
+    private final ScheduledThreadPoolExecutor timer;
+    private final ConversationExecutor executor;
+    private final boolean zeroDelay;
+
+    public TimelineScheduler(TimelineProperties properties, ConversationExecutor executor) {
+        this.executor = executor;
+        this.zeroDelay = properties.zeroDelay();
+        AtomicInteger counter = new AtomicInteger();
+        this.timer = new ScheduledThreadPoolExecutor(Math.max(1, properties.timerThreads()), task -> {
+            Thread thread = new Thread(task, "timeline-timer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Start a timeline. The first step is submitted immediately (or after its pause), so a saturated
+     * executor surfaces as {@link RejectedExecutionException} to the caller.
+     */
+    public TimelineRun start(Timeline timeline) {
+        TimelineRun run = new TimelineRun();
+        List<Timeline.Entry> entries = timeline.entries();
+        if (entries.isEmpty()) {
+            run.completion().complete(null);
+            return run;
+        }
+        long firstDelay = delayOf(entries.get(0));
+        if (firstDelay > 0) {
+            run.awaiting(timer.schedule(() -> dispatch(run, entries, 0), firstDelay, TimeUnit.MILLISECONDS));
+        } else {
+            executor.execute(() -> runFrom(run, entries, 0));
+        }
+        return run;
+    }
+
+    /**
+     * Run a single task on the conversation executor after a delay. The returned future completes once the
+     * task has run, or exceptionally when it threw or could not be dispatched: a saturated executor
+     * completes it with {@link RejectedExecutionException}, so callers waiting on the task never hang.
+     */
+    public CompletableFuture<Void> schedule(Runnable task, long delayMs) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Runnable tracked = () -> {
+            try {
+                task.run();
+                done.complete(null);
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+                throw e;
+            }
+        };
+        try {
+            timer.schedule(() -> {
+                try {
+                    executor.execute(tracked);
+                } catch (RejectedExecutionException e) {
+                    done.completeExceptionally(e);
+                }
+            }, Math.max(0, delayMs), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Timer shut down
+            done.completeExceptionally(e);
+        }
+        return done;
+    }
+
+    /**
+     * Number of pauses currently waiting on the timer.
+     */
+    public int pendingTimers() {
+        return timer.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    private void dispatch(TimelineRun run, List<Timeline.Entry> entries, int index) {
+        if (run.isDone()) {
+            return;
+        }
+        try {
+            executor.execute(() -> runFrom(run, entries, index));
+        } catch (RejectedExecutionException e) {
+            run.completion().completeExceptionally(e);
+        }
+    }
+
+    private void runFrom(TimelineRun run, List<Timeline.Entry> entries, int index) {
+        int i = index;
+        while (i < entries.size()) {
+            if (!run.beginStep()) {
+                return;
+            }
+            Timeline.Entry entry = entries.get(i);
+            boolean next;
+            try {
+                if (entry.asyncStep() != null) {
+                    awaitThenContinue(run, entries, i + 1, entry.asyncStep().start());
+                    return;
+                }
+                entry.step().run();
+                i++;
+                // Still inside the step, so the run only settles once its next pause is registered
+                next = continueImmediately(run, entries, i);
+            } catch (Exception e) {
+                run.completion().completeExceptionally(e);
+                return;
+            } finally {
+                run.endStep();
+            }
+            if (!next) {
+                return;
+            }
+        }
+        run.completion().complete(null);
+    }
+
+    private void awaitThenContinue(TimelineRun run, List<Timeline.Entry> entries, int next, CompletionStage<?> stage) {
+        if (stage instanceof Future<?> future) {
+            run.awaiting(future);
+        }
+        stage.whenComplete((ignored, error) -> {
+            if (error != null) {
+                run.completion().completeExceptionally(error);
+            } else if (continueImmediately(run, entries, next)) {
+                dispatch(run, entries, next);
+            }
+        });
+    }
+
+    private long delayOf(Timeline.Entry entry) {
+        return zeroDelay ? 0 : entry.delayMs();
+    }
+
+    /**
+     * True when the entry at {@code next} can run right away; otherwise schedules it after its pause
+     * (or completes the run when there is nothing left) and returns false.
+     */
+    private boolean continueImmediately(TimelineRun run, List<Timeline.Entry> entries, int next) {
+        if (next >= entries.size()) {
+            run.completion().complete(null);
+            return false;
+        }
+        long delayMs = delayOf(entries.get(next));
+        if (delayMs > 0) {
+            run.awaiting(timer.schedule(() -> dispatch(run, entries, next), delayMs, TimeUnit.MILLISECONDS));
+            return false;
+        }
+        return true;
+    }
+}
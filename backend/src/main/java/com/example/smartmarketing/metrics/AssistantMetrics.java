@@ -0,0 +1,297 @@
+package com.example.smartmarketing.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Micrometer instrumentation for the assistant's hot paths: stage latencies, session and
+ * conversation gauges, outbound frames per message type, slow-client buffering, frame compression,
+ * conversation state store traffic, reconnects, funnel event log commits and data file load timings.
+ * <p>
+ * Meters are registered once and kept in maps keyed by their tag value, so a recording call is a map
+ * lookup plus Micrometer's lock-free increments. Latency timers publish p50/p90/p99/p99.9 over
+ * Micrometer's decaying window ({@code management.metrics.distribution.expiry}), so percentiles follow
+ * current load rather than everything since startup. They are served through Actuator at
+ * {@code /actuator/metrics} and {@code /actuator/prometheus}.
+ */
+@Component
+public class AssistantMetrics {
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final MeterRegistry registry;
+
+    private final ConcurrentMap<String, Timer> stageLatencies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> stageFailures = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DistributionSummary> outboundFrames = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> coalescedFrames = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> dataLoads = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> admissionRejections = new ConcurrentHashMap<>();
+
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final AtomicInteger inFlightConversations = new AtomicInteger();
+    private final AtomicLong bufferedFrames = new AtomicLong();
+    private final AtomicLong bufferedChars = new AtomicLong();
+
+    private final Counter slowSessionsClosed;
+    private final Counter intentsCoalesced;
+    private final Counter stagesPreempted;
+    private final Timer compression;
+    private final Counter compressionInputBytes;
+    private final Counter compressionOutputBytes;
+    private final Counter stateCacheHits;
+    private final Timer stateLoads;
+    private final Timer stateSaves;
+    private final Timer stateSaveFailures;
+    private final Counter conversationsDetached;
+    private final Counter conversationsAttached;
+    private final Counter conversationsExpired;
+    private final Counter framesReplayed;
+    private final Counter replayGaps;
+    private final Counter resultCacheHits;
+    private final Counter resultCacheEvictions;
+    private final Timer resultBuilds;
+    private final Counter segmentPages;
+    private final Counter segmentPageUsers;
+    private final Timer admissionWaits;
+    private final Timer eventLogCommits;
+    private final Counter eventLogAppends;
+    private final Counter eventLogReplayedRecords;
+    private final Timer eventLogReplays;
+
+    public AssistantMetrics(MeterRegistry registry) {
+        this.registry = registry;
+
+        registry.gauge("assistant.sessions.active", activeSessions);
+        registry.gauge("assistant.conversations.in_flight", inFlightConversations);
+        registry.gauge("assistant.outbound.buffered.frames", bufferedFrames);
+        registry.gauge("assistant.outbound.buffered.chars", bufferedChars);
+
+        this.slowSessionsClosed = registry.counter("assistant.outbound.slow_sessions_closed");
+        this.intentsCoalesced = registry.counter("assistant.intents.coalesced");
+        this.stagesPreempted = registry.counter("assistant.stages.preempted");
+        this.compression = latency("assistant.compression", "CPU time to encode one frame as DEFLATE or CBOR");
+        this.compressionInputBytes = registry.counter("assistant.compression.input.bytes");
+        this.compressionOutputBytes = registry.counter("assistant.compression.output.bytes");
+        this.stateCacheHits = registry.counter("assistant.state.near_cache.hits");
+        this.stateLoads = latency("assistant.state.load", "Conversation reads that missed the near cache");
+        this.stateSaves = latency("assistant.state.save", "Conversation writes", "outcome", "success");
+        this.stateSaveFailures = latency("assistant.state.save", "Conversation writes", "outcome", "failure");
+        this.conversationsDetached = registry.counter("assistant.replay.conversations", "event", "detached");
+        this.conversationsAttached = registry.counter("assistant.replay.conversations", "event", "attached");
+        this.conversationsExpired = registry.counter("assistant.replay.conversations", "event", "expired");
+        this.framesReplayed = registry.counter("assistant.replay.frames");
+        this.replayGaps = registry.counter("assistant.replay.gaps");
+        this.resultCacheHits = registry.counter("assistant.result_cache.hits");
+        this.resultCacheEvictions = registry.counter("assistant.result_cache.evictions");
+        this.resultBuilds = latency("assistant.result_cache.build", "Stage results built and encoded on a miss");
+        this.segmentPages = registry.counter("assistant.segment.pages");
+        this.segmentPageUsers = registry.counter("assistant.segment.page.users");
+        this.admissionWaits = latency("assistant.admission.wait", "Time a stage waited for an in-flight slot");
+        this.eventLogCommits = latency("assistant.event_log.commit", "One group commit of the funnel event log");
+        this.eventLogAppends = registry.counter("assistant.event_log.appends");
+        this.eventLogReplayedRecords = registry.counter("assistant.event_log.replayed.records");
+        this.eventLogReplays = latency("assistant.event_log.replay", "Startup replay of the funnel event log");
+    }
+
+    public void sessionOpened() {
+        activeSessions.incrementAndGet();
+    }
+
+    public void sessionClosed() {
+        activeSessions.decrementAndGet();
+    }
+
+    public void conversationStarted() {
+        inFlightConversations.incrementAndGet();
+    }
+
+    /**
+     * A stage run finished, successfully or not, {@code elapsedNanos} after its intent arrived.
+     */
+    public void conversationFinished(String stage, long elapsedNanos, boolean failed) {
+        inFlightConversations.decrementAndGet();
+        Timer timer = failed
+                ? meter(stageFailures, stage, s -> latency("assistant.stage.latency",
+                        "Intent received to last frame sent", "stage", s, "outcome", "failure"))
+                : meter(stageLatencies, stage, s -> latency("assistant.stage.latency",
+                        "Intent received to last frame sent", "stage", s, "outcome", "success"));
+        timer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * An intent was dropped because it repeated the running or waiting one, or a newer intent replaced it.
+     */
+    public void intentCoalesced() {
+        intentsCoalesced.increment();
+    }
+
+    /**
+     * A running stage was cancelled by a new intent.
+     */
+    public void stagePreempted() {
+        stagesPreempted.increment();
+    }
+
+    /**
+     * A stage run was cancelled; its latency is not recorded.
+     */
+    public void conversationCancelled() {
+        inFlightConversations.decrementAndGet();
+    }
+
+    public void frameSent(String type, long payloadBytes) {
+        meter(outboundFrames, type, t -> DistributionSummary.builder("assistant.outbound.frame.size")
+                .description("UTF-8 payload bytes per outbound frame")
+                .baseUnit("bytes")
+                .tag("type", t)
+                .register(registry))
+                .record(payloadBytes);
+    }
+
+    /**
+     * Frames and payload characters queued for slow clients changed by the given amounts.
+     */
+    public void outboundBuffered(long framesDelta, long charsDelta) {
+        bufferedFrames.addAndGet(framesDelta);
+        bufferedChars.addAndGet(charsDelta);
+    }
+
+    /**
+     * A queued frame of {@code type} was replaced by a newer one before the client received it.
+     */
+    public void frameCoalesced(String type) {
+        meter(coalescedFrames, type, t -> registry.counter("assistant.outbound.coalesced", "type", t)).increment();
+    }
+
+    /**
+     * A frame of {@code inputBytes} UTF-8 JSON went out as {@code outputBytes} of DEFLATE or CBOR data.
+     */
+    public void frameCompressed(long inputBytes, long outputBytes, long elapsedNanos) {
+        compression.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        compressionInputBytes.increment(inputBytes);
+        compressionOutputBytes.increment(outputBytes);
+    }
+
+    /**
+     * A conversation was read from the near cache, or from the store in {@code elapsedNanos}.
+     */
+    public void stateLoaded(boolean cacheHit, long elapsedNanos) {
+        if (cacheHit) {
+            stateCacheHits.increment();
+        } else {
+            stateLoads.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void stateSaved(long elapsedNanos, boolean failed) {
+        (failed ? stateSaveFailures : stateSaves).record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void conversationDetached() {
+        conversationsDetached.increment();
+    }
+
+    /**
+     * A reconnecting client picked its conversation up again; {@code gap} when some missed frames had
+     * already dropped out of the replay log.
+     */
+    public void conversationAttached(int replayedFrames, boolean gap) {
+        conversationsAttached.increment();
+        framesReplayed.increment(replayedFrames);
+        if (gap) {
+            replayGaps.increment();
+        }
+    }
+
+    /**
+     * A detached conversation was closed because no client reconnected in time.
+     */
+    public void conversationExpired() {
+        conversationsExpired.increment();
+    }
+
+    /**
+     * A stage result was served from the result cache, or built and encoded in {@code elapsedNanos}.
+     */
+    public void stageResultLoaded(boolean cacheHit, long elapsedNanos) {
+        if (cacheHit) {
+            resultCacheHits.increment();
+        } else {
+            resultBuilds.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void stageResultsEvicted(int results) {
+        resultCacheEvictions.increment(results);
+    }
+
+    /**
+     * A stage got a slot {@code waitedNanos} after it asked for one; zero or close to it when a slot was free.
+     */
+    public void stageAdmitted(long waitedNanos) {
+        admissionWaits.record(waitedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * A connection or stage was turned away: {@code connections}, {@code queue_full} or {@code queue_timeout}.
+     */
+    public void admissionRejected(String reason) {
+        meter(admissionRejections, reason, r -> registry.counter("assistant.admission.rejections", "reason", r))
+                .increment();
+    }
+
+    public void segmentPageSent(int users) {
+        segmentPages.increment();
+        segmentPageUsers.increment(users);
+    }
+
+    /**
+     * One group commit of the funnel event log made {@code appends} ingestion batches durable.
+     */
+    public void eventLogCommitted(int appends, long elapsedNanos) {
+        eventLogCommits.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        eventLogAppends.increment(appends);
+    }
+
+    public void eventLogReplayed(long records, long elapsedNanos) {
+        eventLogReplayedRecords.increment(records);
+        eventLogReplays.record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void slowSessionClosed() {
+        slowSessionsClosed.increment();
+    }
+
+    /**
+     * Time to read and parse one data file, or {@code snapshot} for a whole snapshot build.
+     */
+    public void dataLoaded(String file, long elapsedNanos) {
+        meter(dataLoads, file, f -> latency("assistant.data.load", "Time to read and parse a data file", "file", f))
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer latency(String name, String description, String... tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentiles(PERCENTILES)
+                .register(registry);
+    }
+
+    private static <M> M meter(ConcurrentMap<String, M> meters, String key, Function<String, M> factory) {
+        // get() first: computeIfAbsent may lock the bin even when the key is already known
+        M meter = meters.get(key);
+        return meter != null ? meter : meters.computeIfAbsent(key, factory);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.smartmarketing.metrics;
+
+import com.example.smartmarketing.exec.AdmissionController;
+import com.example.smartmarketing.exec.ConversationExecutor;
+import com.example.smartmarketing.exec.TimelineScheduler;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gauges sampled from the conversation executor, the timeline timers and admission control whenever
+ * the registry is scraped, so none of them costs anything on the hot path.
+ */
+@Component
+public class ExecutorGauges implements MeterBinder {
+
+    private final ConversationExecutor executor;
+    private final TimelineScheduler timelineScheduler;
+    private final AdmissionController admission;
+
+    public ExecutorGauges(ConversationExecutor executor, TimelineScheduler timelineScheduler,
+                          AdmissionController admission) {
+        this.executor = executor;
+        this.timelineScheduler = timelineScheduler;
+        this.admission = admission;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        String threadKind = executor.stats().threadKind();
+        Gauge.builder("assistant.executor.pool.size", executor, e -> e.stats().poolSize())
+                .tag("threads", threadKind)
+                .register(registry);
+        Gauge.builder("assistant.executor.active", executor, e -> e.stats().activeThreads())
+                .register(registry);
+        Gauge.builder("assistant.executor.queued", executor, e -> e.stats().queuedTasks())
+                .description("Tasks waiting for a worker")
+                .register(registry);
+        FunctionCounter.builder("assistant.executor.completed", executor, e -> e.stats().completedTasks())
+                .register(registry);
+        FunctionCounter.builder("assistant.executor.rejected", executor, e -> e.stats().rejectedTasks())
+                .register(registry);
+        Gauge.builder("assistant.timeline.pending_timers", timelineScheduler, TimelineScheduler::pendingTimers)
+                .register(registry);
+
+        Gauge.builder("assistant.admission.connections", admission, AdmissionController::connections)
+                .register(registry);
+        Gauge.builder("assistant.admission.in_flight", admission, AdmissionController::inFlightStages)
+                .register(registry);
+        Gauge.builder("assistant.admission.limit", admission, AdmissionController::stageLimit)
+                .description("Current adaptive limit on stages in flight")
+                .register(registry);
+        Gauge.builder("assistant.admission.queued", admission, AdmissionController::queuedStages)
+                .register(registry);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.smartmarketing.segment;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size bit set over customer indexes, one bit per customer packed into 64-bit words.
+ * Set operations work a word at a time and modify this bitmap in place.
+ */
+public final class Bitmap {
+
+    private final int size;
+    final long[] words;
+
+    public Bitmap(int size) {
+        this.size = size;
+        this.words = new long[(size + 63) >>> 6];
+    }
+
+    /**
+     * Bitmap with every customer set.
+     */
+    public static Bitmap full(int size) {
+        Bitmap bitmap = new Bitmap(size);
+        Arrays.fill(bitmap.words, -1L);
+        bitmap.clearTail();
+        return bitmap;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void set(int index) {
+        words[index >>> 6] |= 1L << index;
+    }
+
+    public boolean get(int index) {
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public Bitmap and(Bitmap other) {
+        for (int i = 0; i < words.length; i++) {
+            words[i] &= other.words[i];
+        }
+        return this;
+    }
+
+    public Bitmap andNot(Bitmap other) {
+        for (int i = 0; i < words.length; i++) {
+            words[i] &= ~other.words[i];
+        }
+        return this;
+    }
+
+    public Bitmap or(Bitmap other) {
+        for (int i = 0; i < words.length; i++) {
+            words[i] |= other.words[i];
+        }
+        return this;
+    }
+
+    public Bitmap copy() {
+        Bitmap copy = new Bitmap(size);
+        System.arraycopy(words, 0, copy.words, 0, words.length);
+        return copy;
+    }
+
+    public int cardinality() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Index of the first set bit at or after {@code from}, or -1 when there is none.
+     */
+    public int nextSetBit(int from) {
+        if (from >= size) {
+            return -1;
+        }
+        int wordIndex = from >>> 6;
+        long word = words[wordIndex] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++wordIndex == words.length) {
+                return -1;
+            }
+            word = words[wordIndex];
+        }
+    }
+
+    private void clearTail() {
+        int tailBits = size & 63;
+        if (tailBits != 0) {
+            words[words.length - 1] &= (1L << tailBits) - 1;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.smartmarketing.segment;
+
+import com.example.smartmarketing.config.CustomerStoreProperties;
+import com.example.smartmarketing.template.EmailRecipient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * In-memory customer base stored column by column.
+ * Each attribute is a primitive array indexed by customer, so a filter reads only the columns it needs;
+ * categorical attributes (loyalty tier, email opt-in) additionally have bitmap indexes.
+ * <p>
+ * In production this would be backed by the customer data platform; here the customers are
+ * generated at startup from a fixed seed.
+ */
+@Component
+public class CustomerStore {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerStore.class);
+
+    private static final String[] FIRST_NAMES = {
+            "Alice", "Leo", "Maria", "David", "Sarah", "Michael", "Emma", "James", "Olivia", "Noah",
+            "Sophia", "Lucas", "Mia", "Ethan", "Chloe", "Daniel", "Grace", "Ryan", "Hannah", "Kevin"
+    };
+    private static final String[] LAST_NAMES = {
+            "Chen", "Wang", "Gomez", "Kim", "Johnson", "Zhang", "Brown", "Garcia", "Miller", "Davis",
+            "Lopez", "Wilson", "Martin", "Lee", "Taylor", "Thomas", "Moore", "Clark", "Lewis", "Walker"
+    };
+
+    private final int size;
+    private final byte[] tier;
+    private final short[] daysSinceActivity;
+    private final byte[] engagement;
+    private final byte[] score;
+    private final Bitmap[] tierIndex;
+    private final Bitmap emailOptIn;
+
+    public CustomerStore(CustomerStoreProperties properties) {
+        long start = System.nanoTime();
+        this.size = Math.max(0, properties.size());
+        this.tier = new byte[size];
+        this.daysSinceActivity = new short[size];
+        this.engagement = new byte[size];
+        this.score = new byte[size];
+        this.tierIndex = new Bitmap[LoyaltyTier.values().length];
+        for (int t = 0; t < tierIndex.length; t++) {
+            tierIndex[t] = new Bitmap(size);
+        }
+        this.emailOptIn = new Bitmap(size);
+
+        generate(new SplittableRandom(properties.seed()));
+        log.info("Customer store ready: {} customers in {} ms", size, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void generate(SplittableRandom random) {
+        for (int i = 0; i < size; i++) {
+            int roll = random.nextInt(100);
+            LoyaltyTier loyalty = roll < 50 ? LoyaltyTier.BRONZE
+                    : roll < 80 ? LoyaltyTier.SILVER
+                    : roll < 95 ? LoyaltyTier.GOLD
+                    : LoyaltyTier.PLATINUM;
+            tier[i] = (byte) loyalty.ordinal();
+            tierIndex[loyalty.ordinal()].set(i);
+
+            daysSinceActivity[i] = (short) random.nextInt(365);
+            if (random.nextInt(100) < 75) {
+                emailOptIn.set(i);
+            }
+            // Sum of two uniforms: most customers sit in the middle of the engagement range
+            int engaged = (random.nextInt(51) + random.nextInt(51));
+            engagement[i] = (byte) engaged;
+            int leadScore = engaged / 2 + loyalty.ordinal() * 8 + random.nextInt(30);
+            score[i] = (byte) Math.min(100, leadScore);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public LoyaltyTier tier(int customer) {
+        return LoyaltyTier.values()[tier[customer]];
+    }
+
+    public int daysSinceActivity(int customer) {
+        return daysSinceActivity[customer];
+    }
+
+    public int engagement(int customer) {
+        return engagement[customer];
+    }
+
+    public int score(int customer) {
+        return score[customer];
+    }
+
+    public boolean emailOptIn(int customer) {
+        return emailOptIn.get(customer);
+    }
+
+    public String customerId(int customer) {
+        return "c" + customer;
+    }
+
+    public String name(int customer) {
+        return FIRST_NAMES[customer % FIRST_NAMES.length] + " "
+                + LAST_NAMES[(customer / FIRST_NAMES.length) % LAST_NAMES.length];
+    }
+
+    public String email(int customer) {
+        // Locale.ROOT: in e.g. a Turkish default locale "I" would lower-case to a dotless i
+        return FIRST_NAMES[customer % FIRST_NAMES.length].toLowerCase(Locale.ROOT) + "."
+                + LAST_NAMES[(customer / FIRST_NAMES.length) % LAST_NAMES.length].toLowerCase(Locale.ROOT)
+                + customer + "@example.com";
+    }
+
+    public EmailRecipient recipient(int customer) {
+        return new EmailRecipient(customerId(customer), name(customer), email(customer), score(customer));
+    }
+
+    // Columns and indexes for the evaluator; callers must not modify them
+
+    short[] daysSinceActivityColumn() {
+        return daysSinceActivity;
+    }
+
+    byte[] engagementColumn() {
+        return engagement;
+    }
+
+    byte[] scoreColumn() {
+        return score;
+    }
+
+    Bitmap tierIndex(LoyaltyTier loyalty) {
+        return tierIndex[loyalty.ordinal()];
+    }
+
+    Bitmap emailOptInIndex() {
+        return emailOptIn;
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.smartmarketing.segment;
+
+import com.example.smartmarketing.config.SegmentProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Selects the highest-scoring members of a segment without sorting the whole match.
+ * <p>
+ * The member bitmap is split into word-aligned partitions on the fork-join pool. Each partition keeps a
+ * bounded min-heap of its best {@code k} leads, and sibling heaps are merged on the way back up, so the
+ * work is O(n log k) and only {@code k} entries per partition are ever held.
+ * <p>
+ * Leads are compared by a packed 64-bit key: score, then the tie-break attribute, then the inverted
+ * customer index. Keys are unique, so the result does not depend on how the work was partitioned.
+ */
+@Component
+public class LeadRanker {
+
+    /** Words per leaf partition: 64K customers. */
+    private static final int LEAF_WORDS = 1024;
+
+    private final CustomerStore store;
+    private final int defaultK;
+    private final LeadTieBreak defaultTieBreak;
+
+    public LeadRanker(CustomerStore store, SegmentProperties properties) {
+        this.store = store;
+        this.defaultK = Math.max(0, properties.topLeads());
+        this.defaultTieBreak = properties.tieBreak();
+    }
+
+    /**
+     * Top leads of a segment with the configured {@code assistant.segment.*} settings.
+     */
+    public int[] topLeads(SegmentMatch match) {
+        return top(match.members(), defaultK, defaultTieBreak);
+    }
+
+    /**
+     * Customer indexes of the best {@code k} members, best first.
+     */
+    public int[] top(Bitmap members, int k, LeadTieBreak tieBreak) {
+        if (k <= 0) {
+            return new int[0];
+        }
+        long[] heap = ForkJoinPool.commonPool()
+                .invoke(new PartitionTask(members.words, 0, members.words.length, k, tieBreak))
+                .sortedDescending();
+        int[] customers = new int[heap.length];
+        for (int i = 0; i < heap.length; i++) {
+            customers[i] = customerOf(heap[i]);
+        }
+        return customers;
+    }
+
+    private long key(int customer, LeadTieBreak tieBreak) {
+        long secondary = switch (tieBreak) {
+            case CUSTOMER_ID -> 0;
+            case ENGAGEMENT -> store.engagement(customer);
+            case RECENT_ACTIVITY -> Short.MAX_VALUE - store.daysSinceActivity(customer);
+        };
+        return ((long) store.score(customer) << 48) | (secondary << 32) | (Integer.MAX_VALUE - customer);
+    }
+
+    private static int customerOf(long key) {
+        return Integer.MAX_VALUE - (int) (key & 0x7FFF_FFFFL);
+    }
+
+    private final class PartitionTask extends RecursiveTask<BoundedHeap> {
+
+        private final long[] words;
+        private final int fromWord;
+        private final int toWord;
+        private final int k;
+        private final LeadTieBreak tieBreak;
+
+        PartitionTask(long[] words, int fromWord, int toWord, int k, LeadTieBreak tieBreak) {
+            this.words = words;
+            this.fromWord = fromWord;
+            this.toWord = toWord;
+            this.k = k;
+            this.tieBreak = tieBreak;
+        }
+
+        @Override
+        protected BoundedHeap compute() {
+            if (toWord - fromWord <= LEAF_WORDS) {
+                return scan();
+            }
+            int mid = (fromWord + toWord) >>> 1;
+            PartitionTask left = new PartitionTask(words, fromWord, mid, k, tieBreak);
+            left.fork();
+            BoundedHeap right = new PartitionTask(words, mid, toWord, k, tieBreak).compute();
+            return right.mergeFrom(left.join());
+        }
+
+        private BoundedHeap scan() {
+            BoundedHeap heap = new BoundedHeap(k);
+            for (int w = fromWord; w < toWord; w++) {
+                long remaining = words[w];
+                while (remaining != 0) {
+                    int customer = (w << 6) + Long.numberOfTrailingZeros(remaining);
+                    remaining &= remaining - 1;
+                    heap.offer(key(customer, tieBreak));
+                }
+            }
+            return heap;
+        }
+    }
+
+    /**
+     * Min-heap of at most {@code capacity} keys; the root is the weakest lead kept so far.
+     */
+    static final class BoundedHeap {
+
+        private final long[] keys;
+        private int size;
+
+        BoundedHeap(int capacity) {
+            this.keys = new long[capacity];
+        }
+
+        void offer(long key) {
+            if (size < keys.length) {
+                keys[size] = key;
+                siftUp(size++);
+            } else if (key > keys[0]) {
+                keys[0] = key;
+                siftDown(0);
+            }
+        }
+
+        BoundedHeap mergeFrom(BoundedHeap other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.keys[i]);
+            }
+            return this;
+        }
+
+        long[] sortedDescending() {
+            long[] sorted = Arrays.copyOf(keys, size);
+            Arrays.sort(sorted);
+            for (int i = 0, j = sorted.length - 1; i < j; i++, j--) {
+                long tmp = sorted[i];
+                sorted[i] = sorted[j];
+                sorted[j] = tmp;
+            }
+            return sorted;
+        }
+
+        private void siftUp(int index) {
+            long key = keys[index];
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                keys[index] = keys[parent];
+                index = parent;
+            }
+            keys[index] = key;
+        }
+
+        private void siftDown(int index) {
+            long key = keys[index];
+            int half = size >>> 1;
+            while (index < half) {
+                int child = 2 * index + 1;
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (key <= keys[child]) {
+                    break;
+                }
+                keys[index] = keys[child];
+                index = child;
+            }
+            keys[index] = key;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.smartmarketing.segment;
+
+/**
+ * Orders leads with the same score. Remaining ties always go to the lower customer index,
+ * so a ranking is deterministic.
+ */
+public enum LeadTieBreak {
+    /** Lower customer index first. */
+    CUSTOMER_ID,
+    /** Higher engagement score first. */
+    ENGAGEMENT,
+    /** Most recent activity first. */
+    RECENT_ACTIVITY
+}
@@ -0,0 +1,11 @@
+package com.example.smartmarketing.segment;
+
+/**
+ * Loyalty tiers, indexed by a bitmap each in {@link CustomerStore}.
+ */
+public enum LoyaltyTier {
+    BRONZE,
+    SILVER,
+    GOLD,
+    PLATINUM
+}
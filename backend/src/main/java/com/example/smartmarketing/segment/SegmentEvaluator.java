@@ -0,0 +1,98 @@
+package com.example.smartmarketing.segment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.stream.IntStream;
+
+/**
+ * Evaluates segment filters against the {@link CustomerStore}.
+ * Categorical conditions are answered from the bitmap indexes (OR across the selected tiers, AND with
+ * the opt-in bitmap); the surviving candidates are then range-checked against the activity and
+ * engagement columns. The range scan is split into word-aligned chunks that run in parallel and
+ * only visit customers still set in the candidate bitmap.
+ */
+@Component
+public class SegmentEvaluator {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentEvaluator.class);
+
+    /** Words per parallel chunk: 64K customers. */
+    private static final int CHUNK_WORDS = 1024;
+
+    private final CustomerStore store;
+
+    public SegmentEvaluator(CustomerStore store) {
+        this.store = store;
+    }
+
+    public CustomerStore store() {
+        return store;
+    }
+
+    public SegmentMatch evaluate(SegmentFilter filter) {
+        long start = System.nanoTime();
+        Bitmap candidates = categoricalCandidates(filter);
+        if (filter.hasRangeConditions()) {
+            scanRanges(candidates, filter);
+        }
+        int count = candidates.cardinality();
+        long elapsed = System.nanoTime() - start;
+        log.debug("Evaluated segment {} over {} customers: {} matched in {} us",
+                filter, store.size(), count, elapsed / 1_000);
+        return new SegmentMatch(candidates, count, elapsed);
+    }
+
+    private Bitmap categoricalCandidates(SegmentFilter filter) {
+        Bitmap candidates;
+        if (filter.loyaltyTiers().isEmpty()) {
+            candidates = Bitmap.full(store.size());
+        } else {
+            candidates = new Bitmap(store.size());
+            for (LoyaltyTier tier : filter.loyaltyTiers()) {
+                candidates.or(store.tierIndex(tier));
+            }
+        }
+        if (filter.emailOptIn() != null) {
+            if (filter.emailOptIn()) {
+                candidates.and(store.emailOptInIndex());
+            } else {
+                candidates.andNot(store.emailOptInIndex());
+            }
+        }
+        return candidates;
+    }
+
+    private void scanRanges(Bitmap candidates, SegmentFilter filter) {
+        long[] words = candidates.words;
+        int chunks = (words.length + CHUNK_WORDS - 1) / CHUNK_WORDS;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int from = chunk * CHUNK_WORDS;
+            scanChunk(words, from, Math.min(words.length, from + CHUNK_WORDS), filter);
+        });
+    }
+
+    private void scanChunk(long[] words, int fromWord, int toWord, SegmentFilter filter) {
+        short[] days = store.daysSinceActivityColumn();
+        byte[] engagement = store.engagementColumn();
+        int minDaysExclusive = filter.lastActivityDaysGreaterThan();
+        int engagementMin = filter.engagementMin();
+        int engagementMax = filter.engagementMax();
+
+        for (int w = fromWord; w < toWord; w++) {
+            long remaining = words[w];
+            long kept = remaining;
+            while (remaining != 0) {
+                int bit = Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                int customer = (w << 6) + bit;
+                int engaged = engagement[customer];
+                if (days[customer] <= minDaysExclusive || engaged < engagementMin || engaged > engagementMax) {
+                    kept &= ~(1L << bit);
+                }
+            }
+            words[w] = kept;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.smartmarketing.segment;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Structured segment definition, parsed from the {@code filters} object of segment-data.json.
+ * Every condition is optional; an empty filter matches the whole customer base.
+ *
+ * @param loyaltyTiers                customer tier is one of these (any tier when empty)
+ * @param lastActivityDaysGreaterThan last activity strictly older than this many days (-1 for any)
+ * @param emailOptIn                  required email opt-in state, or null for either
+ * @param engagementMin               lowest engagement score, inclusive
+ * @param engagementMax               highest engagement score, inclusive
+ */
+public record SegmentFilter(
+        Set<LoyaltyTier> loyaltyTiers,
+        int lastActivityDaysGreaterThan,
+        Boolean emailOptIn,
+        int engagementMin,
+        int engagementMax
+) {
+
+    public static final SegmentFilter ALL = new SegmentFilter(Set.of(), -1, null, 0, 100);
+
+    public SegmentFilter {
+        loyaltyTiers = loyaltyTiers.isEmpty() ? Set.of() : Set.copyOf(EnumSet.copyOf(loyaltyTiers));
+    }
+
+    public static SegmentFilter from(JsonNode node) {
+        if (node == null || !node.isObject()) {
+            return ALL;
+        }
+        Set<LoyaltyTier> tiers = EnumSet.noneOf(LoyaltyTier.class);
+        for (JsonNode tierNode : node.path("loyaltyTiers")) {
+            tiers.add(LoyaltyTier.valueOf(tierNode.asText().toUpperCase(Locale.ROOT)));
+        }
+        JsonNode optIn = node.path("emailOptIn");
+        JsonNode engagement = node.path("engagementScore");
+        return new SegmentFilter(
+                tiers,
+                node.path("lastActivityDaysGreaterThan").asInt(-1),
+                optIn.isBoolean() ? optIn.asBoolean() : null,
+                engagement.path("min").asInt(0),
+                engagement.path("max").asInt(100));
+    }
+
+    boolean hasRangeConditions() {
+        return lastActivityDaysGreaterThan >= 0 || engagementMin > 0 || engagementMax < 100;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.smartmarketing.segment;
+
+/**
+ * Result of evaluating a {@link SegmentFilter}.
+ *
+ * @param members      bitmap of matching customer indexes; treat as read-only
+ * @param count        number of matching customers
+ * @param elapsedNanos evaluation time
+ */
+public record SegmentMatch(Bitmap members, int count, long elapsedNanos) {
+}
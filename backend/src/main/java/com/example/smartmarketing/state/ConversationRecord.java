@@ -0,0 +1,25 @@
+package com.example.smartmarketing.state;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Durable part of one conversation: the stage to run next, the intent behind the latest results and
+ * the state fields (segment, email, journey, analytics) generated so far, merged as the client received them.
+ *
+ * @param stage     lower-case stage name, e.g. {@code email}
+ * @param version   bumped on every save; stores and caches never replace a record with an older version
+ * @param updatedAt epoch millis of the save
+ */
+public record ConversationRecord(
+        String conversationId,
+        String stage,
+        String lastIntent,
+        JsonNode state,
+        long version,
+        long updatedAt
+) {
+
+    boolean isNewerThan(ConversationRecord other) {
+        return other == null || version > other.version;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.smartmarketing.state;
+
+import com.example.smartmarketing.config.StateStoreProperties;
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Near cache in front of the {@link ConversationStateStore}. Saves update the local copy at once and
+ * write through asynchronously; loads are served locally for {@code nearCacheTtlMs} after the copy was
+ * last read or written, so a node only goes back to the store for conversations it has not seen lately.
+ * Within that window another node's writes are not visible; a conversation normally stays on the node
+ * its connection is on, and moves only on reconnect.
+ */
+@Component
+public class ConversationStateCache {
+
+    private record Entry(ConversationRecord record, long cachedAt) {
+    }
+
+    private final ConversationStateStore store;
+    private final AssistantMetrics metrics;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public ConversationStateCache(ConversationStateStore store, StateStoreProperties properties,
+                                  AssistantMetrics metrics) {
+        this.store = store;
+        this.metrics = metrics;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(properties.nearCacheTtlMs());
+        this.maxEntries = properties.nearCacheMaxEntries();
+    }
+
+    public CompletableFuture<Optional<ConversationRecord>> load(String conversationId) {
+        Entry entry = entries.get(conversationId);
+        if (entry != null && System.nanoTime() - entry.cachedAt() < ttlNanos) {
+            metrics.stateLoaded(true, 0);
+            return CompletableFuture.completedFuture(Optional.of(entry.record()));
+        }
+        long start = System.nanoTime();
+        return store.load(conversationId).thenApply(loaded -> {
+            metrics.stateLoaded(false, System.nanoTime() - start);
+            loaded.ifPresent(this::cache);
+            // A save of ours may still be on its way to the store
+            Entry cached = entries.get(conversationId);
+            return cached != null ? Optional.of(cached.record()) : loaded;
+        });
+    }
+
+    public CompletableFuture<Void> save(ConversationRecord record) {
+        cache(record);
+        long start = System.nanoTime();
+        return store.save(record).whenComplete((ignored, error) ->
+                metrics.stateSaved(System.nanoTime() - start, error != null));
+    }
+
+    private void cache(ConversationRecord record) {
+        long now = System.nanoTime();
+        entries.compute(record.conversationId(), (id, cached) ->
+                cached == null || !cached.record().isNewerThan(record) ? new Entry(record, now) : cached);
+        if (entries.size() > maxEntries) {
+            evict(now);
+        }
+    }
+
+    /**
+     * Drop expired copies, then arbitrary ones until back under the limit.
+     */
+    private void evict(long now) {
+        entries.values().removeIf(entry -> now - entry.cachedAt() >= ttlNanos);
+        Iterator<String> ids = entries.keySet().iterator();
+        while (entries.size() > maxEntries && ids.hasNext()) {
+            ids.next();
+            ids.remove();
+        }
+    }
+}
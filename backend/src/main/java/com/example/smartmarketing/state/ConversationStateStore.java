@@ -0,0 +1,20 @@
+package com.example.smartmarketing.state;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Where conversations live between connections, so that any node can resume one after a restart or
+ * failover. Implementations must be thread-safe and must not block the caller on I/O: they complete
+ * the returned futures from their own threads. The WebSocket handler reaches them through
+ * {@link ConversationStateCache}.
+ */
+public interface ConversationStateStore {
+
+    CompletableFuture<Optional<ConversationRecord>> load(String conversationId);
+
+    /**
+     * Store {@code record} unless the store already holds a newer version of it.
+     */
+    CompletableFuture<Void> save(ConversationRecord record);
+}
@@ -0,0 +1,102 @@
+package com.example.smartmarketing.state;
+
+import com.example.smartmarketing.config.StateStoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-in for a shared store: one {@code <conversationId>.json} file per conversation. Files are
+ * replaced atomically, so nodes sharing the directory read either the old or the new record, never a
+ * torn one. Reads and writes run on a small pool of I/O threads.
+ * <p>
+ * The version check before a write is only atomic within one node (writes of a conversation are
+ * serialized on a lock stripe); across nodes the last writer wins, as it would without conditional
+ * writes on a shared store.
+ */
+@Component
+@ConditionalOnProperty(name = "assistant.state-store.type", havingValue = "file")
+public class FileConversationStateStore implements ConversationStateStore {
+
+    private static final Pattern FILE_NAME = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final int LOCK_STRIPES = 64;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Path directory;
+    private final ExecutorService io;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public FileConversationStateStore(StateStoreProperties properties) throws IOException {
+        this.directory = Files.createDirectories(Path.of(properties.directory()));
+        AtomicInteger counter = new AtomicInteger();
+        this.io = Executors.newFixedThreadPool(Math.max(1, properties.ioThreads()), task -> {
+            Thread thread = new Thread(task, "state-store-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Optional<ConversationRecord>> load(String conversationId) {
+        return CompletableFuture.supplyAsync(() -> read(fileOf(conversationId)), io);
+    }
+
+    @Override
+    public CompletableFuture<Void> save(ConversationRecord record) {
+        return CompletableFuture.runAsync(() -> {
+            Path file = fileOf(record.conversationId());
+            synchronized (locks[Math.floorMod(record.conversationId().hashCode(), LOCK_STRIPES)]) {
+                if (!record.isNewerThan(read(file).orElse(null))) {
+                    return;
+                }
+                try {
+                    Path temp = Files.createTempFile(directory, record.conversationId(), ".tmp");
+                    mapper.writeValue(temp.toFile(), record);
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }, io);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        io.shutdown();
+    }
+
+    private Optional<ConversationRecord> read(Path file) {
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(mapper.readValue(file.toFile(), ConversationRecord.class));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path fileOf(String conversationId) {
+        // Ids come from clients: never let one name a path outside the directory
+        if (!FILE_NAME.matcher(conversationId).matches()) {
+            throw new IllegalArgumentException("Invalid conversation id: " + conversationId);
+        }
+        return directory.resolve(conversationId + ".json");
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.smartmarketing.state;
+
+import com.example.smartmarketing.config.StateStoreProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Single-node store: conversations survive reconnects but not a restart. Once it holds more than
+ * {@code memoryMaxConversations}, the least recently saved tenth is dropped.
+ */
+@Component
+@ConditionalOnProperty(name = "assistant.state-store.type", havingValue = "memory", matchIfMissing = true)
+public class InMemoryConversationStateStore implements ConversationStateStore {
+
+    private final ConcurrentMap<String, ConversationRecord> records = new ConcurrentHashMap<>();
+    private final int maxConversations;
+
+    public InMemoryConversationStateStore(StateStoreProperties properties) {
+        this.maxConversations = properties.memoryMaxConversations();
+    }
+
+    @Override
+    public CompletableFuture<Optional<ConversationRecord>> load(String conversationId) {
+        return CompletableFuture.completedFuture(Optional.ofNullable(records.get(conversationId)));
+    }
+
+    @Override
+    public CompletableFuture<Void> save(ConversationRecord record) {
+        records.merge(record.conversationId(), record,
+                (stored, saved) -> saved.isNewerThan(stored) ? saved : stored);
+        if (records.size() > maxConversations) {
+            evictOldest();
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private synchronized void evictOldest() {
+        int excess = records.size() - maxConversations;
+        if (excess <= 0) {
+            return;
+        }
+        records.values().stream()
+                .sorted(Comparator.comparingLong(ConversationRecord::updatedAt))
+                .limit(excess + maxConversations / 10)
+                .toList()
+                .forEach(record -> records.remove(record.conversationId(), record));
+    }
+}
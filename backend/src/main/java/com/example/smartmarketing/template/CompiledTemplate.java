@@ -0,0 +1,110 @@
+package com.example.smartmarketing.template;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@code {{placeholder}}} template split once into literal segments and placeholder slots.
+ * Rendering is a single pass of appends into a caller-supplied buffer; no scanning, regex or
+ * intermediate strings. Placeholders without a value are written back unchanged, matching the
+ * behaviour of {@code String.replace} for tokens nobody filled in.
+ */
+public final class CompiledTemplate {
+
+    private final String[] literals;      // literals[i] precedes placeholder i; one extra trailing literal
+    private final int[] slots;            // slot index of placeholder i
+    private final String[] rawTokens;     // "{{name}}" of placeholder i, written when unbound
+    private final Map<String, Integer> slotByName;
+    private final int literalLength;
+
+    private CompiledTemplate(List<String> literals, List<String> names) {
+        this.literals = literals.toArray(String[]::new);
+        this.slots = new int[names.size()];
+        this.rawTokens = new String[names.size()];
+        Map<String, Integer> byName = new LinkedHashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            slots[i] = byName.computeIfAbsent(name, n -> byName.size());
+            rawTokens[i] = "{{" + name + "}}";
+        }
+        this.slotByName = Map.copyOf(byName);
+        this.literalLength = literals.stream().mapToInt(String::length).sum();
+    }
+
+    public static CompiledTemplate compile(String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int pos = 0;
+        while (true) {
+            int open = source.indexOf("{{", pos);
+            int close = open < 0 ? -1 : source.indexOf("}}", open + 2);
+            if (close < 0) {
+                break;
+            }
+            literals.add(source.substring(pos, open));
+            names.add(source.substring(open + 2, close).trim());
+            pos = close + 2;
+        }
+        literals.add(source.substring(pos));
+        return new CompiledTemplate(literals, names);
+    }
+
+    /**
+     * Slot index of a placeholder, or -1 when the template does not use it.
+     * Resolve slots once and reuse them when rendering many times.
+     */
+    public int slot(String name) {
+        return slotByName.getOrDefault(name, -1);
+    }
+
+    /**
+     * Number of distinct placeholders; the size of the values array passed to {@link #renderTo}.
+     */
+    public int slotCount() {
+        return slotByName.size();
+    }
+
+    /**
+     * Length of the template without placeholders, a good initial buffer size.
+     */
+    public int literalLength() {
+        return literalLength;
+    }
+
+    /**
+     * Append the rendered template. {@code values[slot]} fills every occurrence of that placeholder;
+     * null leaves the placeholder as-is.
+     */
+    public void renderTo(StringBuilder out, String[] values) {
+        for (int i = 0; i < slots.length; i++) {
+            out.append(literals[i]);
+            String value = slots[i] < values.length ? values[slots[i]] : null;
+            out.append(value != null ? value : rawTokens[i]);
+        }
+        out.append(literals[slots.length]);
+    }
+
+    /**
+     * Convenience for one-off rendering by placeholder name.
+     */
+    public String render(Map<String, String> values) {
+        String[] bySlot = new String[slotCount()];
+        values.forEach((name, value) -> {
+            int slot = slot(name);
+            if (slot >= 0) {
+                bySlot[slot] = value;
+            }
+        });
+        StringBuilder out = new StringBuilder(literalLength + 64);
+        renderTo(out, bySlot);
+        return out.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledTemplate" + Arrays.toString(rawTokens);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.smartmarketing.template;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Renders one personalised email per recipient from a {@link CompiledTemplate}.
+ * Recipients are split into chunks rendered in parallel on a fork-join pool; each chunk reuses one
+ * buffer and one values array, so cost is linear in output size with no per-recipient template work.
+ * <p>
+ * Per-recipient placeholders: {@code firstName}, {@code name}, {@code email}, {@code score}.
+ * Any other placeholder is taken from the shared values (e.g. {@code deadline}).
+ */
+public final class EmailBatchRenderer {
+
+    /**
+     * Receives each rendered email. Called concurrently from several threads; {@code html} is only
+     * valid for the duration of the call, so copy it (toString()) if it must be kept.
+     */
+    @FunctionalInterface
+    public interface RenderedEmailConsumer {
+        void accept(EmailRecipient recipient, CharSequence html);
+    }
+
+    private static final int CHUNK_SIZE = 512;
+
+    private final ForkJoinPool pool;
+
+    public EmailBatchRenderer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public EmailBatchRenderer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public void renderBatch(CompiledTemplate template, List<EmailRecipient> recipients,
+                            Map<String, String> sharedValues, RenderedEmailConsumer consumer) {
+        Slots slots = new Slots(template, sharedValues);
+        pool.invoke(new RenderChunk(template, slots, recipients, 0, recipients.size(), consumer));
+    }
+
+    /**
+     * Render on the calling thread, for small batches that are already running on a worker.
+     */
+    public void renderEach(CompiledTemplate template, List<EmailRecipient> recipients,
+                           Map<String, String> sharedValues, RenderedEmailConsumer consumer) {
+        renderRange(template, new Slots(template, sharedValues), recipients, 0, recipients.size(), consumer);
+    }
+
+    private static void renderRange(CompiledTemplate template, Slots slots, List<EmailRecipient> recipients,
+                                    int from, int to, RenderedEmailConsumer consumer) {
+        String[] values = slots.shared().clone();
+        StringBuilder html = new StringBuilder(template.literalLength() + 256);
+        for (int i = from; i < to; i++) {
+            EmailRecipient recipient = recipients.get(i);
+            put(values, slots.firstName(), recipient.firstName());
+            put(values, slots.name(), recipient.name());
+            put(values, slots.email(), recipient.email());
+            put(values, slots.score(), Integer.toString(recipient.score()));
+            html.setLength(0);
+            template.renderTo(html, values);
+            consumer.accept(recipient, html);
+        }
+    }
+
+    private static void put(String[] values, int slot, String value) {
+        if (slot >= 0) {
+            values[slot] = value;
+        }
+    }
+
+    /**
+     * Slot indexes resolved once per batch, plus the shared values already placed by slot.
+     */
+    private record Slots(int firstName, int name, int email, int score, String[] shared) {
+
+        Slots(CompiledTemplate template, Map<String, String> sharedValues) {
+            this(template.slot("firstName"), template.slot("name"), template.slot("email"), template.slot("score"),
+                    sharedBySlot(template, sharedValues));
+        }
+
+        private static String[] sharedBySlot(CompiledTemplate template, Map<String, String> sharedValues) {
+            String[] values = new String[template.slotCount()];
+            sharedValues.forEach((key, value) -> {
+                int slot = template.slot(key);
+                if (slot >= 0) {
+                    values[slot] = value;
+                }
+            });
+            return values;
+        }
+    }
+
+    private static final class RenderChunk extends RecursiveAction {
+
+        private final CompiledTemplate template;
+        private final Slots slots;
+        private final List<EmailRecipient> recipients;
+        private final int from;
+        private final int to;
+        private final RenderedEmailConsumer consumer;
+
+        RenderChunk(CompiledTemplate template, Slots slots, List<EmailRecipient> recipients,
+                    int from, int to, RenderedEmailConsumer consumer) {
+            this.template = template;
+            this.slots = slots;
+            this.recipients = recipients;
+            this.from = from;
+            this.to = to;
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RenderChunk(template, slots, recipients, from, mid, consumer),
+                        new RenderChunk(template, slots, recipients, mid, to, consumer));
+                return;
+            }
+            renderRange(template, slots, recipients, from, to, consumer);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.smartmarketing.template;
+
+/**
+ * A personalisation target for {@link EmailBatchRenderer}.
+ */
+public record EmailRecipient(String id, String name, String email, int score) {
+
+    /**
+     * First word of the name, used for the {{firstName}} greeting.
+     */
+    public String firstName() {
+        int space = name.indexOf(' ');
+        return space < 0 ? name : name.substring(0, space);
+    }
+}
@@ -1,88 +1,197 @@
 package com.example.smartmarketing.util;
 
+import com.example.smartmarketing.config.DataProperties;
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import com.example.smartmarketing.template.CompiledTemplate;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * Utility class for loading mock data from JSON/HTML files in the data/ folder.
  * This allows easy modification of mock responses without recompiling Java code.
+ * <p>
+ * All files are parsed once into an immutable {@link DataSnapshot}. When
+ * {@code assistant.data.external-dir} is set, files there override the classpath copies and
+ * edits are picked up by a {@link WatchService} that swaps in a freshly parsed snapshot.
  */
 @Component
 public class DataLoader {
 
+    private static final Logger log = LoggerFactory.getLogger(DataLoader.class);
+
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path externalDir;
+    private final AtomicReference<DataSnapshot> snapshot = new AtomicReference<>();
+    private final List<Consumer<DataSnapshot>> reloadListeners = new CopyOnWriteArrayList<>();
+    private final WatchService watchService;
+    private final AssistantMetrics metrics;
+
+    public DataLoader(DataProperties properties, AssistantMetrics metrics) throws IOException {
+        this.metrics = metrics;
+        this.externalDir = properties.externalDir().isBlank() ? null : Path.of(properties.externalDir());
+        this.snapshot.set(buildSnapshot(1));
+
+        if (externalDir != null && properties.watch() && Files.isDirectory(externalDir)) {
+            this.watchService = externalDir.getFileSystem().newWatchService();
+            externalDir.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            Thread watcher = new Thread(() -> watchLoop(properties.reloadDebounceMs()), "data-watch");
+            watcher.setDaemon(true);
+            watcher.start();
+            log.info("Watching {} for data file changes", externalDir.toAbsolutePath());
+        } else {
+            this.watchService = null;
+        }
+    }
+
+    /**
+     * Current parsed data. Callers should read it once per request and use that instance throughout,
+     * so a concurrent reload cannot mix files from two versions.
+     */
+    public DataSnapshot snapshot() {
+        return snapshot.get();
+    }
 
     /**
-     * Load JSON file from classpath and parse as JsonNode
+     * Register a callback invoked after every successful reload.
+     */
+    public void addReloadListener(Consumer<DataSnapshot> listener) {
+        reloadListeners.add(listener);
+    }
+
+    /**
+     * Load JSON file and parse as JsonNode (bypasses the snapshot)
      */
     public JsonNode loadJson(String filename) {
-        try {
-            InputStream inputStream = new ClassPathResource("data/" + filename).getInputStream();
+        long started = System.nanoTime();
+        try (InputStream inputStream = open(filename)) {
             return objectMapper.readTree(inputStream);
         } catch (IOException e) {
             throw new RuntimeException("Failed to load data file: " + filename, e);
+        } finally {
+            metrics.dataLoaded(filename, System.nanoTime() - started);
         }
     }
 
     /**
-     * Load text/HTML file from classpath as string
+     * Load text/HTML file as string (bypasses the snapshot)
      */
     public String loadText(String filename) {
-        try {
-            InputStream inputStream = new ClassPathResource("data/" + filename).getInputStream();
+        long started = System.nanoTime();
+        try (InputStream inputStream = open(filename)) {
             return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
         } catch (IOException e) {
             throw new RuntimeException("Failed to load text file: " + filename, e);
+        } finally {
+            metrics.dataLoaded(filename, System.nanoTime() - started);
         }
     }
 
     /**
-     * Load segment data from segment-data.json
+     * Thinking steps for a specific stage, from the current snapshot
      */
-    public JsonNode loadSegmentData() {
-        return loadJson("segment-data.json");
+    public List<DataSnapshot.ThinkingStep> loadThinkingSteps(String stage) {
+        return snapshot().thinkingSteps(stage);
     }
 
-    /**
-     * Load email template from email-template.html
-     */
-    public String loadEmailTemplate() {
-        return loadText("email-template.html");
+    @PreDestroy
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
     }
 
-    /**
-     * Load journey plan from journey-plan.json
-     */
-    public JsonNode loadJourneyData() {
-        return loadJson("journey-plan.json");
+    private InputStream open(String filename) throws IOException {
+        if (externalDir != null) {
+            Path file = externalDir.resolve(filename);
+            if (Files.isRegularFile(file)) {
+                return Files.newInputStream(file);
+            }
+        }
+        return new ClassPathResource("data/" + filename).getInputStream();
     }
 
-    /**
-     * Load analytics data from analytics-data.json
-     */
-    public JsonNode loadAnalyticsData() {
-        return loadJson("analytics-data.json");
+    private DataSnapshot buildSnapshot(long version) {
+        long started = System.nanoTime();
+        String emailTemplate = loadText("email-template.html");
+        DataSnapshot built = new DataSnapshot(
+                version,
+                Instant.now(),
+                DataSnapshot.SegmentData.from(loadJson("segment-data.json")),
+                emailTemplate,
+                CompiledTemplate.compile(emailTemplate),
+                DataSnapshot.JourneyData.from(loadJson("journey-plan.json")),
+                DataSnapshot.AnalyticsData.from(loadJson("analytics-data.json")),
+                DataSnapshot.DeploymentConfig.from(loadJson("deployment-config.json")),
+                DataSnapshot.ThinkingStep.allFrom(loadJson("thinking-steps.json"))
+        );
+        // Whole build, including template compilation and mapping the trees onto the snapshot records
+        metrics.dataLoaded("snapshot", System.nanoTime() - started);
+        return built;
     }
 
-    /**
-     * Load deployment config from deployment-config.json
-     */
-    public JsonNode loadDeploymentConfig() {
-        return loadJson("deployment-config.json");
+    private void watchLoop(long debounceMs) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                // Drain follow-up events until the directory has been quiet for the debounce period
+                do {
+                    key.pollEvents();
+                    key.reset();
+                    key = watchService.poll(debounceMs, TimeUnit.MILLISECONDS);
+                } while (key != null);
+                try {
+                    reload();
+                } catch (RuntimeException e) {
+                    // Keep watching: the next change gets another chance
+                    log.error("Data reload failed", e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Shutting down
+        }
     }
 
-    /**
-     * Load thinking steps for a specific stage
-     */
-    public JsonNode loadThinkingSteps(String stage) {
-        JsonNode allSteps = loadJson("thinking-steps.json");
-        return allSteps.path(stage);
+    private void reload() {
+        DataSnapshot current = snapshot.get();
+        DataSnapshot next;
+        try {
+            next = buildSnapshot(current.version() + 1);
+        } catch (RuntimeException e) {
+            log.warn("Keeping data snapshot v{}: reload failed", current.version(), e);
+            return;
+        }
+        snapshot.set(next);
+        log.info("Reloaded data snapshot v{}", next.version());
+        for (Consumer<DataSnapshot> listener : reloadListeners) {
+            try {
+                listener.accept(next);
+            } catch (RuntimeException e) {
+                log.error("Reload listener failed for data snapshot v{}", next.version(), e);
+            }
+        }
     }
 }
-
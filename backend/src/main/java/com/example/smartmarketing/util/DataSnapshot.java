@@ -0,0 +1,237 @@
+package com.example.smartmarketing.util;
+
+import com.example.smartmarketing.segment.SegmentFilter;
+import com.example.smartmarketing.template.CompiledTemplate;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, fully parsed view of every file in the data/ folder.
+ * Built once by {@link DataLoader} and replaced as a whole when the files change,
+ * so request handling never touches the file system or Jackson.
+ *
+ * @param version               increases by one on every reload; caches can compare it to detect stale entries
+ * @param loadedAt              when this snapshot was built
+ * @param emailTemplate         raw email-template.html
+ * @param compiledEmailTemplate the same template split into segments once, for fast rendering
+ */
+public record DataSnapshot(
+        long version,
+        Instant loadedAt,
+        SegmentData segment,
+        String emailTemplate,
+        CompiledTemplate compiledEmailTemplate,
+        JourneyData journey,
+        AnalyticsData analytics,
+        DeploymentConfig deployment,
+        Map<String, List<ThinkingStep>> thinkingSteps
+) {
+
+    /**
+     * Thinking steps for a stage, or an empty list when the stage has none.
+     */
+    public List<ThinkingStep> thinkingSteps(String stage) {
+        return thinkingSteps.getOrDefault(stage, List.of());
+    }
+
+    /**
+     * segment-data.json
+     *
+     * @param totalMatched fallback count shown when no {@code filters} are configured
+     * @param filters      structured segment evaluated against the customer store, or null
+     */
+    public record SegmentData(String suggestion, int totalMatched, List<Lead> topLeads, SegmentFilter filters) {
+
+        static SegmentData from(JsonNode node) {
+            List<Lead> leads = new ArrayList<>();
+            for (JsonNode leadNode : elements(node.path("topLeads"))) {
+                leads.add(new Lead(
+                        leadNode.path("id").asText(),
+                        leadNode.path("name").asText(),
+                        leadNode.path("email").asText(),
+                        leadNode.path("score").asInt()
+                ));
+            }
+            return new SegmentData(
+                    node.path("suggestion").asText(),
+                    node.path("totalMatched").asInt(3847),
+                    List.copyOf(leads),
+                    node.has("filters") ? SegmentFilter.from(node.path("filters")) : null);
+        }
+    }
+
+    public record Lead(String id, String name, String email, int score) {
+    }
+
+    /**
+     * journey-plan.json
+     */
+    public record JourneyData(String plan, String scheduleHint) {
+
+        static JourneyData from(JsonNode node) {
+            return new JourneyData(node.path("plan").asText(), node.path("scheduleHint").asText());
+        }
+    }
+
+    /**
+     * analytics-data.json
+     *
+     * @param campaignId campaign whose live funnel counters are reported on top of the file's counts
+     */
+    public record AnalyticsData(
+            String campaignId,
+            List<FunnelStage> funnelStages,
+            int totalImpressions,
+            int totalLeads,
+            double overallConversionRate,
+            Bottleneck bottleneck
+    ) {
+
+        static AnalyticsData from(JsonNode node) {
+            List<FunnelStage> stages = new ArrayList<>();
+            for (JsonNode stageNode : elements(node.path("funnelStages"))) {
+                Double change = stageNode.has("change") && !stageNode.path("change").isNull()
+                        ? stageNode.path("change").asDouble()
+                        : null;
+                stages.add(new FunnelStage(
+                        stageNode.path("stage").asText(),
+                        stageNode.path("count").asInt(),
+                        stageNode.path("rate").asDouble(),
+                        change
+                ));
+            }
+
+            JsonNode bottleneckNode = node.path("bottleneck");
+            Bottleneck bottleneck = new Bottleneck(
+                    bottleneckNode.path("stage").asText(),
+                    bottleneckNode.path("fromStage").asText(""),
+                    bottleneckNode.path("toStage").asText(""),
+                    bottleneckNode.path("dropoffRate").asDouble(),
+                    texts(bottleneckNode.path("reasons")),
+                    texts(bottleneckNode.path("recommendations"))
+            );
+
+            return new AnalyticsData(
+                    node.path("campaignId").asText("default"),
+                    List.copyOf(stages),
+                    node.path("totalImpressions").asInt(),
+                    node.path("totalLeads").asInt(),
+                    node.path("overallConversionRate").asDouble(),
+                    bottleneck);
+        }
+
+        /**
+         * Stage counts from the file, in funnel order; live events are added on top of them.
+         */
+        public long[] baselineCounts() {
+            long[] counts = new long[funnelStages.size()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = funnelStages.get(i).count();
+            }
+            return counts;
+        }
+    }
+
+    public record FunnelStage(String stage, int count, double rate, Double change) {
+    }
+
+    /**
+     * @param fromStage event type the transition starts from, e.g. {@code lead}; empty when not given
+     * @param toStage   event type the transition ends at, e.g. {@code qualified_lead}
+     */
+    public record Bottleneck(String stage, String fromStage, String toStage, double dropoffRate,
+                             List<String> reasons, List<String> recommendations) {
+    }
+
+    /**
+     * deployment-config.json. {@code progressSteps} are the percentages at which a progress frame is
+     * reported; the numbers themselves come from the live deployment.
+     */
+    public record DeploymentConfig(
+            int totalRecipients,
+            double successRate,
+            double failureRate,
+            int throughputPerSecond,
+            List<Integer> progressSteps,
+            int progressIntervalMs,
+            int batchSize,
+            int maxRetries,
+            int retryBackoffMs,
+            List<Phase> phases
+    ) {
+
+        static DeploymentConfig from(JsonNode node) {
+            List<Integer> steps = new ArrayList<>();
+            for (JsonNode step : elements(node.path("progressSteps"))) {
+                steps.add(step.asInt());
+            }
+            List<Phase> phases = new ArrayList<>();
+            for (JsonNode phaseNode : elements(node.path("phases"))) {
+                phases.add(new Phase(phaseNode.path("progressThreshold").asInt(), phaseNode.path("description").asText()));
+            }
+            return new DeploymentConfig(
+                    node.path("totalRecipients").asInt(3847),
+                    node.path("successRate").asDouble(0.97),
+                    node.path("failureRate").asDouble(0.03),
+                    node.path("throughputPerSecond").asInt(850),
+                    List.copyOf(steps),
+                    node.path("progressIntervalMs").asInt(250),
+                    node.path("batchSize").asInt(50),
+                    node.path("maxRetries").asInt(3),
+                    node.path("retryBackoffMs").asInt(200),
+                    List.copyOf(phases));
+        }
+
+        /**
+         * Description of the first phase whose threshold is above the given progress,
+         * or the last phase once progress has passed every threshold.
+         */
+        public String phaseFor(int progress) {
+            for (Phase phase : phases) {
+                if (progress < phase.progressThreshold()) {
+                    return phase.description();
+                }
+            }
+            return phases.isEmpty() ? "Processing..." : phases.get(phases.size() - 1).description();
+        }
+    }
+
+    public record Phase(int progressThreshold, String description) {
+    }
+
+    /**
+     * One entry of thinking-steps.json
+     */
+    public record ThinkingStep(String step, int delayMs) {
+
+        static Map<String, List<ThinkingStep>> allFrom(JsonNode node) {
+            Map<String, List<ThinkingStep>> byStage = new LinkedHashMap<>();
+            node.fields().forEachRemaining(entry -> {
+                List<ThinkingStep> steps = new ArrayList<>();
+                for (JsonNode stepNode : elements(entry.getValue())) {
+                    steps.add(new ThinkingStep(stepNode.path("step").asText(), stepNode.path("delayMs").asInt(800)));
+                }
+                byStage.put(entry.getKey(), List.copyOf(steps));
+            });
+            return Collections.unmodifiableMap(byStage);
+        }
+    }
+
+    private static Iterable<JsonNode> elements(JsonNode array) {
+        return array.isArray() ? array : List.of();
+    }
+
+    private static List<String> texts(JsonNode array) {
+        List<String> values = new ArrayList<>();
+        for (JsonNode node : elements(array)) {
+            values.add(node.asText());
+        }
+        return List.copyOf(values);
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.smartmarketing.ws;
+
+import com.example.smartmarketing.exec.AdmissionController;
+import com.example.smartmarketing.exec.AdmissionRejectedException;
+import com.example.smartmarketing.exec.ConversationExecutor;
+import com.example.smartmarketing.exec.Timeline;
+import com.example.smartmarketing.exec.TimelineRun;
+import com.example.smartmarketing.exec.TimelineScheduler;
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import com.example.smartmarketing.state.ConversationRecord;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Serial mailbox for one session's intents. At most one stage runs at a time:
+ * <ul>
+ *   <li>an intent repeating the one that is running, or the one already waiting, is dropped;</li>
+ *   <li>any other intent cancels the running stage (including a deployment's send pipeline) and starts
+ *       once the cancelled stage's last step has returned, so two stages never send at once;</li>
+ *   <li>once the running stage's final step has started, its result is as good as sent: any new intent,
+ *       even a repeat, waits behind it instead of cancelling it, and targets the next stage;</li>
+ *   <li>of a burst of intents arriving while a cancelled stage winds down, only the latest runs.</li>
+ * </ul>
+ * A preempted stage does not advance the conversation, so the new intent re-runs the same stage.
+ * Each stage first waits for a slot from the {@link AdmissionController}; a stage turned away gets a busy
+ * reply and does not advance the conversation either. The slot is held while the stage does its work, and
+ * given back once the stage reports it done, so the paced frames that follow do not hold it.
+ * <p>
+ * The actor holds the conversation's id and stage in memory and hands out checkpoints for the
+ * conversation store; {@link #resume} picks a stored conversation up on a new connection.
+ */
+final class ConversationActor {
+
+    /**
+     * Builds the paced frames of one stage for an intent. The timeline runs {@code workDone} once the
+     * stage's result is computed, to free its admission slot; otherwise the slot is held until it ends.
+     */
+    @FunctionalInterface
+    interface StageTimelines {
+        Timeline build(ConversationActor actor, String intent, ConversationStage stage, Runnable workDone);
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationActor.class);
+
+    private final WebSocketSession session;
+    private final TimelineScheduler scheduler;
+    private final ConversationExecutor executor;
+    private final AdmissionController admission;
+    private final StageTimelines timelines;
+    private final AssistantMetrics metrics;
+
+    // Guarded by "this"
+    private String conversationId = UUID.randomUUID().toString();
+    private long checkpointVersion;
+    private boolean restoring;
+    private ConversationStage stage = ConversationStage.SEGMENT;
+    private TimelineRun current;
+    private String currentIntent;
+    private boolean finishing;
+    private String pendingIntent;
+    private long pendingReceivedAt;
+    private boolean closed;
+
+    ConversationActor(WebSocketSession session, TimelineScheduler scheduler, ConversationExecutor executor,
+                      AdmissionController admission, StageTimelines timelines, AssistantMetrics metrics) {
+        this.session = session;
+        this.scheduler = scheduler;
+        this.executor = executor;
+        this.admission = admission;
+        this.timelines = timelines;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Hand an intent to the mailbox. Replies busy when the stage is not admitted or the executor cannot take it.
+     *
+     * @param receivedAt {@link System#nanoTime()} when the intent arrived, for stage latency
+     */
+    void submit(String intent, long receivedAt) throws IOException {
+        boolean started;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (restoring || pendingIntent != null) {
+                // Still restoring, or waiting for the cancelled stage to wind down: only the latest intent matters
+                if (pendingIntent != null) {
+                    metrics.intentCoalesced();
+                }
+                pendingIntent = intent;
+                pendingReceivedAt = receivedAt;
+                return;
+            }
+            if (current != null && !current.settled().isDone()) {
+                if (!finishing && !current.isDone() && intent.equals(currentIntent)) {
+                    metrics.intentCoalesced();
+                    return;
+                }
+                pendingIntent = intent;
+                pendingReceivedAt = receivedAt;
+                if (!finishing && current.cancel()) {
+                    metrics.stagePreempted();
+                }
+                current.settled().thenRun(this::startPending);
+                return;
+            }
+            started = start(intent, receivedAt);
+        }
+        if (!started) {
+            session.sendMessage(OutboundFrames.busy(admission.retryAfterMs()));
+        }
+    }
+
+    /**
+     * Move the conversation on; called by a stage's final step before it sends its result, so an
+     * intent the client sends in reply already targets the next stage, and waits for this one to finish
+     * rather than cancelling it.
+     */
+    synchronized void advanceTo(ConversationStage next) {
+        stage = next;
+        finishing = true;
+    }
+
+    synchronized String conversationId() {
+        return conversationId;
+    }
+
+    /**
+     * Continue a stored conversation on this connection. Intents arriving meanwhile wait, latest only,
+     * until {@code restored} completes with the stored record, or with null when there is none.
+     * Refused once this connection has started a stage of its own.
+     */
+    boolean resume(String id, CompletableFuture<ConversationRecord> restored) {
+        synchronized (this) {
+            if (closed || restoring || current != null) {
+                return false;
+            }
+            conversationId = id;
+            restoring = true;
+        }
+        restored.whenComplete((record, error) -> {
+            synchronized (this) {
+                restoring = false;
+                if (error != null) {
+                    log.warn("Failed to restore conversation {}, starting over", id, error);
+                } else if (record != null) {
+                    stage = ConversationStage.fromWireName(record.stage());
+                    checkpointVersion = record.version();
+                }
+            }
+            startPending();
+        });
+        return true;
+    }
+
+    /**
+     * Record for the conversation store once a stage's result went out: the stage to run next,
+     * the intent that produced the result and the state sent so far.
+     */
+    synchronized ConversationRecord checkpoint(String intent, JsonNode state) {
+        checkpointVersion++;
+        return new ConversationRecord(conversationId, stage.wireName(), intent, state, checkpointVersion,
+                System.currentTimeMillis());
+    }
+
+    /**
+     * Cancel whatever is running and refuse further intents, e.g. once the connection closed.
+     */
+    void close() {
+        synchronized (this) {
+            closed = true;
+            pendingIntent = null;
+        }
+        TimelineRun run = currentRun();
+        if (run != null) {
+            run.cancel();
+        }
+    }
+
+    private synchronized TimelineRun currentRun() {
+        return current;
+    }
+
+    private void startPending() {
+        boolean started;
+        synchronized (this) {
+            if (closed || pendingIntent == null) {
+                return;
+            }
+            String intent = pendingIntent;
+            pendingIntent = null;
+            started = start(intent, pendingReceivedAt);
+        }
+        if (!started) {
+            sendBusy();
+        }
+    }
+
+    private void sendBusy() {
+        try {
+            session.sendMessage(OutboundFrames.busy(admission.retryAfterMs()));
+        } catch (IOException e) {
+            log.debug("Failed to send busy reply to session {}", session.getId(), e);
+        }
+    }
+
+    /**
+     * Start the current stage for {@code intent}; false when it is turned away at once, by a full
+     * admission queue or a saturated executor. Caller holds the lock.
+     */
+    private boolean start(String intent, long receivedAt) {
+        ConversationStage runStage = stage;
+        AdmissionController.Ticket ticket = admission.admitStage();
+        if (ticket.granted().isCompletedExceptionally()) {
+            return false;
+        }
+        String stageName = runStage.wireName();
+        TimelineRun run;
+        // Pace the stage on the timeline scheduler: waiting between steps holds no thread
+        try {
+            Runnable workDone = () -> ticket.release(stageName, true);
+            run = scheduler.start(timelines.build(this, intent, runStage, workDone).after(ticket::granted));
+        } catch (RejectedExecutionException e) {
+            ticket.release(stageName, false);
+            log.warn("Conversation executor saturated, rejecting intent for session {}: {}", session.getId(), executor.stats());
+            return false;
+        }
+        current = run;
+        currentIntent = intent;
+        finishing = false;
+        metrics.conversationStarted();
+        run.completion().whenComplete((ignored, error) -> {
+            ticket.release(stageName, error == null);
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause instanceof CancellationException || cause instanceof AdmissionRejectedException) {
+                metrics.conversationCancelled();
+                if (cause instanceof AdmissionRejectedException) {
+                    // Waited too long for a slot
+                    sendBusy();
+                }
+                return;
+            }
+            metrics.conversationFinished(stageName, System.nanoTime() - receivedAt, error != null);
+            if (error != null) {
+                log.error("Stage {} failed for session {}", stageName, session.getId(), error);
+            }
+        });
+        return true;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.smartmarketing.ws;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+
+/**
+ * Outbound side of a conversation, which its stages send through. Frames go to the connection the
+ * conversation is attached to, if any.
+ * <p>
+ * Once replay is enabled every text frame gets a sequence number, appended as a last {@code "seq"} field,
+ * and is kept in a log bounded by frame count and characters. A client that reconnects tells which
+ * sequence it saw last and {@link #attach} replays the logged frames after it. While no connection is
+ * attached frames are only logged, and a send failing because the connection is going away does not fail
+ * the stage: the frame is in the log.
+ */
+final class ConversationChannel extends WebSocketSessionDecorator {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationChannel.class);
+
+    private record Logged(long seq, TextMessage message) {
+    }
+
+    // Guarded by "this"
+    private WebSocketSession target;
+    private String attachedSessionId;
+    private long attachEpoch;
+    private boolean replay;
+    private int maxFrames;
+    private int maxChars;
+    private final Deque<Logged> frames = new ArrayDeque<>();
+    private long loggedChars;
+    private long seq;
+
+    ConversationChannel(WebSocketSession outbound, String sessionId) {
+        super(outbound);
+        this.target = outbound;
+        this.attachedSessionId = sessionId;
+    }
+
+    synchronized void enableReplay(int maxFrames, int maxChars) {
+        this.replay = true;
+        this.maxFrames = maxFrames;
+        this.maxChars = maxChars;
+    }
+
+    synchronized boolean replayEnabled() {
+        return replay;
+    }
+
+    @Override
+    public synchronized void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (!replay || !(message instanceof TextMessage text)) {
+            if (target != null) {
+                target.sendMessage(message);
+            }
+            return;
+        }
+        TextMessage stamped = stamp(text, ++seq);
+        frames.addLast(new Logged(seq, stamped));
+        loggedChars += stamped.getPayload().length();
+        while (frames.size() > maxFrames || (loggedChars > maxChars && frames.size() > 1)) {
+            loggedChars -= frames.removeFirst().message().getPayload().length();
+        }
+        if (target != null) {
+            try {
+                target.sendMessage(stamped);
+            } catch (IOException e) {
+                log.debug("Frame {} not delivered to session {}, kept for replay", seq, attachedSessionId, e);
+            }
+        }
+    }
+
+    /**
+     * Whether some frame after {@code lastSeq} has already dropped out of the log.
+     */
+    synchronized boolean missedSince(long lastSeq) {
+        if (lastSeq >= seq) {
+            return false;
+        }
+        return frames.isEmpty() || frames.peekFirst().seq() > lastSeq + 1;
+    }
+
+    /**
+     * Send the logged frames after {@code lastSeq} to {@code outbound}, then make it the connection
+     * that receives new frames. Returns the number of frames replayed.
+     */
+    synchronized int attach(WebSocketSession outbound, String sessionId, long lastSeq) throws IOException {
+        int replayed = 0;
+        for (Logged frame : frames) {
+            if (frame.seq() > lastSeq) {
+                outbound.sendMessage(frame.message());
+                replayed++;
+            }
+        }
+        target = outbound;
+        attachedSessionId = sessionId;
+        attachEpoch++;
+        return replayed;
+    }
+
+    /**
+     * Stop sending to {@code sessionId}'s connection. Returns an epoch for {@link #detachedSince}, or -1
+     * when the conversation has meanwhile been attached to another connection.
+     */
+    synchronized long detach(String sessionId) {
+        if (!Objects.equals(sessionId, attachedSessionId)) {
+            return -1;
+        }
+        target = null;
+        attachedSessionId = null;
+        return ++attachEpoch;
+    }
+
+    /**
+     * Whether no connection has attached since the {@link #detach} that returned {@code epoch}.
+     */
+    synchronized boolean detachedSince(long epoch) {
+        return target == null && attachEpoch == epoch;
+    }
+
+    /**
+     * Every frame is a JSON object: insert the field before its closing brace. Appending keeps the
+     * leading {@code "type"} field that {@link MeteredSession} reads.
+     */
+    private static TextMessage stamp(TextMessage text, long seq) {
+        String payload = text.getPayload();
+        StringBuilder stamped = new StringBuilder(payload.length() + 24)
+                .append(payload, 0, payload.length() - 1)
+                .append(",\"seq\":")
+                .append(seq)
+                .append('}');
+        return new TextMessage(stamped);
+    }
+}
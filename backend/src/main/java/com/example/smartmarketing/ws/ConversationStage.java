@@ -0,0 +1,33 @@
+package com.example.smartmarketing.ws;
+
+import java.util.Locale;
+
+/**
+ * Steps of the guided campaign conversation, in the order a session walks through them.
+ */
+enum ConversationStage {
+    SEGMENT,
+    EMAIL,
+    JOURNEY,
+    DEPLOYMENT,
+    ANALYTICS;
+
+    /**
+     * Lower-case name used in frames and metrics, e.g. {@code segment}.
+     */
+    String wireName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Inverse of {@link #wireName()}; unknown names (e.g. from an older stored conversation) restart at SEGMENT.
+     */
+    static ConversationStage fromWireName(String name) {
+        for (ConversationStage stage : values()) {
+            if (stage.wireName().equals(name)) {
+                return stage;
+            }
+        }
+        return SEGMENT;
+    }
+}
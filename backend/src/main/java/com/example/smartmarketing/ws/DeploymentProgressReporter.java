@@ -0,0 +1,114 @@
+package com.example.smartmarketing.ws;
+
+import com.example.smartmarketing.deploy.DeploymentRun;
+import com.example.smartmarketing.exec.TimelineScheduler;
+import com.example.smartmarketing.util.DataSnapshot;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Turns the live counters of a {@link DeploymentRun} into deployment_progress frames.
+ * Counters are sampled every {@code progressIntervalMs}; a frame is sent whenever progress crosses the
+ * next checkpoint from {@code progressSteps}, and a final "completed" frame once the run finishes.
+ */
+final class DeploymentProgressReporter {
+
+    private final TimelineScheduler scheduler;
+    private final StateFrameWriter frameWriter;
+
+    DeploymentProgressReporter(TimelineScheduler scheduler, StateFrameWriter frameWriter) {
+        this.scheduler = scheduler;
+        this.frameWriter = frameWriter;
+    }
+
+    /**
+     * Report until the run completes. Cancelling the returned future cancels the run.
+     */
+    CompletableFuture<Void> report(WebSocketSession session, DeploymentRun run, DataSnapshot.DeploymentConfig config) {
+        CompletableFuture<Void> reported = new CompletableFuture<>();
+        reported.whenComplete((ignored, error) -> {
+            if (error != null) {
+                run.cancel();
+            }
+        });
+        new Tick(session, run, config, reported).scheduleNext();
+        return reported;
+    }
+
+    private final class Tick implements Runnable {
+
+        private final WebSocketSession session;
+        private final DeploymentRun run;
+        private final DataSnapshot.DeploymentConfig config;
+        private final CompletableFuture<Void> reported;
+        private final List<Integer> checkpoints;
+        private int nextCheckpoint;
+
+        Tick(WebSocketSession session, DeploymentRun run, DataSnapshot.DeploymentConfig config,
+             CompletableFuture<Void> reported) {
+            this.session = session;
+            this.run = run;
+            this.config = config;
+            this.reported = reported;
+            this.checkpoints = config.progressSteps();
+        }
+
+        @Override
+        public void run() {
+            if (reported.isDone()) {
+                return;
+            }
+            try {
+                if (run.completion().isCompletedExceptionally()) {
+                    run.completion().join();
+                }
+                if (run.isDone()) {
+                    send(100, "completed");
+                    reported.complete(null);
+                    return;
+                }
+                int progress = run.totalRecipients() == 0 ? 100 : run.processed() * 100 / run.totalRecipients();
+                if (nextCheckpoint < checkpoints.size() && progress >= checkpoints.get(nextCheckpoint) && progress < 100) {
+                    while (nextCheckpoint < checkpoints.size() && progress >= checkpoints.get(nextCheckpoint)) {
+                        nextCheckpoint++;
+                    }
+                    send(progress, "deploying");
+                }
+                scheduleNext();
+            } catch (Exception e) {
+                reported.completeExceptionally(e);
+            }
+        }
+
+        /**
+         * Sample again after the interval. A tick the executor rejects fails the report (and so the run)
+         * rather than leaving it waiting for a tick that never comes.
+         */
+        void scheduleNext() {
+            scheduler.schedule(this, config.progressIntervalMs()).whenComplete((ignored, error) -> {
+                if (error != null) {
+                    reported.completeExceptionally(error);
+                }
+            });
+        }
+
+        private void send(int progress, String status) throws Exception {
+            double throughput = run.throughputPerSecond();
+            int remaining = run.totalRecipients() - run.processed();
+            String timeRemaining;
+            if ("completed".equals(status)) {
+                timeRemaining = "Completed";
+            } else {
+                double rate = throughput > 0 ? throughput : config.throughputPerSecond();
+                timeRemaining = String.format("%d seconds", (long) Math.ceil(remaining / rate));
+            }
+            int reportedThroughput = throughput > 0 ? (int) Math.round(throughput) : config.throughputPerSecond();
+
+            DeploymentProgressUpdate update = new DeploymentProgressUpdate(status, progress, run.totalRecipients(),
+                    run.delivered(), run.failed(), config.phaseFor(progress), timeRemaining, reportedThroughput);
+            session.sendMessage(frameWriter.deploymentProgress(update));
+        }
+    }
+}
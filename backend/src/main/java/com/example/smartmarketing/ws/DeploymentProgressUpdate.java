@@ -0,0 +1,16 @@
+package com.example.smartmarketing.ws;
+
+/**
+ * Payload of a deployment_progress frame.
+ */
+record DeploymentProgressUpdate(
+        String status,
+        int progressPercent,
+        int totalRecipients,
+        int successCount,
+        int failedCount,
+        String currentPhase,
+        String estimatedTimeRemaining,
+        int throughputPerSecond
+) {
+}
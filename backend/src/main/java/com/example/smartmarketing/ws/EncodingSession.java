@@ -0,0 +1,146 @@
+package com.example.smartmarketing.ws;
+
+import com.example.smartmarketing.config.CompressionProperties;
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Innermost session view that, once the client opted in with {@code {"type":"ping","encoding":...}}, sends
+ * text frames of at least {@code assistant.compression.threshold-bytes} as binary frames in that encoding:
+ * <ul>
+ *   <li>{@code deflate}: the raw DEFLATE (no zlib header) of their UTF-8 JSON</li>
+ *   <li>{@code cbor}: the same document as CBOR (RFC 8949), which needs no text parsing on the client</li>
+ * </ul>
+ * Smaller frames, and frames that would not shrink, stay text frames, so clients must accept both.
+ * <p>
+ * Sends are serialized by {@link OutboundSession}, but a {@link Deflater} holds native buffers worth
+ * keeping warm, so one is cached per sending thread rather than per session.
+ */
+final class EncodingSession extends WebSocketSessionDecorator {
+
+    enum Encoding {
+        DEFLATE("deflate"),
+        CBOR("cbor");
+
+        private final String id;
+
+        Encoding(String id) {
+            this.id = id;
+        }
+
+        String id() {
+            return id;
+        }
+
+        static Encoding of(String id) {
+            for (Encoding encoding : values()) {
+                if (encoding.id.equals(id)) {
+                    return encoding;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final String PROTOCOL_DEFLATE = "permessage-deflate";
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final CBORFactory CBOR = new CBORFactory();
+
+    private final CompressionProperties properties;
+    private final AssistantMetrics metrics;
+    private final ThreadLocal<Deflater> deflaters;
+    private volatile Encoding encoding;
+
+    EncodingSession(WebSocketSession delegate, CompressionProperties properties, ThreadLocal<Deflater> deflaters,
+                    AssistantMetrics metrics) {
+        super(delegate);
+        this.properties = properties;
+        this.deflaters = deflaters;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Switch the session to binary frames in the encoding the client asked for. Returns the encoding in effect,
+     * or null when it is unknown, encoding is disabled, or the client asked for {@code deflate} on a connection
+     * that already negotiated permessage-deflate (compressing twice only costs CPU).
+     */
+    Encoding negotiate(String requested) {
+        Encoding candidate = Encoding.of(requested);
+        if (!properties.enabled() || candidate == null || (candidate == Encoding.DEFLATE && hasProtocolDeflate())) {
+            return null;
+        }
+        encoding = candidate;
+        return candidate;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        Encoding current = encoding;
+        // Chars never exceed UTF-8 bytes, so the length check skips small frames without encoding them
+        if (current != null && message instanceof TextMessage text
+                && text.getPayload().length() >= properties.thresholdBytes()) {
+            long start = System.nanoTime();
+            // Frames from StateFrameWriter already hold their UTF-8 bytes
+            byte[] json = text.asBytes();
+            byte[] encoded = current == Encoding.DEFLATE ? deflate(deflaters.get(), json) : cbor(json);
+            if (encoded.length < json.length) {
+                metrics.frameCompressed(json.length, encoded.length, System.nanoTime() - start);
+                super.sendMessage(new BinaryMessage(encoded));
+                return;
+            }
+        }
+        super.sendMessage(message);
+    }
+
+    private boolean hasProtocolDeflate() {
+        for (WebSocketExtension extension : getExtensions()) {
+            if (PROTOCOL_DEFLATE.equals(extension.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static byte[] deflate(Deflater deflater, byte[] input) {
+        deflater.reset();
+        deflater.setInput(input);
+        deflater.finish();
+        // JSON frames usually compress 4-10x
+        byte[] out = new byte[Math.max(64, input.length / 4)];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == out.length) {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            length += deflater.deflate(out, length, out.length - length);
+        }
+        return Arrays.copyOf(out, length);
+    }
+
+    /**
+     * Re-encode a JSON document as CBOR token by token, without building a tree.
+     */
+    static byte[] cbor(byte[] json) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+        try (JsonParser parser = JSON.createParser(json);
+             JsonGenerator generator = CBOR.createGenerator(out)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        }
+        return out.toByteArray();
+    }
+}
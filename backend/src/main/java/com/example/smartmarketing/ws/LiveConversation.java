@@ -0,0 +1,9 @@
+package com.example.smartmarketing.ws;
+
+/**
+ * Everything a conversation keeps on this node: its intent mailbox, the state its client holds and the
+ * channel its frames go out through. Held by the connection it is attached to, and by
+ * {@link LiveConversations} while it may be resumed by another one.
+ */
+record LiveConversation(ConversationActor actor, SessionStateTracker state, ConversationChannel channel) {
+}
@@ -0,0 +1,67 @@
+package com.example.smartmarketing.ws;
+
+import com.example.smartmarketing.exec.TimelineScheduler;
+import com.example.smartmarketing.metrics.AssistantMetrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Conversations on this node whose client opted into replay, by conversation id. Such a conversation
+ * outlives its connection: when the connection drops it is detached and its stage keeps running into
+ * the replay log; if no connection attaches within the detach timeout it is closed, cancelling the stage.
+ * A reconnect that lands on another node resumes from the conversation store instead.
+ */
+final class LiveConversations {
+
+    private final ConcurrentMap<String, LiveConversation> byId = new ConcurrentHashMap<>();
+    private final TimelineScheduler scheduler;
+    private final long detachTimeoutMs;
+    private final AssistantMetrics metrics;
+
+    LiveConversations(TimelineScheduler scheduler, long detachTimeoutMs, AssistantMetrics metrics) {
+        this.scheduler = scheduler;
+        this.detachTimeoutMs = detachTimeoutMs;
+        this.metrics = metrics;
+    }
+
+    void register(LiveConversation conversation) {
+        byId.put(conversation.actor().conversationId(), conversation);
+    }
+
+    LiveConversation find(String conversationId) {
+        return byId.get(conversationId);
+    }
+
+    /**
+     * The connection {@code sessionId} closed: keep the conversation running unattached until a
+     * connection attaches or the detach timeout passes.
+     */
+    void detach(LiveConversation conversation, String sessionId) {
+        long epoch = conversation.channel().detach(sessionId);
+        if (epoch < 0) {
+            // Already attached to a newer connection
+            return;
+        }
+        metrics.conversationDetached();
+        scheduler.schedule(() -> expire(conversation, epoch), detachTimeoutMs)
+                .whenComplete((ignored, error) -> {
+                    if (error instanceof RejectedExecutionException) {
+                        // The timer cannot run on a saturated executor: close now rather than never
+                        expire(conversation, epoch);
+                    }
+                });
+    }
+
+    /**
+     * Close the conversation if it is still detached from the connection that dropped at {@code epoch}.
+     */
+    private void expire(LiveConversation conversation, long epoch) {
+        if (conversation.channel().detachedSince(epoch)) {
+            byId.remove(conversation.actor().conversationId(), conversation);
+            conversation.actor().close();
+            metrics.conversationExpired();
+        }
+    }
+}
@@ -1,9 +1,38 @@
 package com.example.smartmarketing.ws;
 
+import com.example.smartmarketing.analytics.FunnelAnalyticsEngine;
+import com.example.smartmarketing.analytics.FunnelCounts;
+import com.example.smartmarketing.analytics.FunnelEvent;
+import com.example.smartmarketing.analytics.FunnelTrend;
+import com.example.smartmarketing.config.CompressionProperties;
+import com.example.smartmarketing.config.OutboundProperties;
+import com.example.smartmarketing.config.ReplayProperties;
+import com.example.smartmarketing.config.ResultCacheProperties;
+import com.example.smartmarketing.config.SegmentProperties;
+import com.example.smartmarketing.deploy.DeploymentPipeline;
+import com.example.smartmarketing.deploy.DeploymentRun;
+import com.example.smartmarketing.exec.AdmissionController;
+import com.example.smartmarketing.exec.ConversationExecutor;
+import com.example.smartmarketing.exec.Timeline;
+import com.example.smartmarketing.exec.TimelineScheduler;
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import com.example.smartmarketing.segment.CustomerStore;
+import com.example.smartmarketing.segment.LeadRanker;
+import com.example.smartmarketing.segment.SegmentEvaluator;
+import com.example.smartmarketing.segment.SegmentFilter;
+import com.example.smartmarketing.segment.SegmentMatch;
+import com.example.smartmarketing.state.ConversationRecord;
+import com.example.smartmarketing.state.ConversationStateCache;
+import com.example.smartmarketing.template.EmailRecipient;
 import com.example.smartmarketing.util.DataLoader;
+import com.example.smartmarketing.util.DataSnapshot;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
@@ -12,6 +41,12 @@ import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
 
 /**
  * WebSocket handler that orchestrates multi-turn conversation flow.
@@ -21,31 +56,144 @@ import java.util.List;
 @Component
 public class MarketingAssistantHandler extends TextWebSocketHandler {
 
+    private static final Logger log = LoggerFactory.getLogger(MarketingAssistantHandler.class);
+    private static final String OUTBOUND_ATTRIBUTE = "outbound";
+    private static final String CONVERSATION_ATTRIBUTE = "conversation";
+    private static final String ENCODING_ATTRIBUTE = "encoding";
+    private static final String SEGMENT_PAGES_ATTRIBUTE = "segmentPages";
+    private static final Pattern CONVERSATION_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final DataLoader dataLoader;
+    private final ConversationExecutor executor;
+    private final TimelineScheduler timelineScheduler;
 
     private final MockStateFactory stateFactory;
-
-    public MarketingAssistantHandler(DataLoader dataLoader) {
+    private final StateFrameWriter frameWriter;
+    private final DeploymentPipeline deploymentPipeline;
+    private final DeploymentProgressReporter progressReporter;
+    private final SegmentEvaluator segmentEvaluator;
+    private final LeadRanker leadRanker;
+    private final FunnelAnalyticsEngine funnelAnalytics;
+    private final AssistantMetrics metrics;
+    private final OutboundProperties outboundProperties;
+    private final SendWatchdog sendWatchdog;
+    private final CompressionProperties compressionProperties;
+    private final ThreadLocal<Deflater> deflaters;
+    private final ConversationStateCache conversations;
+    private final ReplayProperties replayProperties;
+    private final LiveConversations liveConversations;
+    private final ResultCacheProperties resultCacheProperties;
+    private final StageResultCache resultCache;
+    private final SegmentProperties segmentProperties;
+    private final AdmissionController admission;
+
+    public MarketingAssistantHandler(DataLoader dataLoader, ConversationExecutor executor,
+                                     TimelineScheduler timelineScheduler, DeploymentPipeline deploymentPipeline,
+                                     SegmentEvaluator segmentEvaluator, LeadRanker leadRanker,
+                                     FunnelAnalyticsEngine funnelAnalytics, AssistantMetrics metrics,
+                                     OutboundProperties outboundProperties,
+                                     CompressionProperties compressionProperties,
+                                     ConversationStateCache conversations, ReplayProperties replayProperties,
+                                     ResultCacheProperties resultCacheProperties,
+                                     SegmentProperties segmentProperties, AdmissionController admission) {
         this.dataLoader = dataLoader;
+        this.executor = executor;
+        this.timelineScheduler = timelineScheduler;
         this.stateFactory = new MockStateFactory();
+        this.frameWriter = new StateFrameWriter(objectMapper);
+        this.deploymentPipeline = deploymentPipeline;
+        this.progressReporter = new DeploymentProgressReporter(timelineScheduler, frameWriter);
+        this.segmentEvaluator = segmentEvaluator;
+        this.leadRanker = leadRanker;
+        this.funnelAnalytics = funnelAnalytics;
+        this.metrics = metrics;
+        this.outboundProperties = outboundProperties;
+        this.sendWatchdog = new SendWatchdog(outboundProperties.sendTimeLimitMs());
+        this.compressionProperties = compressionProperties;
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(compressionProperties.level(), true));
+        this.conversations = conversations;
+        this.replayProperties = replayProperties;
+        this.liveConversations = new LiveConversations(timelineScheduler, replayProperties.detachTimeoutMs(), metrics);
+        this.resultCacheProperties = resultCacheProperties;
+        this.resultCache = new StageResultCache(frameWriter, resultCacheProperties, metrics);
+        dataLoader.addReloadListener(snapshot -> resultCache.invalidate());
+        this.segmentProperties = segmentProperties;
+        this.admission = admission;
     }
 
-    private enum ConversationStage {
-        SEGMENT,
-        EMAIL,
-        JOURNEY,
-        DEPLOYMENT,
-        ANALYTICS
+    @PreDestroy
+    public void shutdown() {
+        sendWatchdog.shutdown();
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        metrics.sessionOpened();
+        conversation(session);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        metrics.sessionClosed();
+        if (session.getAttributes().get(CONVERSATION_ATTRIBUTE) instanceof LiveConversation conversation) {
+            if (conversation.channel().replayEnabled()) {
+                liveConversations.detach(conversation, session.getId());
+            } else {
+                conversation.actor().close();
+            }
+        }
+        if (session.getAttributes().get(SEGMENT_PAGES_ATTRIBUTE) instanceof SegmentPageStream pages) {
+            pages.close();
+        }
+        if (session.getAttributes().get(OUTBOUND_ATTRIBUTE) instanceof OutboundSession outbound) {
+            outbound.discard();
+        }
+        admission.disconnected(session.getAttributes());
     }
 
     @Override
     public void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        long received = System.nanoTime();
         JsonNode root = objectMapper.readTree(message.getPayload());
         String type = root.path("type").asText();
+        WebSocketSession outbound = outbound(session);
 
         if ("ping".equals(type)) {
-            session.sendMessage(new TextMessage("{\"type\":\"assistant_message\",\"message\":\"Backend is ready.\"}"));
+            // "deflate" and "cbor" are offered; any other requested encoding falls back to plain JSON text frames
+            EncodingSession.Encoding encoding = root.hasNonNull("encoding")
+                    ? encoding(session).negotiate(root.path("encoding").asText())
+                    : null;
+            boolean replay = root.path("replay").asBoolean();
+            String conversationId = root.path("conversationId").asText("");
+            boolean knownId = CONVERSATION_ID.matcher(conversationId).matches();
+
+            LiveConversation conversation = conversation(session);
+            LiveConversation live = replay && knownId ? liveConversations.find(conversationId) : null;
+            if (live != null && live != conversation) {
+                conversation = attach(session, live, root.path("lastSeq").asLong(0));
+            }
+            if (root.path("statePatches").asBoolean()) {
+                conversation.state().enablePatches(outbound);
+            }
+            if (live == null && knownId) {
+                resume(session, conversationId);
+            }
+            if (replay && !conversation.channel().replayEnabled()) {
+                conversation.channel().enableReplay(replayProperties.maxFrames(), replayProperties.maxChars());
+                liveConversations.register(conversation);
+            }
+            outbound.sendMessage(OutboundFrames.ready(conversation.actor().conversationId(), encoding));
+            return;
+        }
+
+        if ("resync".equals(type)) {
+            conversation(session).state().resync(outbound);
+            return;
+        }
+
+        if ("segment_pages".equals(type)) {
+            segmentPages(session, root);
             return;
         }
 
@@ -58,470 +206,538 @@ public class MarketingAssistantHandler extends TextWebSocketHandler {
             return;
         }
 
-        ConversationStage stage = (ConversationStage) session.getAttributes()
-                .getOrDefault("stage", ConversationStage.SEGMENT);
+        conversation(session).actor().submit(intent, received);
+    }
+
+    /**
+     * The buffered, metered view every frame to this session goes through. Sessions that skipped
+     * {@link #afterConnectionEstablished} (e.g. in benchmarks) get one on first use.
+     */
+    private WebSocketSession outbound(WebSocketSession session) {
+        if (session.getAttributes().get(OUTBOUND_ATTRIBUTE) instanceof OutboundSession outbound) {
+            return outbound;
+        }
+        // Metered outside the encoder, so frame counts and bytes are those of the JSON
+        OutboundSession outbound = new OutboundSession(new MeteredSession(encoding(session), metrics),
+                outboundProperties, sendWatchdog, metrics);
+        session.getAttributes().put(OUTBOUND_ATTRIBUTE, outbound);
+        return outbound;
+    }
+
+    /**
+     * The session's encoder, passing frames through until a ping negotiates an encoding.
+     */
+    private EncodingSession encoding(WebSocketSession session) {
+        if (session.getAttributes().get(ENCODING_ATTRIBUTE) instanceof EncodingSession encoding) {
+            return encoding;
+        }
+        EncodingSession encoding = new EncodingSession(session, compressionProperties, deflaters, metrics);
+        session.getAttributes().put(ENCODING_ATTRIBUTE, encoding);
+        return encoding;
+    }
 
-        // Process in a separate thread to avoid blocking WebSocket
-        new Thread(() -> {
-            try {
-                processWithThinkingSteps(session, intent, stage);
-            } catch (Exception e) {
-                // In production, log the error properly
-                e.printStackTrace();
+    /**
+     * Grant the session's segment stream more pages, starting a stream over the current segment when
+     * none is open, or cancel it. Pages bypass the conversation's replay log.
+     */
+    private void segmentPages(WebSocketSession session, JsonNode request) {
+        SegmentPageStream stream = session.getAttributes().get(SEGMENT_PAGES_ATTRIBUTE) instanceof SegmentPageStream open
+                ? open
+                : null;
+        if (request.path("cancel").asBoolean()) {
+            if (stream != null) {
+                stream.close();
             }
-        }).start();
+            return;
+        }
+        if (stream == null || stream.isClosed()) {
+            DataSnapshot data = dataLoader.snapshot();
+            stream = new SegmentPageStream(outbound(session), () -> stateFactory.segmentMembers(data),
+                    segmentEvaluator.store(), frameWriter, executor, metrics,
+                    segmentProperties.pageSize(), segmentProperties.maxPageCredits());
+            session.getAttributes().put(SEGMENT_PAGES_ATTRIBUTE, stream);
+        }
+        stream.grant(request.path("credits").asInt(1));
+    }
+
+    /**
+     * Pick up a stored conversation: its state is restored (and synced to patch clients) before any
+     * intent of this connection runs, at the stored stage. Unknown ids start a new conversation under that id.
+     */
+    private void resume(WebSocketSession session, String conversationId) {
+        WebSocketSession outbound = outbound(session);
+        LiveConversation conversation = conversation(session);
+        SessionStateTracker state = conversation.state();
+        CompletableFuture<ConversationRecord> restored = conversations.load(conversationId)
+                .thenApply(record -> {
+                    try {
+                        // Also for unknown ids: a reconnecting patch client may still hold another node's state
+                        state.restore(outbound, record.map(ConversationRecord::state).orElse(null));
+                    } catch (IOException e) {
+                        log.debug("Failed to send restored state to session {}", session.getId(), e);
+                    }
+                    return record.orElse(null);
+                });
+        conversation.actor().resume(conversationId, restored);
+    }
+
+    /**
+     * Move a conversation that is still live on this node over to this connection: frames the client
+     * missed are replayed from the log (after a state_sync, if some already dropped out of it), and a
+     * running stage carries on rather than restarting.
+     */
+    private LiveConversation attach(WebSocketSession session, LiveConversation live, long lastSeq) throws IOException {
+        WebSocketSession outbound = outbound(session);
+        if (session.getAttributes().get(CONVERSATION_ATTRIBUTE) instanceof LiveConversation own) {
+            // The connection's own conversation has not run anything yet
+            own.actor().close();
+        }
+        session.getAttributes().put(CONVERSATION_ATTRIBUTE, live);
+        boolean gap = live.channel().missedSince(lastSeq);
+        if (gap) {
+            live.state().resync(outbound);
+        }
+        int replayed = live.channel().attach(outbound, session.getId(), lastSeq);
+        metrics.conversationAttached(replayed, gap);
+        return live;
+    }
+
+    /**
+     * Save where the conversation stands once a stage's result went out. The write is asynchronous;
+     * a failure only costs the ability to resume from this stage.
+     */
+    private void checkpoint(ConversationActor actor, SessionStateTracker state, String intent) {
+        ConversationRecord record = actor.checkpoint(intent, state.snapshot());
+        conversations.save(record).whenComplete((ignored, error) -> {
+            if (error != null) {
+                log.warn("Failed to save conversation {}", record.conversationId(), error);
+            }
+        });
+    }
+
+    /**
+     * The session's conversation: intent mailbox, the state its client holds and the channel its stages
+     * send through, created on first use like {@link #outbound}.
+     */
+    private LiveConversation conversation(WebSocketSession session) {
+        if (session.getAttributes().get(CONVERSATION_ATTRIBUTE) instanceof LiveConversation conversation) {
+            return conversation;
+        }
+        ConversationChannel channel = new ConversationChannel(outbound(session), session.getId());
+        SessionStateTracker state = new SessionStateTracker(objectMapper, frameWriter);
+        ConversationActor actor = new ConversationActor(channel, timelineScheduler, executor, admission,
+                (owner, intent, stage, workDone) -> stageTimeline(channel, state, owner, intent, stage, workDone),
+                metrics);
+        LiveConversation conversation = new LiveConversation(actor, state, channel);
+        session.getAttributes().put(CONVERSATION_ATTRIBUTE, conversation);
+        return conversation;
     }
 
-    private void processWithThinkingSteps(WebSocketSession session, String intent, ConversationStage stage) throws IOException, InterruptedException {
+    /**
+     * Build the paced sequence of frames for one stage. Each step is a send; pauses come from
+     * thinking-steps.json and deployment-config.json. The stage's result is computed on the executor
+     * from stage_start on, while the thinking steps play, and awaited after the last one, so a stage
+     * takes the longer of its pacing and its computation rather than both. {@code workDone} gives the
+     * admission slot back as soon as the result is computed.
+     */
+    private Timeline stageTimeline(WebSocketSession session, SessionStateTracker state, ConversationActor actor,
+                                   String intent, ConversationStage stage, Runnable workDone) {
+        // Read the data snapshot once so the whole stage sees one consistent version
+        DataSnapshot data = dataLoader.snapshot();
+        OutboundFrames frames = OutboundFrames.forSnapshot(data);
+        Timeline.Builder timeline = Timeline.builder();
         switch (stage) {
             case SEGMENT -> {
+                CompletableFuture<StageResultCache.Result> result = new CompletableFuture<>();
+
                 // Immediately signal that we're starting segment stage
-                sendStageStartSignal(session, "segment");
-                
+                timeline.then(() -> {
+                    session.sendMessage(frames.stageStart("segment"));
+                    computeAsync(result, () -> stageResult(ConversationStage.SEGMENT, data, intent), workDone);
+                });
+
                 // Execute thinking steps from JSON configuration
-                executeThinkingSteps(session, "segment");
+                appendThinkingSteps(timeline, session, data, frames, "segment");
 
-                // Step 4: Final result
-                String assistantMessage = """
-                        Step 1 · Segment design
-                        I generated a suggested audience segment based on your intent. Review filters and tell me if you want to refine it.
-                        """;
-                sendPayload(session, new OutgoingMessage("assistant_message", assistantMessage, null));
+                // Step 4: Final result, once computed
+                timeline.thenAwait(() -> result);
+                timeline.then(() -> {
+                    // Advance before sending: a client may send its next intent as soon as it sees the update
+                    actor.advanceTo(ConversationStage.EMAIL);
 
-                MockStateUpdate segmentUpdate = stateFactory.segmentFromIntent(intent);
-                sendPayload(session, new OutgoingMessage("state_update", null, segmentUpdate.toStateNode(objectMapper)));
+                    session.sendMessage(OutboundFrames.SEGMENT_DONE);
 
-                session.getAttributes().put("stage", ConversationStage.EMAIL);
+                    StageResultCache.Result segment = result.join();
+                    state.send(session, segment.update(), segment.frame());
+                    checkpoint(actor, state, intent);
+                    prefetch(ConversationStage.EMAIL, data, intent);
+                });
             }
             case EMAIL -> {
+                CompletableFuture<StageResultCache.Result> result = new CompletableFuture<>();
+
                 // Signal email stage start
-                sendStageStartSignal(session, "email");
-                
+                timeline.then(() -> {
+                    session.sendMessage(frames.stageStart("email"));
+                    computeAsync(result, () -> stageResult(ConversationStage.EMAIL, data, intent), workDone);
+                });
+
                 // Execute thinking steps from JSON configuration
-                executeThinkingSteps(session, "email");
+                appendThinkingSteps(timeline, session, data, frames, "email");
 
-                // Step 4: Final result
-                String assistantMessage = """
-                        Step 2 · Email template
-                        I drafted an HTML email using the same intent. Adjust tone, images and call-to-action if needed.
-                        """;
-                sendPayload(session, new OutgoingMessage("assistant_message", assistantMessage, null));
+                // Step 4: Final result, once computed
+                timeline.thenAwait(() -> result);
+                timeline.then(() -> {
+                    actor.advanceTo(ConversationStage.JOURNEY);
 
-                MockStateUpdate emailUpdate = stateFactory.emailFromIntent(intent);
-                sendPayload(session, new OutgoingMessage("state_update", null, emailUpdate.toStateNode(objectMapper)));
+                    session.sendMessage(OutboundFrames.EMAIL_DONE);
 
-                session.getAttributes().put("stage", ConversationStage.JOURNEY);
+                    StageResultCache.Result email = result.join();
+                    state.send(session, email.update(), email.frame());
+                    checkpoint(actor, state, intent);
+                    prefetch(ConversationStage.JOURNEY, data, intent);
+                });
             }
             case JOURNEY -> {
+                CompletableFuture<StageResultCache.Result> result = new CompletableFuture<>();
+
                 // Signal journey stage start
-                sendStageStartSignal(session, "journey");
-                
+                timeline.then(() -> {
+                    session.sendMessage(frames.stageStart("journey"));
+                    computeAsync(result, () -> stageResult(ConversationStage.JOURNEY, data, intent), workDone);
+                });
+
                 // Execute thinking steps from JSON configuration
-                executeThinkingSteps(session, "journey");
+                appendThinkingSteps(timeline, session, data, frames, "journey");
 
-                // Step 4: Final result
-                String assistantMessage = """
-                        Step 3 · Customer journey
-                        I assembled a simple journey including entry criteria, wait steps and branches. Tell me how to evolve this flow.
-                        """;
-                sendPayload(session, new OutgoingMessage("assistant_message", assistantMessage, null));
+                // Step 4: Final result, once computed
+                timeline.thenAwait(() -> result);
+                timeline.then(() -> {
+                    actor.advanceTo(ConversationStage.DEPLOYMENT);
 
-                MockStateUpdate journeyUpdate = stateFactory.journeyFromIntent(intent);
-                sendPayload(session, new OutgoingMessage("state_update", null, journeyUpdate.toStateNode(objectMapper)));
+                    session.sendMessage(OutboundFrames.JOURNEY_DONE);
 
-                session.getAttributes().put("stage", ConversationStage.DEPLOYMENT);
+                    StageResultCache.Result journey = result.join();
+                    state.send(session, journey.update(), journey.frame());
+                    checkpoint(actor, state, intent);
+                });
             }
             case DEPLOYMENT -> {
-                // Signal deployment stage start
-                sendStageStartSignal(session, "deployment");
-                
-                // Execute thinking steps from JSON
-                executeThinkingSteps(session, "deployment");
-
-                // Send initial deployment message
-                String deployMessage = """
-                        Step 4 · Intelligent Campaign Deployment
-                        Starting smart deployment system. Real-time progress tracking enabled.
-                        """;
-                sendPayload(session, new OutgoingMessage("assistant_message", deployMessage, null));
-
-                // Load deployment configuration
-                JsonNode deployConfig = dataLoader.loadDeploymentConfig();
-                int totalRecipients = deployConfig.path("totalRecipients").asInt(3847);
-                double successRate = deployConfig.path("successRate").asDouble(0.97);
-                int throughput = deployConfig.path("throughputPerSecond").asInt(850);
-                
-                // Load progress steps from config
-                List<Integer> progressStepsList = new ArrayList<>();
-                JsonNode stepsArray = deployConfig.path("progressSteps");
-                if (stepsArray.isArray()) {
-                    stepsArray.forEach(node -> progressStepsList.add(node.asInt()));
-                }
-                int[] progressSteps = progressStepsList.stream().mapToInt(Integer::intValue).toArray();
-                
-                int minDelay = deployConfig.path("delayPerStepMs").path("min").asInt(2500);
-                int maxDelay = deployConfig.path("delayPerStepMs").path("max").asInt(3500);
-                
-                for (int progress : progressSteps) {
-                    Thread.sleep(minDelay + (int)(Math.random() * (maxDelay - minDelay)));
-                    
-                    int successCount = (int)(totalRecipients * progress / 100.0 * successRate);
-                    int failedCount = (int)(totalRecipients * progress / 100.0 * (1 - successRate));
-                    int currentTotal = successCount + failedCount;
-                    
-                    String status = progress < 100 ? "deploying" : "completed";
-                    String phase = getDeploymentPhase(progress);
-                    int remainingRecipients = totalRecipients - currentTotal;
-                    int remainingSteps = 0;
-                    for (int p : progressSteps) {
-                        if (p > progress) remainingSteps++;
-                    }
-                    String timeRemaining = progress < 100 ? 
-                        String.format("%d seconds", remainingSteps * 3) : "Completed";
-                    
-                    sendDeploymentProgress(session, status, progress, totalRecipients, 
-                        successCount, failedCount, phase, timeRemaining, throughput);
-                }
+                CompletableFuture<List<EmailRecipient>> recipients = new CompletableFuture<>();
 
-                // Final completion message
-                String completionMessage = """
-                        ✅ Campaign deployment completed successfully!
-                        Ready to analyze performance data and conversion metrics.
-                        """;
-                sendPayload(session, new OutgoingMessage("assistant_message", completionMessage, null));
+                // Signal deployment stage start; the segment is evaluated for the recipient list meanwhile
+                timeline.then(() -> {
+                    session.sendMessage(frames.stageStart("deployment"));
+                    // The send pipeline runs on the timeline scheduler, so the slot goes back with the recipients
+                    computeAsync(recipients, () -> stateFactory.deploymentRecipients(data), workDone);
+                });
 
-                // Send state update to mark deployment as complete
-                MockStateUpdate deploymentComplete = new MockStateUpdate(null, null, null, null, null, null, null, "deployment");
-                sendPayload(session, new OutgoingMessage("state_update", null, deploymentComplete.toStateNode(objectMapper)));
-
-                session.getAttributes().put("stage", ConversationStage.ANALYTICS);
+                // Execute thinking steps from JSON
+                appendThinkingSteps(timeline, session, data, frames, "deployment");
+
+                // Start the real send pipeline and report its live counters until every recipient is done
+                timeline.thenAwait(() -> recipients);
+                timeline.thenAwait(() -> {
+                    session.sendMessage(OutboundFrames.DEPLOYMENT_STARTED);
+
+                    DataSnapshot.DeploymentConfig deployConfig = data.deployment();
+                    DeploymentRun run = deploymentPipeline.start(
+                            recipients.join(),
+                            data.compiledEmailTemplate(),
+                            Map.of("deadline", campaignDeadline()),
+                            deployConfig);
+                    return progressReporter.report(session, run, deployConfig);
+                });
+
+                timeline.then(() -> {
+                    actor.advanceTo(ConversationStage.ANALYTICS);
+
+                    // Final completion message
+                    session.sendMessage(OutboundFrames.DEPLOYMENT_DONE);
+
+                    // Send state update to mark deployment as complete
+                    state.send(session, OutboundFrames.DEPLOYMENT_COMPLETE_UPDATE, OutboundFrames.DEPLOYMENT_COMPLETE_STATE);
+                    checkpoint(actor, state, intent);
+                });
             }
             case ANALYTICS -> {
+                CompletableFuture<StageResultCache.Result> result = new CompletableFuture<>();
+
                 // Signal analytics stage start
-                sendStageStartSignal(session, "analytics");
-                
+                timeline.then(() -> {
+                    session.sendMessage(frames.stageStart("analytics"));
+                    // Funnel counts are read as of stage_start rather than after the thinking steps
+                    computeAsync(result, () -> stageResult(ConversationStage.ANALYTICS, data, intent), workDone);
+                });
+
                 // Execute thinking steps from JSON configuration
-                executeThinkingSteps(session, "analytics");
+                appendThinkingSteps(timeline, session, data, frames, "analytics");
 
-                // Final result
-                String assistantMessage = """
-                        Step 4 · Performance Analytics & Diagnostics
-                        I analyzed your campaign data and identified key conversion bottlenecks. Review the funnel breakdown and AI-powered recommendations below.
-                        """;
-                sendPayload(session, new OutgoingMessage("assistant_message", assistantMessage, null));
+                // Final result, once computed
+                timeline.thenAwait(() -> result);
+                timeline.then(() -> {
+                    // Loop back to segment so that the flow can be repeated in this POC.
+                    actor.advanceTo(ConversationStage.SEGMENT);
 
-                MockStateUpdate analyticsUpdate = stateFactory.analyticsFromIntent(intent);
-                sendPayload(session, new OutgoingMessage("state_update", null, analyticsUpdate.toStateNode(objectMapper)));
+                    session.sendMessage(OutboundFrames.ANALYTICS_DONE);
 
-                // Loop back to segment so that the flow can be repeated in this POC.
-                session.getAttributes().put("stage", ConversationStage.SEGMENT);
+                    StageResultCache.Result analytics = result.join();
+                    state.send(session, analytics.update(), analytics.frame());
+                    checkpoint(actor, state, intent);
+                });
             }
         }
+        return timeline.build();
     }
 
-    private void sendThinkingStep(WebSocketSession session, String step) throws IOException {
-        var thinkingMessage = objectMapper.createObjectNode();
-        thinkingMessage.put("type", "thinking");
-        thinkingMessage.put("step", step);
-        session.sendMessage(new TextMessage(thinkingMessage.toString()));
+    /**
+     * A stage's result with its encoded state_update frame, from the result cache where the result
+     * only depends on what its fingerprint covers.
+     */
+    private StageResultCache.Result stageResult(ConversationStage stage, DataSnapshot data, String intent) {
+        return switch (stage) {
+            // Keyed by the normalized intent, but the reasoning line quotes the intent as the user typed it
+            case SEGMENT -> resultCache.get(stage, StageResultCache.normalize(intent), data.version(),
+                    () -> stateFactory.segmentFromIntent(data, intent));
+            // The email does not depend on the intent, only on the deadline filled in
+            case EMAIL -> resultCache.get(stage, campaignDeadline(), data.version(),
+                    () -> stateFactory.emailFromIntent(data, intent));
+            case JOURNEY -> resultCache.get(stage, "", data.version(),
+                    () -> stateFactory.journeyFromIntent(data, intent));
+            // Not cached: the funnel counts are live
+            case ANALYTICS -> resultCache.encode(stateFactory.analyticsFromIntent(data, intent));
+            case DEPLOYMENT -> throw new IllegalArgumentException("Deployment has no computed result");
+        };
     }
 
-    private void sendStageStartSignal(WebSocketSession session, String stage) throws IOException {
-        var stageMessage = objectMapper.createObjectNode();
-        stageMessage.put("type", "stage_start");
-        stageMessage.put("stage", stage);
-        session.sendMessage(new TextMessage(stageMessage.toString()));
+    /**
+     * Run {@code compute} on the executor and complete {@code result} with its outcome; {@code workDone}
+     * runs first when it succeeded, e.g. to give the stage's admission slot back. A saturated executor
+     * fails {@code result}, so the step awaiting it fails the stage instead of waiting forever.
+     */
+    private <T> void computeAsync(CompletableFuture<T> result, Supplier<T> compute, Runnable workDone) {
+        try {
+            CompletableFuture.supplyAsync(compute, executor).whenComplete((value, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    workDone.run();
+                    result.complete(value);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
     }
 
     /**
-     * Execute thinking steps loaded from JSON configuration file
+     * Speculatively warm the result cache for {@code next}, which the conversation most likely asks for
+     * next. Only stages whose result does not depend on the next intent are worth it.
      */
-    private void executeThinkingSteps(WebSocketSession session, String stage) throws IOException, InterruptedException {
-        JsonNode stepsArray = dataLoader.loadThinkingSteps(stage);
-        if (stepsArray.isArray()) {
-            for (JsonNode stepNode : stepsArray) {
-                String stepText = stepNode.path("step").asText();
-                int delayMs = stepNode.path("delayMs").asInt(800);
-                sendThinkingStep(session, stepText);
-                Thread.sleep(delayMs);
-            }
+    private void prefetch(ConversationStage next, DataSnapshot data, String intent) {
+        if (!resultCacheProperties.prefetchNextStage()) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    stageResult(next, data, intent);
+                } catch (RuntimeException e) {
+                    log.debug("Prefetch of stage {} failed", next, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Saturated: the stage builds its result when it runs
         }
     }
 
-    private void sendDeploymentProgress(WebSocketSession session, String status, int progressPercent,
-                                       int totalRecipients, int successCount, int failedCount,
-                                       String currentPhase, String timeRemaining, int throughput) throws IOException {
-        var progressMessage = objectMapper.createObjectNode();
-        progressMessage.put("type", "deployment_progress");
-        
-        var progress = objectMapper.createObjectNode();
-        progress.put("status", status);
-        progress.put("progressPercent", progressPercent);
-        progress.put("totalRecipients", totalRecipients);
-        progress.put("successCount", successCount);
-        progress.put("failedCount", failedCount);
-        progress.put("currentPhase", currentPhase);
-        progress.put("estimatedTimeRemaining", timeRemaining);
-        progress.put("throughputPerSecond", throughput);
-        
-        progressMessage.set("progress", progress);
-        session.sendMessage(new TextMessage(progressMessage.toString()));
+    private static int saturatedInt(long value) {
+        return (int) Math.min(Integer.MAX_VALUE, value);
     }
 
-    private String getDeploymentPhase(int progress) {
-        JsonNode deployConfig = dataLoader.loadDeploymentConfig();
-        JsonNode phases = deployConfig.path("phases");
-        
-        if (phases.isArray()) {
-            for (JsonNode phaseNode : phases) {
-                int threshold = phaseNode.path("progressThreshold").asInt();
-                if (progress < threshold) {
-                    return phaseNode.path("description").asText();
-                }
-            }
-            // Return last phase if progress >= all thresholds
-            if (phases.size() > 0) {
-                return phases.get(phases.size() - 1).path("description").asText();
-            }
-        }
-        
-        return "Processing...";
+    private static double round(double value, int decimals) {
+        double scale = Math.pow(10, decimals);
+        return Math.round(value * scale) / scale;
     }
 
-    private void sendPayload(WebSocketSession session, OutgoingMessage outgoing) throws IOException {
-        JsonNode node = outgoing.toJsonNode(objectMapper);
-        session.sendMessage(new TextMessage(node.toString()));
+    /**
+     * Campaign deadline used for the {{deadline}} placeholder: ten days from today.
+     */
+    private static String campaignDeadline() {
+        return LocalDateTime.now().plusDays(10).toLocalDate().toString();
     }
 
-    private record OutgoingMessage(String type, String message, JsonNode state) {
-        JsonNode toJsonNode(ObjectMapper mapper) {
-            var root = mapper.createObjectNode();
-            root.put("type", type);
-            if (message != null) {
-                root.put("message", message);
-            }
-            if (state != null) {
-                root.set("state", state);
-            }
-            return root;
+    /**
+     * Append thinking steps loaded from JSON configuration file as pre-encoded frames; each step is followed by its delay
+     */
+    private void appendThinkingSteps(Timeline.Builder timeline, WebSocketSession session, DataSnapshot data,
+                                     OutboundFrames frames, String stage) {
+        List<DataSnapshot.ThinkingStep> steps = data.thinkingSteps(stage);
+        List<TextMessage> stepFrames = frames.thinking(stage);
+        for (int i = 0; i < steps.size(); i++) {
+            TextMessage frame = stepFrames.get(i);
+            timeline.then(() -> session.sendMessage(frame)).pause(steps.get(i).delayMs());
         }
     }
 
-    private record MockSegmentUser(String id, String name, String email, int score) {
+    /**
+     * Stage result builders, exposed to the benchmarks in this package.
+     */
+    MockStateFactory stateFactory() {
+        return stateFactory;
     }
 
-    private record MockFunnelStage(String stage, int count, double rate, Double change) {}
-    
-    private record MockBottleneck(String stage, double dropoffRate, List<String> reasons, List<String> recommendations) {}
-    
-    private record MockAnalyticsData(
-            List<MockFunnelStage> funnelStages,
-            int totalImpressions,
-            int totalLeads,
-            double overallConversionRate,
-            MockBottleneck bottleneck
-    ) {}
-
-    private record MockStateUpdate(
-            String segmentSuggestion,
-            List<MockSegmentUser> segmentResult,
-            Integer segmentTotalMatched,
-            String emailHtml,
-            String journeyPlan,
-            String scheduleHint,
-            MockAnalyticsData analyticsData,
-            String conversationStep
-    ) {
-        JsonNode toStateNode(ObjectMapper mapper) {
-            var root = mapper.createObjectNode();
-            if (segmentSuggestion != null) {
-                root.put("segmentSuggestion", segmentSuggestion);
-            }
-
-            if (segmentResult != null) {
-                var array = mapper.createArrayNode();
-                for (MockSegmentUser u : segmentResult) {
-                    var node = mapper.createObjectNode();
-                    node.put("id", u.id());
-                    node.put("name", u.name());
-                    node.put("email", u.email());
-                    node.put("score", u.score());
-                    array.add(node);
-                }
-                root.set("segmentResult", array);
-            }
-
-            if (segmentTotalMatched != null) {
-                root.put("segmentTotalMatched", segmentTotalMatched);
-            }
+    /**
+     * Mock data factory that builds stage results from the parsed data snapshot.
+     * The snapshot is loaded from JSON/HTML files, so content can change without recompiling Java code.
+     */
+    final class MockStateFactory {
 
-            if (emailHtml != null) {
-                root.put("emailHtml", emailHtml);
-            }
-            if (journeyPlan != null) {
-                root.put("journeyPlan", journeyPlan);
-            }
-            if (scheduleHint != null) {
-                root.put("scheduleHint", scheduleHint);
-            }
-            
-            if (analyticsData != null) {
-                var analyticsNode = mapper.createObjectNode();
-                
-                // Funnel stages
-                var stagesArray = mapper.createArrayNode();
-                for (MockFunnelStage stage : analyticsData.funnelStages()) {
-                    var stageNode = mapper.createObjectNode();
-                    stageNode.put("stage", stage.stage());
-                    stageNode.put("count", stage.count());
-                    stageNode.put("rate", stage.rate());
-                    if (stage.change() != null) {
-                        stageNode.put("change", stage.change());
-                    }
-                    stagesArray.add(stageNode);
-                }
-                analyticsNode.set("funnelStages", stagesArray);
-                
-                analyticsNode.put("totalImpressions", analyticsData.totalImpressions());
-                analyticsNode.put("totalLeads", analyticsData.totalLeads());
-                analyticsNode.put("overallConversionRate", analyticsData.overallConversionRate());
-                
-                // Bottleneck
-                if (analyticsData.bottleneck() != null) {
-                    var bottleneckNode = mapper.createObjectNode();
-                    bottleneckNode.put("stage", analyticsData.bottleneck().stage());
-                    bottleneckNode.put("dropoffRate", analyticsData.bottleneck().dropoffRate());
-                    
-                    var reasonsArray = mapper.createArrayNode();
-                    for (String reason : analyticsData.bottleneck().reasons()) {
-                        reasonsArray.add(reason);
-                    }
-                    bottleneckNode.set("reasons", reasonsArray);
-                    
-                    var recsArray = mapper.createArrayNode();
-                    for (String rec : analyticsData.bottleneck().recommendations()) {
-                        recsArray.add(rec);
-                    }
-                    bottleneckNode.set("recommendations", recsArray);
-                    
-                    analyticsNode.set("bottleneck", bottleneckNode);
-                }
-                
-                root.set("analyticsData", analyticsNode);
-            }
-            
-            if (conversationStep != null) {
-                root.put("conversationStep", conversationStep);
-            }
-            return root;
+        /** The configured segment's membership, evaluated once per snapshot version and filter. */
+        private record SharedSegment(long snapshotVersion, SegmentFilter filter, SegmentMatch match) {
         }
-    }
 
-    /**
-     * Mock data factory that loads data from JSON/HTML files.
-     * This allows easy modification without recompiling Java code.
-     */
-    private final class MockStateFactory {
+        private volatile SharedSegment sharedSegment;
 
-        MockStateUpdate segmentFromIntent(String intent) {
-            JsonNode segmentData = dataLoader.loadSegmentData();
-            
-            String baseSuggestion = segmentData.path("suggestion").asText();
+        MockStateUpdate segmentFromIntent(DataSnapshot data, String intent) {
+            DataSnapshot.SegmentData segmentData = data.segment();
+
+            String baseSuggestion = segmentData.suggestion();
             String dynamicLine = "\nReasoning: Derived from intent \"" + intent + "\".";
             String segmentSuggestion = baseSuggestion + dynamicLine;
 
-            // Load top leads from JSON
             List<MockSegmentUser> users = new ArrayList<>();
-            JsonNode topLeads = segmentData.path("topLeads");
-            if (topLeads.isArray()) {
-                for (JsonNode leadNode : topLeads) {
-                    users.add(new MockSegmentUser(
-                        leadNode.path("id").asText(),
-                        leadNode.path("name").asText(),
-                        leadNode.path("email").asText(),
-                        leadNode.path("score").asInt()
-                    ));
+            int totalMatched;
+            if (segmentData.filters() != null) {
+                // Evaluate the real segment over the customer store and preview its best-scoring members
+                SegmentMatch match = segmentEvaluator.evaluate(segmentData.filters());
+                CustomerStore store = segmentEvaluator.store();
+                for (int customer : leadRanker.topLeads(match)) {
+                    users.add(new MockSegmentUser(store.customerId(customer), store.name(customer),
+                            store.email(customer), store.score(customer)));
+                }
+                totalMatched = match.count();
+            } else {
+                // Top leads from segment-data.json
+                for (DataSnapshot.Lead lead : segmentData.topLeads()) {
+                    users.add(new MockSegmentUser(lead.id(), lead.name(), lead.email(), lead.score()));
                 }
+                totalMatched = segmentData.totalMatched();
             }
 
-            int totalMatched = segmentData.path("totalMatched").asInt(3847);
             return new MockStateUpdate(segmentSuggestion, users, totalMatched, null, null, null, null, "segment");
         }
 
-        MockStateUpdate emailFromIntent(String intent) {
-            // Load email template from HTML file
-            String emailHtml = dataLoader.loadEmailTemplate();
-            
-            // Replace dynamic placeholders
-            String deadline = LocalDateTime.now().plusDays(10).toLocalDate().toString();
-            emailHtml = emailHtml.replace("{{deadline}}", deadline);
+        MockStateUpdate emailFromIntent(DataSnapshot data, String intent) {
+            // Fill dynamic placeholders; {{firstName}} stays for per-recipient rendering at send time
+            String emailHtml = data.compiledEmailTemplate().render(Map.of("deadline", campaignDeadline()));
 
             // In this POC we do not change the segment at this step, we only enrich the email.
             return new MockStateUpdate(null, null, null, emailHtml, null, null, null, "email");
         }
 
-        MockStateUpdate journeyFromIntent(String intent) {
-            // Load journey data from JSON file
-            JsonNode journeyData = dataLoader.loadJourneyData();
-            String journeyPlan = journeyData.path("plan").asText();
-            String scheduleHint = journeyData.path("scheduleHint").asText();
-
-            return new MockStateUpdate(null, null, null, null, journeyPlan, scheduleHint, null, "journey");
+        MockStateUpdate journeyFromIntent(DataSnapshot data, String intent) {
+            DataSnapshot.JourneyData journeyData = data.journey();
+            return new MockStateUpdate(null, null, null, null, journeyData.plan(), journeyData.scheduleHint(), null, "journey");
         }
-        
-        MockStateUpdate analyticsFromIntent(String intent) {
-            // Load analytics data from JSON file
-            JsonNode analyticsJson = dataLoader.loadAnalyticsData();
-            
-            // Parse funnel stages
+
+        MockStateUpdate analyticsFromIntent(DataSnapshot data, String intent) {
+            DataSnapshot.AnalyticsData analytics = data.analytics();
+
+            // Live counters of the campaign on top of the historical counts from analytics-data.json
+            FunnelCounts counts = funnelAnalytics.counts(analytics.campaignId()).plus(analytics.baselineCounts());
+            // Changes and the bottleneck come from the sliding window; the file's values apply while it is empty
+            FunnelTrend trend = funnelAnalytics.trend(analytics.campaignId());
+
             List<MockFunnelStage> funnelStages = new ArrayList<>();
-            JsonNode stagesArray = analyticsJson.path("funnelStages");
-            if (stagesArray.isArray()) {
-                for (JsonNode stageNode : stagesArray) {
-                    Double change = stageNode.has("change") && !stageNode.path("change").isNull() 
-                        ? stageNode.path("change").asDouble() 
+            for (FunnelEvent event : FunnelEvent.values()) {
+                DataSnapshot.FunnelStage source = event.ordinal() < analytics.funnelStages().size()
+                        ? analytics.funnelStages().get(event.ordinal())
                         : null;
-                    funnelStages.add(new MockFunnelStage(
-                        stageNode.path("stage").asText(),
-                        stageNode.path("count").asInt(),
-                        stageNode.path("rate").asDouble(),
-                        change
-                    ));
-                }
-            }
-            
-            // Parse bottleneck
-            JsonNode bottleneckNode = analyticsJson.path("bottleneck");
-            List<String> reasons = new ArrayList<>();
-            JsonNode reasonsArray = bottleneckNode.path("reasons");
-            if (reasonsArray.isArray()) {
-                reasonsArray.forEach(node -> reasons.add(node.asText()));
-            }
-            
-            List<String> recommendations = new ArrayList<>();
-            JsonNode recsArray = bottleneckNode.path("recommendations");
-            if (recsArray.isArray()) {
-                recsArray.forEach(node -> recommendations.add(node.asText()));
+                funnelStages.add(new MockFunnelStage(
+                    source != null ? source.stage() : event.stageName(),
+                    saturatedInt(counts.count(event)),
+                    round(counts.stageRate(event), 1),
+                    trend.change(event) != null ? Double.valueOf(round(trend.change(event), 1))
+                            : source != null ? source.change() : null
+                ));
             }
-            
-            MockBottleneck bottleneck = new MockBottleneck(
-                bottleneckNode.path("stage").asText(),
-                bottleneckNode.path("dropoffRate").asDouble(),
-                reasons,
-                recommendations
-            );
-            
+
+            MockBottleneck bottleneck = bottleneckFrom(analytics.bottleneck(), trend);
+
             MockAnalyticsData analyticsData = new MockAnalyticsData(
                 funnelStages,
-                analyticsJson.path("totalImpressions").asInt(),
-                analyticsJson.path("totalLeads").asInt(),
-                analyticsJson.path("overallConversionRate").asDouble(),
+                saturatedInt(counts.count(FunnelEvent.IMPRESSION)),
+                saturatedInt(counts.count(FunnelEvent.LEAD)),
+                round(counts.overallConversionRate(), 2),
                 bottleneck
             );
-            
+
             return new MockStateUpdate(null, null, null, null, null, null, analyticsData, "analytics");
         }
-    }
-}
 
+        /**
+         * The window's worst-declining transition, with the file's diagnosis when it names the same transition.
+         */
+        private MockBottleneck bottleneckFrom(DataSnapshot.Bottleneck source, FunnelTrend trend) {
+            if (trend.bottleneck() == null) {
+                return new MockBottleneck(source.stage(), source.dropoffRate(), source.reasons(), source.recommendations());
+            }
+            FunnelEvent from = trend.bottleneckFrom();
+            FunnelEvent to = trend.bottleneck();
+            double dropoff = round(trend.dropoffRate(), 1);
+            if (from.wireName().equals(source.fromStage()) && to.wireName().equals(source.toStage())) {
+                return new MockBottleneck(source.stage(), dropoff, source.reasons(), source.recommendations());
+            }
+
+            String window = trend.window().label();
+            return new MockBottleneck(
+                from.stageName() + " → " + to.stageName(),
+                dropoff,
+                List.of(
+                    String.format("Drop-off from %s to %s rose to %.1f%% in the last %s (previous %s: %.1f%%)",
+                            from.stageName(), to.stageName(), dropoff, window, window,
+                            round(trend.previousDropoff(), 1))
+                ),
+                List.of(
+                    "🔍 Review changes shipped in the last " + window + " that affect the " + to.stageName() + " step",
+                    "📊 Compare traffic sources and devices against the previous " + window,
+                    "🧪 A/B test the " + to.stageName() + " step to confirm the cause before rolling back"
+                )
+            );
+        }
+
+        /**
+         * The configured segment evaluated over the customer store; every customer without filters.
+         * One match is shared by every segment stream and deployment of a snapshot, so its bitmap must
+         * not be modified. Concurrent misses each evaluate; the last one is kept.
+         */
+        SegmentMatch segmentMembers(DataSnapshot data) {
+            SegmentFilter filter = data.segment().filters() != null ? data.segment().filters() : SegmentFilter.ALL;
+            SharedSegment shared = sharedSegment;
+            if (shared != null && shared.snapshotVersion() == data.version() && shared.filter().equals(filter)) {
+                return shared.match();
+            }
+            SegmentMatch match = segmentEvaluator.evaluate(filter);
+            sharedSegment = new SharedSegment(data.version(), filter, match);
+            return match;
+        }
 
+        /**
+         * Recipients for the deployment: segment members from the customer store, capped at totalRecipients.
+         */
+        List<EmailRecipient> deploymentRecipients(DataSnapshot data) {
+            SegmentMatch match = segmentMembers(data);
+            CustomerStore store = segmentEvaluator.store();
+
+            int total = Math.min(match.count(), data.deployment().totalRecipients());
+            List<EmailRecipient> recipients = new ArrayList<>(total);
+            for (int customer = match.members().nextSetBit(0);
+                 customer >= 0 && recipients.size() < total;
+                 customer = match.members().nextSetBit(customer + 1)) {
+                recipients.add(store.recipient(customer));
+            }
+            return recipients;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.smartmarketing.ws;
+
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+
+/**
+ * Session view the handler sends through, counting outbound frames and bytes per message type.
+ * The type is read from the frame's leading {@code {"type":"..."}} field, which every outbound
+ * frame starts with, so no frame is parsed.
+ */
+final class MeteredSession extends WebSocketSessionDecorator {
+
+    private static final String TYPE_PREFIX = "{\"type\":\"";
+
+    private final AssistantMetrics metrics;
+
+    MeteredSession(WebSocketSession delegate, AssistantMetrics metrics) {
+        super(delegate);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        super.sendMessage(message);
+        if (message instanceof TextMessage text) {
+            String payload = text.getPayload();
+            metrics.frameSent(typeOf(payload), utf8Length(payload));
+        } else {
+            metrics.frameSent("binary", message.getPayloadLength());
+        }
+    }
+
+    static String typeOf(String payload) {
+        if (payload.startsWith(TYPE_PREFIX)) {
+            int end = payload.indexOf('"', TYPE_PREFIX.length());
+            if (end > 0) {
+                return payload.substring(TYPE_PREFIX.length(), end);
+            }
+        }
+        return "unknown";
+    }
+
+    /**
+     * Encoded size without encoding: frames are mostly ASCII, so this is one pass over the chars.
+     */
+    static long utf8Length(String payload) {
+        long bytes = payload.length();
+        for (int i = 0; i < payload.length(); i++) {
+            char c = payload.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    bytes += 1;
+                } else if (Character.isHighSurrogate(c)) {
+                    // A surrogate pair is 4 bytes for 2 chars
+                    bytes += 2;
+                    i++;
+                } else {
+                    bytes += 2;
+                }
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.smartmarketing.ws;
+
+import java.util.List;
+
+record MockAnalyticsData(
+        List<MockFunnelStage> funnelStages,
+        int totalImpressions,
+        int totalLeads,
+        double overallConversionRate,
+        MockBottleneck bottleneck
+) {
+}
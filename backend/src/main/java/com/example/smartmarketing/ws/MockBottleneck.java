@@ -0,0 +1,6 @@
+package com.example.smartmarketing.ws;
+
+import java.util.List;
+
+record MockBottleneck(String stage, double dropoffRate, List<String> reasons, List<String> recommendations) {
+}
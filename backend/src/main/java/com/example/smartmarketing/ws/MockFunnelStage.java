@@ -0,0 +1,4 @@
+package com.example.smartmarketing.ws;
+
+record MockFunnelStage(String stage, int count, double rate, Double change) {
+}
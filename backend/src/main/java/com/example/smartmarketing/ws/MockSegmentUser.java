@@ -0,0 +1,4 @@
+package com.example.smartmarketing.ws;
+
+record MockSegmentUser(String id, String name, String email, int score) {
+}
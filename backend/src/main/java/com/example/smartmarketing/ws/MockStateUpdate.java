@@ -0,0 +1,106 @@
+package com.example.smartmarketing.ws;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.List;
+
+/**
+ * Conversation state pushed to the client in a state_update frame. Null fields are omitted.
+ * {@link StateFrameWriter} streams this record straight to JSON; {@link #toStateNode(ObjectMapper)}
+ * builds the equivalent tree for callers that need to inspect or diff it.
+ */
+record MockStateUpdate(
+        String segmentSuggestion,
+        List<MockSegmentUser> segmentResult,
+        Integer segmentTotalMatched,
+        String emailHtml,
+        String journeyPlan,
+        String scheduleHint,
+        MockAnalyticsData analyticsData,
+        String conversationStep
+) {
+    JsonNode toStateNode(ObjectMapper mapper) {
+        var root = mapper.createObjectNode();
+        if (segmentSuggestion != null) {
+            root.put("segmentSuggestion", segmentSuggestion);
+        }
+
+        if (segmentResult != null) {
+            var array = mapper.createArrayNode();
+            for (MockSegmentUser u : segmentResult) {
+                var node = mapper.createObjectNode();
+                node.put("id", u.id());
+                node.put("name", u.name());
+                node.put("email", u.email());
+                node.put("score", u.score());
+                array.add(node);
+            }
+            root.set("segmentResult", array);
+        }
+
+        if (segmentTotalMatched != null) {
+            root.put("segmentTotalMatched", segmentTotalMatched);
+        }
+
+        if (emailHtml != null) {
+            root.put("emailHtml", emailHtml);
+        }
+        if (journeyPlan != null) {
+            root.put("journeyPlan", journeyPlan);
+        }
+        if (scheduleHint != null) {
+            root.put("scheduleHint", scheduleHint);
+        }
+
+        if (analyticsData != null) {
+            var analyticsNode = mapper.createObjectNode();
+
+            // Funnel stages
+            var stagesArray = mapper.createArrayNode();
+            for (MockFunnelStage stage : analyticsData.funnelStages()) {
+                var stageNode = mapper.createObjectNode();
+                stageNode.put("stage", stage.stage());
+                stageNode.put("count", stage.count());
+                stageNode.put("rate", stage.rate());
+                if (stage.change() != null) {
+                    stageNode.put("change", stage.change());
+                }
+                stagesArray.add(stageNode);
+            }
+            analyticsNode.set("funnelStages", stagesArray);
+
+            analyticsNode.put("totalImpressions", analyticsData.totalImpressions());
+            analyticsNode.put("totalLeads", analyticsData.totalLeads());
+            analyticsNode.put("overallConversionRate", analyticsData.overallConversionRate());
+
+            // Bottleneck
+            if (analyticsData.bottleneck() != null) {
+                var bottleneckNode = mapper.createObjectNode();
+                bottleneckNode.put("stage", analyticsData.bottleneck().stage());
+                bottleneckNode.put("dropoffRate", analyticsData.bottleneck().dropoffRate());
+
+                var reasonsArray = mapper.createArrayNode();
+                for (String reason : analyticsData.bottleneck().reasons()) {
+                    reasonsArray.add(reason);
+                }
+                bottleneckNode.set("reasons", reasonsArray);
+
+                var recsArray = mapper.createArrayNode();
+                for (String rec : analyticsData.bottleneck().recommendations()) {
+                    recsArray.add(rec);
+                }
+                bottleneckNode.set("recommendations", recsArray);
+
+                analyticsNode.set("bottleneck", bottleneckNode);
+            }
+
+            root.set("analyticsData", analyticsNode);
+        }
+
+        if (conversationStep != null) {
+            root.put("conversationStep", conversationStep);
+        }
+        return root;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.smartmarketing.ws;
+
+import com.example.smartmarketing.util.DataSnapshot;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outbound frames whose content is the same for every session, encoded once to UTF-8 and shared, so sending
+ * them never encodes the payload again.
+ * Fixed assistant replies are constants; stage_start and thinking frames are rebuilt only when
+ * the data snapshot changes (see {@link #forSnapshot(DataSnapshot)}). Frames that echo user input
+ * are still encoded per request by the handler.
+ */
+final class OutboundFrames {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static final String[] STAGES = {"segment", "email", "journey", "deployment", "analytics"};
+
+    private static final String BUSY_MESSAGE = "The assistant is busy right now. Please try again in a moment.";
+
+    static final TextMessage SEGMENT_DONE = assistantMessage("""
+            Step 1 · Segment design
+            I generated a suggested audience segment based on your intent. Review filters and tell me if you want to refine it.
+            """);
+
+    static final TextMessage EMAIL_DONE = assistantMessage("""
+            Step 2 · Email template
+            I drafted an HTML email using the same intent. Adjust tone, images and call-to-action if needed.
+            """);
+
+    static final TextMessage JOURNEY_DONE = assistantMessage("""
+            Step 3 · Customer journey
+            I assembled a simple journey including entry criteria, wait steps and branches. Tell me how to evolve this flow.
+            """);
+
+    static final TextMessage DEPLOYMENT_STARTED = assistantMessage("""
+            Step 4 · Intelligent Campaign Deployment
+            Starting smart deployment system. Real-time progress tracking enabled.
+            """);
+
+    static final TextMessage DEPLOYMENT_DONE = assistantMessage("""
+            ✅ Campaign deployment completed successfully!
+            Ready to analyze performance data and conversion metrics.
+            """);
+
+    static final TextMessage ANALYTICS_DONE = assistantMessage("""
+            Step 4 · Performance Analytics & Diagnostics
+            I analyzed your campaign data and identified key conversion bottlenecks. Review the funnel breakdown and AI-powered recommendations below.
+            """);
+
+    /** State marking deployment as complete, and its pre-encoded state_update frame */
+    static final MockStateUpdate DEPLOYMENT_COMPLETE_UPDATE =
+            new MockStateUpdate(null, null, null, null, null, null, null, "deployment");
+
+    static final TextMessage DEPLOYMENT_COMPLETE_STATE = encode(MAPPER.createObjectNode()
+            .put("type", "state_update")
+            .set("state", MAPPER.createObjectNode().put("conversationStep", "deployment")));
+
+    private static volatile OutboundFrames current;
+
+    private final long snapshotVersion;
+    private final Map<String, TextMessage> stageStart;
+    private final Map<String, List<TextMessage>> thinking;
+
+    private OutboundFrames(DataSnapshot data) {
+        this.snapshotVersion = data.version();
+        Map<String, TextMessage> starts = new HashMap<>();
+        for (String stage : STAGES) {
+            starts.put(stage, encode(MAPPER.createObjectNode()
+                    .put("type", "stage_start")
+                    .put("stage", stage)));
+        }
+        Map<String, List<TextMessage>> steps = new HashMap<>();
+        data.thinkingSteps().forEach((stage, stageSteps) -> {
+            List<TextMessage> frames = new ArrayList<>(stageSteps.size());
+            for (DataSnapshot.ThinkingStep step : stageSteps) {
+                frames.add(encode(MAPPER.createObjectNode()
+                        .put("type", "thinking")
+                        .put("step", step.step())));
+            }
+            steps.put(stage, List.copyOf(frames));
+        });
+        this.stageStart = Map.copyOf(starts);
+        this.thinking = Map.copyOf(steps);
+    }
+
+    /**
+     * Frames for the given snapshot, built on first use and reused until the snapshot version changes.
+     */
+    static OutboundFrames forSnapshot(DataSnapshot data) {
+        OutboundFrames frames = current;
+        if (frames == null || frames.snapshotVersion != data.version()) {
+            frames = new OutboundFrames(data);
+            current = frames;
+        }
+        return frames;
+    }
+
+    TextMessage stageStart(String stage) {
+        return stageStart.get(stage);
+    }
+
+    /**
+     * Thinking frames for a stage, in the same order as {@link DataSnapshot#thinkingSteps(String)}.
+     */
+    List<TextMessage> thinking(String stage) {
+        return thinking.getOrDefault(stage, List.of());
+    }
+
+    /**
+     * Reply to a ping: the conversation this connection continues, and the encoding of large binary frames,
+     * if the ping negotiated one.
+     */
+    static TextMessage ready(String conversationId, EncodingSession.Encoding encoding) {
+        var node = MAPPER.createObjectNode()
+                .put("type", "assistant_message")
+                .put("message", "Backend is ready.")
+                .put("conversationId", conversationId);
+        if (encoding != null) {
+            node.put("encoding", encoding.id());
+        }
+        return encode(node);
+    }
+
+    /**
+     * {"type":"busy","message":...,"retryAfterMs":...}: the intent was not run; the client may send it
+     * again after the given delay.
+     */
+    static TextMessage busy(long retryAfterMs) {
+        return encode(MAPPER.createObjectNode()
+                .put("type", "busy")
+                .put("message", BUSY_MESSAGE)
+                .put("retryAfterMs", retryAfterMs));
+    }
+
+    private static TextMessage assistantMessage(String message) {
+        return encode(MAPPER.createObjectNode()
+                .put("type", "assistant_message")
+                .put("message", message));
+    }
+
+    private static TextMessage encode(JsonNode node) {
+        try {
+            return new TextMessage(MAPPER.writeValueAsBytes(node));
+        } catch (JsonProcessingException e) {
+            // A tree of plain values always serializes
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.smartmarketing.ws;
+
+import com.example.smartmarketing.config.OutboundProperties;
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe, bounded outbound buffer for one session.
+ * <p>
+ * Any thread may call {@link #sendMessage}: the frame is queued and whichever thread holds the flush lock
+ * writes queued frames in order, so frames never interleave and callers never wait behind each other.
+ * While a client lags, a queued frame of a coalescing type (e.g. {@code deployment_progress}) is replaced
+ * by the next frame of that type. A session whose single send blocks longer than the send-time limit, or
+ * whose queue outgrows the buffer limit, is closed with {@link CloseStatus#SESSION_NOT_RELIABLE}; the
+ * {@link SendWatchdog} checks the send time while frames are flushed, so a stuck send is cut off even when
+ * nothing else is queued behind it.
+ */
+final class OutboundSession extends WebSocketSessionDecorator {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboundSession.class);
+
+    /** A queued frame; {@code message} is cleared when a newer frame of the same type supersedes it. */
+    private static final class Pending {
+        WebSocketMessage<?> message;
+        final String coalesceKey;
+
+        Pending(WebSocketMessage<?> message, String coalesceKey) {
+            this.message = message;
+            this.coalesceKey = coalesceKey;
+        }
+    }
+
+    private final AssistantMetrics metrics;
+    private final SendWatchdog watchdog;
+    private final long sendTimeLimitNanos;
+    private final int bufferSizeLimit;
+    private final Set<String> coalesceTypes;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // Guarded by "queue"
+    private final Deque<Pending> queue = new ArrayDeque<>();
+    private final Map<String, Pending> latestByType = new HashMap<>();
+    private int bufferSize;
+
+    private volatile long sendStartedAt;
+    private volatile boolean terminated;
+
+    OutboundSession(WebSocketSession delegate, OutboundProperties properties, SendWatchdog watchdog,
+                    AssistantMetrics metrics) {
+        super(delegate);
+        this.metrics = metrics;
+        this.watchdog = watchdog;
+        this.sendTimeLimitNanos = TimeUnit.MILLISECONDS.toNanos(properties.sendTimeLimitMs());
+        this.bufferSizeLimit = properties.bufferSizeLimit();
+        this.coalesceTypes = Set.copyOf(properties.coalesceTypes());
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (terminated) {
+            // Closing already; the client will not see anything more from this session
+            return;
+        }
+        boolean overLimit = enqueue(message);
+        if (overLimit) {
+            terminate("buffered frames exceed " + bufferSizeLimit + " characters");
+            return;
+        }
+        if (checkSendTime()) {
+            return;
+        }
+        flush();
+    }
+
+    /**
+     * Close the session when the send in progress has blocked longer than the send-time limit. Returns true
+     * when it did.
+     */
+    boolean checkSendTime() {
+        long started = sendStartedAt;
+        if (started == 0 || System.nanoTime() - started <= sendTimeLimitNanos) {
+            return false;
+        }
+        terminate("a send blocked for more than " + TimeUnit.NANOSECONDS.toMillis(sendTimeLimitNanos) + " ms");
+        return true;
+    }
+
+    /**
+     * Drop everything still queued and refuse further frames, e.g. after the connection closed.
+     */
+    void discard() {
+        markTerminated();
+    }
+
+    private boolean enqueue(WebSocketMessage<?> message) {
+        String type = coalesceTypes.isEmpty() || !(message instanceof TextMessage text)
+                ? null
+                : MeteredSession.typeOf(text.getPayload());
+        String key = type != null && coalesceTypes.contains(type) ? type : null;
+        Pending pending = new Pending(message, key);
+        synchronized (queue) {
+            if (key != null) {
+                Pending superseded = latestByType.put(key, pending);
+                if (superseded != null && superseded.message != null) {
+                    bufferSize -= superseded.message.getPayloadLength();
+                    metrics.outboundBuffered(-1, -superseded.message.getPayloadLength());
+                    metrics.frameCoalesced(key);
+                    superseded.message = null;
+                }
+            }
+            queue.addLast(pending);
+            bufferSize += message.getPayloadLength();
+            metrics.outboundBuffered(1, message.getPayloadLength());
+            return bufferSize > bufferSizeLimit;
+        }
+    }
+
+    private WebSocketMessage<?> poll() {
+        synchronized (queue) {
+            Pending pending;
+            while ((pending = queue.pollFirst()) != null) {
+                if (pending.coalesceKey != null) {
+                    latestByType.remove(pending.coalesceKey, pending);
+                }
+                if (pending.message != null) {
+                    bufferSize -= pending.message.getPayloadLength();
+                    metrics.outboundBuffered(-1, -pending.message.getPayloadLength());
+                    return pending.message;
+                }
+            }
+            return null;
+        }
+    }
+
+    private boolean hasPending() {
+        synchronized (queue) {
+            return !queue.isEmpty();
+        }
+    }
+
+    private void flush() throws IOException {
+        // Re-check after unlocking: a frame queued while the holder was finishing would otherwise wait
+        // until the next send
+        do {
+            if (!flushLock.tryLock()) {
+                return;
+            }
+            watchdog.watch(this);
+            try {
+                WebSocketMessage<?> message;
+                while (!terminated && (message = poll()) != null) {
+                    sendStartedAt = System.nanoTime();
+                    try {
+                        super.sendMessage(message);
+                    } finally {
+                        sendStartedAt = 0;
+                    }
+                }
+            } finally {
+                watchdog.unwatch(this);
+                flushLock.unlock();
+            }
+        } while (!terminated && hasPending());
+    }
+
+    /**
+     * True for the one caller that moves the session to terminated.
+     */
+    private boolean markTerminated() {
+        synchronized (queue) {
+            if (terminated) {
+                return false;
+            }
+            terminated = true;
+            metrics.outboundBuffered(-queue.stream().filter(p -> p.message != null).count(), -bufferSize);
+            queue.clear();
+            latestByType.clear();
+            bufferSize = 0;
+            return true;
+        }
+    }
+
+    private void terminate(String reason) {
+        if (!markTerminated()) {
+            return;
+        }
+        log.warn("Closing slow session {}: {}", getId(), reason);
+        metrics.slowSessionClosed();
+        try {
+            // Closing from here also unblocks a sender stuck on the dead connection
+            getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            log.debug("Failed to close session {}", getId(), e);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.smartmarketing.ws;
+
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import com.example.smartmarketing.segment.Bitmap;
+import com.example.smartmarketing.segment.CustomerStore;
+import com.example.smartmarketing.segment.SegmentMatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Streams one session's full segment membership as segment_page frames of {@code pageSize} members:
+ * <pre>
+ * {"type":"segment_page","page":0,"offset":0,"total":3847,"users":[{"id":"c17","name":...}],"last":false}
+ * </pre>
+ * Pages are only sent against credits the client granted; outstanding credits are capped, so no more
+ * than {@code maxCredits} pages are ever queued for a session. The stream walks the membership bitmap
+ * with a cursor, so it holds the bitmap and one page of customer indexes whatever the segment's size.
+ * The segment is looked up when the first page is due; the match is shared with other sessions, and the
+ * stream lets go of it once closed. When a page cannot be built or sent, a last page with an
+ * {@code error} and no users ends the stream, so the client stops waiting for more.
+ */
+final class SegmentPageStream {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentPageStream.class);
+
+    private final WebSocketSession session;
+    private final Supplier<SegmentMatch> segment;
+    private final CustomerStore store;
+    private final StateFrameWriter frameWriter;
+    private final Executor executor;
+    private final AssistantMetrics metrics;
+    private final int maxCredits;
+
+    // Guarded by "this"
+    private int credits;
+    private boolean pumping;
+    private boolean closed;
+
+    // Only touched by the one running pump, and cleared under the lock once the stream closed
+    private final int[] page;
+    private SegmentMatch match;
+    private int cursor;
+    private int offset;
+    private long pageNumber;
+
+    SegmentPageStream(WebSocketSession session, Supplier<SegmentMatch> segment, CustomerStore store,
+                      StateFrameWriter frameWriter, Executor executor, AssistantMetrics metrics,
+                      int pageSize, int maxCredits) {
+        this.session = session;
+        this.segment = segment;
+        this.store = store;
+        this.frameWriter = frameWriter;
+        this.executor = executor;
+        this.metrics = metrics;
+        this.page = new int[Math.max(1, pageSize)];
+        this.maxCredits = Math.max(1, maxCredits);
+    }
+
+    /**
+     * Allow {@code pages} more pages to be sent, and send them unless a pump is already running.
+     */
+    synchronized void grant(int pages) {
+        if (closed || pages <= 0) {
+            return;
+        }
+        credits = Math.min(maxCredits, credits + pages);
+        if (pumping) {
+            return;
+        }
+        pumping = true;
+        try {
+            executor.execute(this::pump);
+        } catch (RejectedExecutionException e) {
+            // Saturated: the credits stay, the client's next grant retries
+            pumping = false;
+        }
+    }
+
+    synchronized void close() {
+        closed = true;
+        if (!pumping) {
+            match = null;
+        }
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private void pump() {
+        try {
+            while (takeCredit()) {
+                if (match == null) {
+                    match = segment.get();
+                }
+                if (sendPage()) {
+                    close();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Segment stream of session {} stopped", session.getId(), e);
+            sendFailure();
+            synchronized (this) {
+                closed = true;
+                pumping = false;
+                match = null;
+            }
+        }
+    }
+
+    private synchronized boolean takeCredit() {
+        if (closed || credits == 0) {
+            pumping = false;
+            if (closed) {
+                match = null;
+            }
+            return false;
+        }
+        credits--;
+        return true;
+    }
+
+    /**
+     * Send the page at the cursor and advance it. Returns whether that was the last page.
+     */
+    private boolean sendPage() throws IOException {
+        Bitmap members = match.members();
+        int count = 0;
+        int customer = members.nextSetBit(cursor);
+        while (customer >= 0 && count < page.length) {
+            page[count++] = customer;
+            customer = members.nextSetBit(customer + 1);
+        }
+        boolean last = customer < 0;
+        session.sendMessage(frameWriter.segmentPage(pageNumber, offset, match.count(), store, page, count, last));
+        metrics.segmentPageSent(count);
+        cursor = customer;
+        offset += count;
+        pageNumber++;
+        return last;
+    }
+
+    /**
+     * Tell the client the stream ended early; it may not get this either when the session itself failed.
+     */
+    private void sendFailure() {
+        try {
+            session.sendMessage(frameWriter.segmentPageFailed(
+                    pageNumber, offset, match != null ? match.count() : 0, "Segment stream failed"));
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not end segment stream of session {}", session.getId(), e);
+        }
+    }
+}
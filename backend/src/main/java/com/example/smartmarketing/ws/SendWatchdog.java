@@ -0,0 +1,55 @@
+package com.example.smartmarketing.ws;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closes sessions whose send has blocked past the send-time limit, even when no further frame is queued
+ * for them. Only sessions that are flushing are watched, so one thread sweeps them a few times per limit.
+ */
+final class SendWatchdog {
+
+    private static final Logger log = LoggerFactory.getLogger(SendWatchdog.class);
+
+    private final Set<OutboundSession> flushing = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService ticker;
+
+    SendWatchdog(long sendTimeLimitMs) {
+        long periodMs = Math.min(1_000, Math.max(10, sendTimeLimitMs / 4));
+        this.ticker = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "outbound-send-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ticker.scheduleAtFixedRate(this::check, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    void watch(OutboundSession session) {
+        flushing.add(session);
+    }
+
+    void unwatch(OutboundSession session) {
+        flushing.remove(session);
+    }
+
+    void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    private void check() {
+        for (OutboundSession session : flushing) {
+            try {
+                session.checkSendTime();
+            } catch (RuntimeException e) {
+                // Keep checking: an exception would cancel the periodic task
+                log.warn("Send-time check failed for session {}", session.getId(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.smartmarketing.ws;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One session's view of the conversation state: every update sent is merged into it, so it can be
+ * checkpointed to the conversation store and restored on another connection.
+ * <p>
+ * Until the client pings with {@code "statePatches":true} every update goes out as a full state_update,
+ * usually a pre-encoded frame. Those updates are only kept, and merged into the state tree when a
+ * checkpoint or a state_sync needs it, once per stage rather than once per frame sent.
+ * After that each update goes out as a state_patch holding JSON-Patch (RFC 6902)
+ * {@code add}/{@code replace}/{@code remove} operations against the merged state:
+ * <pre>
+ * {"type":"state_patch","version":7,"fields":["analyticsData"],
+ *  "ops":[{"op":"replace","path":"/analyticsData/funnelStages/2/count","value":1204}]}
+ * </pre>
+ * {@code fields} lists the top-level fields the update carried, changed or not, so the client can
+ * rebuild the state_update it replaces. Versions increase by one per patch; a client that sees a gap
+ * sends {@code {"type":"resync"}} and gets the whole state back as a state_sync frame. A state_sync is also
+ * sent when patches are enabled after updates went out, and when a stored conversation is restored.
+ * <p>
+ * Frames are sent while holding the tracker's lock, so a state_sync is never overtaken by an older patch.
+ */
+final class SessionStateTracker {
+
+    /** Updates kept unmerged before they are folded into the tree anyway, bounding a session that never checkpoints */
+    private static final int MAX_UNMERGED = 16;
+
+    private final ObjectMapper mapper;
+    private final StateFrameWriter frameWriter;
+
+    // Guarded by "this"
+    private final ObjectNode state;
+    private final List<MockStateUpdate> unmerged = new ArrayList<>();
+    private boolean patches;
+    private long version;
+
+    SessionStateTracker(ObjectMapper mapper, StateFrameWriter frameWriter) {
+        this.mapper = mapper;
+        this.frameWriter = frameWriter;
+        this.state = mapper.createObjectNode();
+    }
+
+    /**
+     * Switch to patches; the client's state starts empty at version 0, or from a state_sync when
+     * updates were already sent.
+     */
+    synchronized void enablePatches(WebSocketSession session) throws IOException {
+        if (patches) {
+            return;
+        }
+        patches = true;
+        merge();
+        if (!state.isEmpty()) {
+            sendSync(session);
+        }
+    }
+
+    void send(WebSocketSession session, MockStateUpdate update) throws IOException {
+        send(session, update, null);
+    }
+
+    /**
+     * Send {@code update} as a full frame, or as a patch once enabled.
+     *
+     * @param encoded the update's pre-encoded state_update frame, or null to encode it on demand
+     */
+    synchronized void send(WebSocketSession session, MockStateUpdate update, TextMessage encoded) throws IOException {
+        if (!patches) {
+            unmerged.add(update);
+            if (unmerged.size() >= MAX_UNMERGED) {
+                merge();
+            }
+            session.sendMessage(encoded != null ? encoded : frameWriter.stateUpdate(update));
+            return;
+        }
+        ObjectNode next = (ObjectNode) update.toStateNode(mapper);
+        ArrayNode fields = mapper.createArrayNode();
+        ArrayNode ops = mapper.createArrayNode();
+        for (Iterator<Map.Entry<String, JsonNode>> it = next.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = it.next();
+            fields.add(field.getKey());
+            fieldOps(field.getKey(), state.get(field.getKey()), field.getValue(), ops);
+        }
+        state.setAll(next);
+        version++;
+
+        ObjectNode frame = mapper.createObjectNode()
+                .put("type", "state_patch")
+                .put("version", version);
+        frame.set("fields", fields);
+        frame.set("ops", ops);
+        session.sendMessage(new TextMessage(frame.toString()));
+    }
+
+    /**
+     * Replace the state with one restored from the conversation store.
+     */
+    synchronized void restore(WebSocketSession session, JsonNode restored) throws IOException {
+        state.removeAll();
+        unmerged.clear();
+        if (restored != null && restored.isObject()) {
+            state.setAll((ObjectNode) restored);
+        }
+        if (patches) {
+            version++;
+            sendSync(session);
+        }
+    }
+
+    /**
+     * Copy of the merged state, for checkpoints.
+     */
+    synchronized ObjectNode snapshot() {
+        merge();
+        return state.deepCopy();
+    }
+
+    /**
+     * Resend the whole state; ignored until patches are enabled, as plain clients never diverge.
+     */
+    synchronized void resync(WebSocketSession session) throws IOException {
+        if (patches) {
+            sendSync(session);
+        }
+    }
+
+    /**
+     * Fold the updates sent as full frames into the state tree, oldest first. Caller holds the lock.
+     */
+    private void merge() {
+        for (MockStateUpdate update : unmerged) {
+            state.setAll((ObjectNode) update.toStateNode(mapper));
+        }
+        unmerged.clear();
+    }
+
+    private void sendSync(WebSocketSession session) throws IOException {
+        ObjectNode frame = mapper.createObjectNode()
+                .put("type", "state_sync")
+                .put("version", version);
+        frame.set("state", state);
+        session.sendMessage(new TextMessage(frame.toString()));
+    }
+
+    /**
+     * Fine-grained ops for one top-level field, unless a single replace of the whole value is smaller,
+     * e.g. when most entries of a list changed.
+     */
+    private void fieldOps(String name, JsonNode before, JsonNode after, ArrayNode ops) {
+        String path = "/" + escape(name);
+        ArrayNode fieldOps = mapper.createArrayNode();
+        diff(path, before, after, fieldOps);
+        if (fieldOps.size() > 1) {
+            ObjectNode whole = op(before == null ? "add" : "replace", path, after);
+            if (whole.toString().length() < fieldOps.toString().length()) {
+                ops.add(whole);
+                return;
+            }
+        }
+        ops.addAll(fieldOps);
+    }
+
+    private void diff(String path, JsonNode before, JsonNode after, ArrayNode ops) {
+        if (before == null) {
+            ops.add(op("add", path, after));
+        } else if (before.equals(after)) {
+            return;
+        } else if (before.isObject() && after.isObject()) {
+            for (Iterator<Map.Entry<String, JsonNode>> it = after.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> field = it.next();
+                diff(path + "/" + escape(field.getKey()), before.get(field.getKey()), field.getValue(), ops);
+            }
+            for (Iterator<String> it = before.fieldNames(); it.hasNext(); ) {
+                String name = it.next();
+                if (!after.has(name)) {
+                    ops.add(mapper.createObjectNode().put("op", "remove").put("path", path + "/" + escape(name)));
+                }
+            }
+        } else if (before.isArray() && after.isArray() && before.size() == after.size()) {
+            // Same-length lists (funnel stages, segment preview) are diffed entry by entry
+            for (int i = 0; i < after.size(); i++) {
+                diff(path + "/" + i, before.get(i), after.get(i), ops);
+            }
+        } else {
+            ops.add(op("replace", path, after));
+        }
+    }
+
+    private ObjectNode op(String op, String path, JsonNode value) {
+        ObjectNode node = mapper.createObjectNode()
+                .put("op", op)
+                .put("path", path);
+        node.set("value", value);
+        return node;
+    }
+
+    /**
+     * JSON Pointer (RFC 6901) escaping of one path segment.
+     */
+    private static String escape(String segment) {
+        return segment.replace("~", "~0").replace("/", "~1");
+    }
+}
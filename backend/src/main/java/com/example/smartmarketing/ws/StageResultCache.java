@@ -0,0 +1,137 @@
+package com.example.smartmarketing.ws;
+
+import com.example.smartmarketing.config.ResultCacheProperties;
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Stage results shared by every conversation, with their encoded state_update frame, keyed by stage and
+ * a fingerprint of what the result depends on (e.g. the normalized intent). Many users sending the same
+ * intent then cost one build and one encoding.
+ * <p>
+ * Entries are weighed by the characters of their frame and dropped least recently used first once
+ * {@code maxChars} is exceeded, and served for at most {@code ttlMs}. An entry built from another data
+ * snapshot version is never served; {@link #invalidate} drops everything when the snapshot is reloaded.
+ */
+final class StageResultCache {
+
+    /**
+     * A stage result and its pre-encoded state_update frame.
+     */
+    record Result(MockStateUpdate update, TextMessage frame) {
+    }
+
+    private record Key(ConversationStage stage, String fingerprint) {
+    }
+
+    private record Entry(Result result, long snapshotVersion, long builtAt) {
+
+        int chars() {
+            return result.frame().getPayload().length();
+        }
+    }
+
+    private final StateFrameWriter frameWriter;
+    private final AssistantMetrics metrics;
+    private final boolean enabled;
+    private final long maxChars;
+    private final long ttlNanos;
+
+    // Guarded by "this"; access order, so iteration starts at the least recently used entry
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long chars;
+
+    StageResultCache(StateFrameWriter frameWriter, ResultCacheProperties properties, AssistantMetrics metrics) {
+        this.frameWriter = frameWriter;
+        this.metrics = metrics;
+        this.enabled = properties.enabled();
+        this.maxChars = properties.maxChars();
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(properties.ttlMs());
+    }
+
+    /**
+     * The cached result of {@code stage} for {@code fingerprint} under snapshot {@code snapshotVersion},
+     * built and encoded on a miss. Concurrent misses on the same key each build; the last one is kept.
+     */
+    Result get(ConversationStage stage, String fingerprint, long snapshotVersion, Supplier<MockStateUpdate> build) {
+        Key key = new Key(stage, fingerprint);
+        long now = System.nanoTime();
+        if (enabled) {
+            Result cached = lookup(key, snapshotVersion, now);
+            if (cached != null) {
+                metrics.stageResultLoaded(true, 0);
+                return cached;
+            }
+        }
+        Result result = encode(build.get());
+        metrics.stageResultLoaded(false, System.nanoTime() - now);
+        if (enabled) {
+            put(key, new Entry(result, snapshotVersion, System.nanoTime()));
+        }
+        return result;
+    }
+
+    /**
+     * A result that is not cached, with its encoded frame.
+     */
+    Result encode(MockStateUpdate update) {
+        return new Result(update, frameWriter.stateUpdate(update));
+    }
+
+    /**
+     * Drop every entry, e.g. after the data snapshot was reloaded.
+     */
+    synchronized void invalidate() {
+        metrics.stageResultsEvicted(entries.size());
+        entries.clear();
+        chars = 0;
+    }
+
+    /**
+     * Trimmed, with runs of whitespace collapsed to one space, so intents differing only in spacing
+     * share a result.
+     */
+    static String normalize(String intent) {
+        return intent.strip().replaceAll("\\s+", " ");
+    }
+
+    private synchronized Result lookup(Key key, long snapshotVersion, long now) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.snapshotVersion() != snapshotVersion || now - entry.builtAt() >= ttlNanos) {
+            remove(key, entry);
+            return null;
+        }
+        return entry.result();
+    }
+
+    private synchronized void put(Key key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            chars -= previous.chars();
+        }
+        chars += entry.chars();
+        int evicted = 0;
+        for (Iterator<Entry> it = entries.values().iterator(); chars > maxChars && it.hasNext(); ) {
+            chars -= it.next().chars();
+            it.remove();
+            evicted++;
+        }
+        if (evicted > 0) {
+            metrics.stageResultsEvicted(evicted);
+        }
+    }
+
+    private void remove(Key key, Entry entry) {
+        entries.remove(key, entry);
+        chars -= entry.chars();
+        metrics.stageResultsEvicted(1);
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.smartmarketing.ws;
+
+import com.example.smartmarketing.segment.CustomerStore;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Streams state_update, deployment_progress and segment_page frames with a {@link JsonGenerator} as UTF-8 into a
+ * reusable per-thread byte buffer, instead of building a Jackson tree and calling toString() on it. Frames are
+ * returned as {@link TextMessage}s over those bytes, so sending them needs no second encoding pass.
+ * Field order and number formatting match {@link MockStateUpdate#toStateNode(ObjectMapper)} exactly, so clients
+ * parse the same document as before; the byte generator writes characters outside the Basic Multilingual Plane,
+ * such as emoji, as {@code \\uXXXX} surrogate escapes.
+ */
+final class StateFrameWriter {
+
+    /** Buffers that grew beyond this (e.g. after a large email) are dropped rather than kept per thread. */
+    private static final int MAX_RETAINED_BYTES = 256 * 1024;
+
+    @FunctionalInterface
+    private interface FrameBody {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    private final JsonFactory jsonFactory;
+    private final ThreadLocal<FrameBuffer> buffers = ThreadLocal.withInitial(FrameBuffer::new);
+
+    StateFrameWriter(ObjectMapper mapper) {
+        this.jsonFactory = mapper.getFactory();
+    }
+
+    /**
+     * {"type":"state_update","state":{...}}
+     */
+    TextMessage stateUpdate(MockStateUpdate state) {
+        return write(g -> {
+            g.writeStartObject();
+            g.writeStringField("type", "state_update");
+            g.writeFieldName("state");
+            writeState(g, state);
+            g.writeEndObject();
+        });
+    }
+
+    /**
+     * {"type":"deployment_progress","progress":{...}}
+     */
+    TextMessage deploymentProgress(DeploymentProgressUpdate progress) {
+        return write(g -> {
+            g.writeStartObject();
+            g.writeStringField("type", "deployment_progress");
+            g.writeObjectFieldStart("progress");
+            g.writeStringField("status", progress.status());
+            g.writeNumberField("progressPercent", progress.progressPercent());
+            g.writeNumberField("totalRecipients", progress.totalRecipients());
+            g.writeNumberField("successCount", progress.successCount());
+            g.writeNumberField("failedCount", progress.failedCount());
+            g.writeStringField("currentPhase", progress.currentPhase());
+            g.writeStringField("estimatedTimeRemaining", progress.estimatedTimeRemaining());
+            g.writeNumberField("throughputPerSecond", progress.throughputPerSecond());
+            g.writeEndObject();
+            g.writeEndObject();
+        });
+    }
+
+    /**
+     * {"type":"segment_page","page":...,"offset":...,"total":...,"users":[...],"last":...}, with the
+     * users taken straight from the store's columns.
+     */
+    TextMessage segmentPage(long page, int offset, int total, CustomerStore store, int[] customers, int count,
+                       boolean last) {
+        return write(g -> {
+            g.writeStartObject();
+            g.writeStringField("type", "segment_page");
+            g.writeNumberField("page", page);
+            g.writeNumberField("offset", offset);
+            g.writeNumberField("total", total);
+            g.writeArrayFieldStart("users");
+            for (int i = 0; i < count; i++) {
+                int customer = customers[i];
+                g.writeStartObject();
+                g.writeStringField("id", store.customerId(customer));
+                g.writeStringField("name", store.name(customer));
+                g.writeStringField("email", store.email(customer));
+                g.writeNumberField("score", store.score(customer));
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+            g.writeBooleanField("last", last);
+            g.writeEndObject();
+        });
+    }
+
+    /**
+     * The last segment_page of a stream that failed before its end: no users, and {@code error}.
+     */
+    TextMessage segmentPageFailed(long page, int offset, int total, String error) {
+        return write(g -> {
+            g.writeStartObject();
+            g.writeStringField("type", "segment_page");
+            g.writeNumberField("page", page);
+            g.writeNumberField("offset", offset);
+            g.writeNumberField("total", total);
+            g.writeArrayFieldStart("users");
+            g.writeEndArray();
+            g.writeBooleanField("last", true);
+            g.writeStringField("error", error);
+            g.writeEndObject();
+        });
+    }
+
+    static void writeState(JsonGenerator g, MockStateUpdate state) throws IOException {
+        g.writeStartObject();
+        if (state.segmentSuggestion() != null) {
+            g.writeStringField("segmentSuggestion", state.segmentSuggestion());
+        }
+        if (state.segmentResult() != null) {
+            g.writeArrayFieldStart("segmentResult");
+            for (MockSegmentUser u : state.segmentResult()) {
+                g.writeStartObject();
+                g.writeStringField("id", u.id());
+                g.writeStringField("name", u.name());
+                g.writeStringField("email", u.email());
+                g.writeNumberField("score", u.score());
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+        }
+        if (state.segmentTotalMatched() != null) {
+            g.writeNumberField("segmentTotalMatched", state.segmentTotalMatched());
+        }
+        if (state.emailHtml() != null) {
+            g.writeStringField("emailHtml", state.emailHtml());
+        }
+        if (state.journeyPlan() != null) {
+            g.writeStringField("journeyPlan", state.journeyPlan());
+        }
+        if (state.scheduleHint() != null) {
+            g.writeStringField("scheduleHint", state.scheduleHint());
+        }
+        if (state.analyticsData() != null) {
+            writeAnalytics(g, state.analyticsData());
+        }
+        if (state.conversationStep() != null) {
+            g.writeStringField("conversationStep", state.conversationStep());
+        }
+        g.writeEndObject();
+    }
+
+    private static void writeAnalytics(JsonGenerator g, MockAnalyticsData analytics) throws IOException {
+        g.writeObjectFieldStart("analyticsData");
+
+        g.writeArrayFieldStart("funnelStages");
+        for (MockFunnelStage stage : analytics.funnelStages()) {
+            g.writeStartObject();
+            g.writeStringField("stage", stage.stage());
+            g.writeNumberField("count", stage.count());
+            g.writeNumberField("rate", stage.rate());
+            if (stage.change() != null) {
+                g.writeNumberField("change", stage.change().doubleValue());
+            }
+            g.writeEndObject();
+        }
+        g.writeEndArray();
+
+        g.writeNumberField("totalImpressions", analytics.totalImpressions());
+        g.writeNumberField("totalLeads", analytics.totalLeads());
+        g.writeNumberField("overallConversionRate", analytics.overallConversionRate());
+
+        MockBottleneck bottleneck = analytics.bottleneck();
+        if (bottleneck != null) {
+            g.writeObjectFieldStart("bottleneck");
+            g.writeStringField("stage", bottleneck.stage());
+            g.writeNumberField("dropoffRate", bottleneck.dropoffRate());
+            g.writeArrayFieldStart("reasons");
+            for (String reason : bottleneck.reasons()) {
+                g.writeString(reason);
+            }
+            g.writeEndArray();
+            g.writeArrayFieldStart("recommendations");
+            for (String rec : bottleneck.recommendations()) {
+                g.writeString(rec);
+            }
+            g.writeEndArray();
+            g.writeEndObject();
+        }
+
+        g.writeEndObject();
+    }
+
+    private TextMessage write(FrameBody body) {
+        FrameBuffer buffer = buffers.get();
+        buffer.reset();
+        try (JsonGenerator generator = jsonFactory.createGenerator(buffer, JsonEncoding.UTF8)) {
+            body.write(generator);
+        } catch (IOException e) {
+            // The buffer does not throw; only a programming error in a frame body gets here
+            throw new UncheckedIOException(e);
+        }
+        TextMessage frame = new TextMessage(buffer.toByteArray());
+        if (buffer.capacity() > MAX_RETAINED_BYTES) {
+            buffers.remove();
+        }
+        return frame;
+    }
+
+    private static final class FrameBuffer extends ByteArrayOutputStream {
+
+        private FrameBuffer() {
+            super(1024);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+}
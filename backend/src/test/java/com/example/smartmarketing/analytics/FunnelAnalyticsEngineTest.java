@@ -0,0 +1,65 @@
+package com.example.smartmarketing.analytics;
+
+import com.example.smartmarketing.config.AnalyticsProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FunnelAnalyticsEngineTest {
+
+    private final FunnelAnalyticsEngine engine =
+            new FunnelAnalyticsEngine(new AnalyticsProperties(1000, FunnelWindow.HOUR, 2));
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void recordCountsEventsPerCampaign() {
+        assertTrue(engine.record("spring-sale", FunnelEvent.IMPRESSION, 10));
+        assertTrue(engine.record("spring-sale", FunnelEvent.IMPRESSION, 5));
+        assertTrue(engine.record("spring-sale", FunnelEvent.CLICK, 3));
+
+        FunnelCounts counts = engine.counts("spring-sale");
+        assertEquals(15, counts.count(FunnelEvent.IMPRESSION));
+        assertEquals(3, counts.count(FunnelEvent.CLICK));
+        assertEquals(18, engine.totalEvents());
+    }
+
+    @Test
+    void recordDoesNotAddCampaignsBeyondTheCap() {
+        assertTrue(engine.record("spring-sale", FunnelEvent.IMPRESSION, 1));
+        assertTrue(engine.admit("summer-sale"));
+
+        assertFalse(engine.record("autumn-sale", FunnelEvent.IMPRESSION, 7));
+        assertFalse(engine.admit("autumn-sale"));
+        assertEquals(Set.of("spring-sale", "summer-sale"), engine.campaignIds());
+        assertEquals(0, engine.counts("autumn-sale").count(FunnelEvent.IMPRESSION));
+        assertEquals(1, engine.totalEvents());
+
+        // Known campaigns keep recording at the cap
+        assertTrue(engine.record("summer-sale", FunnelEvent.IMPRESSION, 2));
+        assertEquals(2, engine.counts("summer-sale").count(FunnelEvent.IMPRESSION));
+    }
+
+    @Test
+    void restoreRespectsTheCap() {
+        long[] totals = new long[FunnelEvent.count()];
+        totals[FunnelEvent.IMPRESSION.ordinal()] = 4;
+
+        assertTrue(engine.restore("spring-sale", totals));
+        assertTrue(engine.restore("summer-sale", totals));
+        assertFalse(engine.restore("autumn-sale", totals));
+
+        assertEquals(Set.of("spring-sale", "summer-sale"), engine.campaignIds());
+        assertEquals(4, engine.counts("summer-sale").count(FunnelEvent.IMPRESSION));
+        // Restored totals predate this process
+        assertEquals(0, engine.totalEvents());
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.smartmarketing.analytics;
+
+import com.example.smartmarketing.config.AnalyticsProperties;
+import com.example.smartmarketing.config.EventLogProperties;
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FunnelEventLogTest {
+
+    /** Two 32-byte records per segment */
+    private static final int SEGMENT_BYTES = 64;
+    private static final FunnelEvent[] IMPRESSION = {FunnelEvent.IMPRESSION};
+
+    @TempDir
+    Path directory;
+
+    private final AssistantMetrics metrics = new AssistantMetrics(new SimpleMeterRegistry());
+    private final List<FunnelAnalyticsEngine> engines = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        engines.forEach(FunnelAnalyticsEngine::shutdown);
+    }
+
+    @Test
+    void tornLastRecordIsCutAndAppendsResumeThere() throws Exception {
+        FunnelEventLog log = open(engine());
+        append(log, 1, 2, 4);
+        log.close();
+        // Three records: the last one, in the second segment, is torn
+        corrupt(segment(1), 0);
+
+        FunnelAnalyticsEngine restored = engine();
+        FunnelEventLog reopened = open(restored);
+        assertEquals(3, impressions(restored));
+        append(reopened, 8);
+        reopened.close();
+
+        FunnelAnalyticsEngine again = engine();
+        open(again).close();
+        assertEquals(11, impressions(again));
+        assertFalse(Files.exists(quarantined(segment(1))));
+    }
+
+    @Test
+    void corruptEarlierSegmentIsQuarantinedAndLaterSegmentsStillReplay() throws Exception {
+        FunnelEventLog log = open(engine());
+        append(log, 1, 2, 4, 8, 16);
+        log.close();
+        // The second record of the first segment, followed by two complete segments
+        corrupt(segment(0), 32);
+
+        FunnelAnalyticsEngine restored = engine();
+        open(restored).close();
+        assertEquals(1 + 4 + 8 + 16, impressions(restored));
+        assertTrue(Files.exists(quarantined(segment(0))));
+        assertEquals(SEGMENT_BYTES, Files.size(quarantined(segment(0))));
+        assertEquals(32, Files.size(segment(0)));
+        assertTrue(Files.exists(segment(2)));
+    }
+
+    @Test
+    void crashMidSpillCutsTheLogWhereWritesStoppedReachingDisk() throws Exception {
+        FunnelEventLog log = open(engine());
+        append(log, 1);
+        // One batch fills the first segment, the whole second one and starts a third
+        log.append("spring-sale", new FunnelEvent[] {FunnelEvent.IMPRESSION, FunnelEvent.IMPRESSION,
+                FunnelEvent.IMPRESSION, FunnelEvent.IMPRESSION}, new long[] {2, 4, 8, 16}).get(5, TimeUnit.SECONDS);
+        log.close();
+        // The crash hit before the batch's page of the first segment reached disk
+        zero(segment(0), 32);
+
+        FunnelAnalyticsEngine restored = engine();
+        FunnelEventLog reopened = open(restored);
+        assertEquals(1, impressions(restored));
+        assertFalse(Files.exists(quarantined(segment(0))));
+        assertFalse(Files.exists(segment(1)));
+        assertFalse(Files.exists(segment(2)));
+        append(reopened, 32, 64);
+        reopened.close();
+
+        FunnelAnalyticsEngine again = engine();
+        open(again).close();
+        assertEquals(1 + 32 + 64, impressions(again));
+        assertTrue(Files.exists(segment(1)));
+    }
+
+    @Test
+    void replayDoesNotRestoreCampaignsBeyondTheCap() throws Exception {
+        FunnelEventLog log = open(engine());
+        append(log, 1, 2);
+        log.append("summer-sale", IMPRESSION, new long[] {4}).get(5, TimeUnit.SECONDS);
+        log.close();
+
+        FunnelAnalyticsEngine restored = engine(1);
+        open(restored).close();
+        assertEquals(Set.of("spring-sale"), restored.campaignIds());
+        assertEquals(3, impressions(restored));
+    }
+
+    private FunnelAnalyticsEngine engine() {
+        return engine(100);
+    }
+
+    private FunnelAnalyticsEngine engine(int maxCampaigns) {
+        FunnelAnalyticsEngine engine = new FunnelAnalyticsEngine(
+                new AnalyticsProperties(1000, FunnelWindow.HOUR, maxCampaigns));
+        engines.add(engine);
+        return engine;
+    }
+
+    private FunnelEventLog open(FunnelAnalyticsEngine engine) throws IOException {
+        return new FunnelEventLog(new EventLogProperties(true, directory.toString(), SEGMENT_BYTES, 0), engine, metrics);
+    }
+
+    private static void append(FunnelEventLog log, long... counts) throws Exception {
+        for (long count : counts) {
+            log.append("spring-sale", IMPRESSION, new long[] {count}).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static long impressions(FunnelAnalyticsEngine engine) {
+        return engine.counts("spring-sale").count(FunnelEvent.IMPRESSION);
+    }
+
+    private Path segment(long number) {
+        return directory.resolve(String.format("%010d.log", number));
+    }
+
+    private static Path quarantined(Path segment) {
+        return segment.resolveSibling(segment.getFileName() + ".corrupt");
+    }
+
+    /**
+     * Wipe the record at {@code at}, as if it was never written.
+     */
+    private static void zero(Path segment, int at) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(32), at);
+        }
+    }
+
+    /**
+     * Flip a byte of the count of the record at {@code at}, so it fails its checksum.
+     */
+    private static void corrupt(Path segment, int at) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, at + 8);
+            value.put(0, (byte) (value.get(0) ^ 0x5a)).rewind();
+            channel.write(value, at + 8);
+        }
+    }
+}
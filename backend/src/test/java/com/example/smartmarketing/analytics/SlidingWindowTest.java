@@ -0,0 +1,95 @@
+package com.example.smartmarketing.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SlidingWindowTest {
+
+    private static final int STAGES = FunnelEvent.count();
+
+    @Test
+    void runningSumsMatchTheLastTwoSpansOfBuckets() {
+        // One tick per bucket, pushed well past the ring so every slot is reused
+        SlidingWindow window = new SlidingWindow(FunnelWindow.MINUTE, FunnelWindow.MINUTE.bucketMillis());
+        int buckets = FunnelWindow.MINUTE.buckets();
+        SplittableRandom random = new SplittableRandom(11);
+        List<long[]> pushed = new ArrayList<>();
+
+        for (int i = 0; i < 5 * buckets + 7; i++) {
+            long[] delta = new long[STAGES];
+            for (int s = 0; s < STAGES; s++) {
+                delta[s] = random.nextInt(1_000);
+            }
+            pushed.add(delta);
+            window.tick(delta);
+
+            FunnelTrend trend = window.trend();
+            assertArrayEquals(sum(pushed, pushed.size() - buckets, pushed.size()), trend.current(), "push " + i);
+            assertArrayEquals(sum(pushed, pushed.size() - 2 * buckets, pushed.size() - buckets), trend.previous(),
+                    "push " + i);
+        }
+    }
+
+    @Test
+    void bucketClosesOnlyAfterItsTicks() {
+        // Four ticks per bucket
+        SlidingWindow window = new SlidingWindow(FunnelWindow.MINUTE, FunnelWindow.MINUTE.bucketMillis() / 4);
+        long[] delta = new long[STAGES];
+        delta[FunnelEvent.IMPRESSION.ordinal()] = 5;
+
+        for (int i = 0; i < 3; i++) {
+            window.tick(delta);
+            assertFalse(window.trend().hasData());
+        }
+        window.tick(delta);
+        assertEquals(20, window.trend().current()[FunnelEvent.IMPRESSION.ordinal()]);
+    }
+
+    @Test
+    void bottleneckIsTheTransitionWhoseRateFellTheMost() {
+        long[] previous = {1_000, 200, 100, 50, 40, 20, 10};
+        // Click-through holds, landing views halve, form starts dip slightly
+        long[] current = {1_000, 200, 50, 24, 24, 12, 6};
+
+        FunnelTrend trend = FunnelTrend.of(FunnelWindow.HOUR, current, previous);
+
+        assertSame(FunnelEvent.LANDING_VIEW, trend.bottleneck());
+        assertSame(FunnelEvent.CLICK, trend.bottleneckFrom());
+        assertEquals(-50.0, trend.change(FunnelEvent.LANDING_VIEW), 1e-9);
+        assertEquals(0.0, trend.change(FunnelEvent.CLICK), 1e-9);
+        assertEquals(75.0, trend.dropoffRate(), 1e-9);
+        assertEquals(50.0, trend.previousDropoff(), 1e-9);
+    }
+
+    @Test
+    void noBottleneckWithoutAPreviousSpanOrADecline() {
+        long[] counts = {1_000, 200, 100, 50, 40, 20, 10};
+
+        FunnelTrend fresh = FunnelTrend.of(FunnelWindow.HOUR, counts, new long[STAGES]);
+        assertNull(fresh.bottleneck());
+        assertNull(fresh.change(FunnelEvent.CLICK));
+
+        FunnelTrend steady = FunnelTrend.of(FunnelWindow.HOUR, counts, counts.clone());
+        assertNull(steady.bottleneck());
+        assertEquals(0, steady.dropoffRate());
+    }
+
+    private static long[] sum(List<long[]> pushed, int from, int to) {
+        long[] sum = new long[STAGES];
+        for (int i = Math.max(0, from); i < to; i++) {
+            for (int s = 0; s < STAGES; s++) {
+                sum[s] += pushed.get(i)[s];
+            }
+        }
+        return sum;
+    }
+}
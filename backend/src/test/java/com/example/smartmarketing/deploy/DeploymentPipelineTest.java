@@ -0,0 +1,128 @@
+package com.example.smartmarketing.deploy;
+
+import com.example.smartmarketing.config.ConversationExecutorProperties;
+import com.example.smartmarketing.config.DeploymentProperties;
+import com.example.smartmarketing.config.TimelineProperties;
+import com.example.smartmarketing.exec.ConversationExecutor;
+import com.example.smartmarketing.exec.TimelineScheduler;
+import com.example.smartmarketing.template.CompiledTemplate;
+import com.example.smartmarketing.template.EmailRecipient;
+import com.example.smartmarketing.util.DataSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeploymentPipelineTest {
+
+    private static final CompiledTemplate TEMPLATE = CompiledTemplate.compile("<p>Hi {{firstName}}, ends {{deadline}}</p>");
+
+    private final ConversationExecutor executor = new ConversationExecutor(
+            new ConversationExecutorProperties(ConversationExecutorProperties.Mode.PLATFORM, 8, 1_000));
+    private final TimelineScheduler scheduler = new TimelineScheduler(new TimelineProperties(1, false), executor);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        scheduler.shutdown();
+        executor.shutdown();
+    }
+
+    @Test
+    void everyRecipientGetsOneOutcomeAfterRetries() throws Exception {
+        // Every third recipient is throttled once, every tenth bounces
+        Set<String> throttled = ConcurrentHashMap.newKeySet();
+        Map<String, String> html = new ConcurrentHashMap<>();
+        DeliverySink sink = batch -> {
+            List<DeliveryOutcome> outcomes = new ArrayList<>();
+            for (OutboundEmail email : batch) {
+                int index = Integer.parseInt(email.recipient().id().substring(1));
+                html.put(email.recipient().id(), email.html());
+                if (index % 10 == 0) {
+                    outcomes.add(DeliveryOutcome.FAILED);
+                } else if (index % 3 == 0 && throttled.add(email.recipient().id())) {
+                    outcomes.add(DeliveryOutcome.RETRY);
+                } else {
+                    outcomes.add(DeliveryOutcome.DELIVERED);
+                }
+            }
+            return outcomes;
+        };
+
+        DeploymentRun run = pipeline(sink, 4).start(recipients(300), TEMPLATE, Map.of("deadline", "Friday"),
+                config(100_000, 25, 2));
+        run.completion().get(5, TimeUnit.SECONDS);
+
+        assertEquals(30, run.failed());
+        assertEquals(270, run.delivered());
+        assertEquals(90, run.retried());
+        assertEquals(300, run.processed());
+        assertEquals("<p>Hi First7, ends Friday</p>", html.get("c7"));
+    }
+
+    @Test
+    void recipientsStillThrottledAfterTheLastRetryFail() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        DeliverySink sink = batch -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("ESP unavailable");
+        };
+
+        DeploymentRun run = pipeline(sink, 4).start(recipients(10), TEMPLATE, Map.of(), config(100_000, 10, 2));
+        run.completion().get(5, TimeUnit.SECONDS);
+
+        assertEquals(10, run.failed());
+        assertEquals(0, run.delivered());
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void inFlightBatchesAndThroughputAreBounded() throws Exception {
+        AtomicInteger sending = new AtomicInteger();
+        AtomicInteger maxSending = new AtomicInteger();
+        DeliverySink sink = batch -> {
+            maxSending.accumulateAndGet(sending.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sending.decrementAndGet();
+            return batch.stream().map(email -> DeliveryOutcome.DELIVERED).toList();
+        };
+
+        long started = System.nanoTime();
+        // A burst of one batch, then 200 per second: the other 150 recipients take at least 750 ms
+        DeploymentRun run = pipeline(sink, 2).start(recipients(200), TEMPLATE, Map.of(), config(200, 50, 0));
+        run.completion().get(5, TimeUnit.SECONDS);
+
+        assertEquals(200, run.delivered());
+        assertTrue(maxSending.get() <= 2, "batches sending at once: " + maxSending.get());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) >= 700);
+    }
+
+    private DeploymentPipeline pipeline(DeliverySink sink, int maxInFlightBatches) {
+        return new DeploymentPipeline(sink, scheduler, new DeploymentProperties("test", maxInFlightBatches, 0));
+    }
+
+    private static List<EmailRecipient> recipients(int count) {
+        List<EmailRecipient> recipients = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            recipients.add(new EmailRecipient("c" + i, "First" + i + " Last", "c" + i + "@example.com", 50));
+        }
+        return recipients;
+    }
+
+    private static DataSnapshot.DeploymentConfig config(int throughputPerSecond, int batchSize, int maxRetries) {
+        return new DataSnapshot.DeploymentConfig(0, 1, 0, throughputPerSecond, List.of(), 100, batchSize, maxRetries,
+                10, List.of());
+    }
+}
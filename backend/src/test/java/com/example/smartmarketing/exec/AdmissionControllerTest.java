@@ -0,0 +1,131 @@
+package com.example.smartmarketing.exec;
+
+import com.example.smartmarketing.config.AdmissionProperties;
+import com.example.smartmarketing.config.ConversationExecutorProperties;
+import com.example.smartmarketing.config.TimelineProperties;
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControllerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private ConversationExecutor executor;
+    private TimelineScheduler scheduler;
+    private AdmissionController admission;
+
+    @BeforeEach
+    void setUp() {
+        executor = new ConversationExecutor(new ConversationExecutorProperties(
+                ConversationExecutorProperties.Mode.PLATFORM, 4, 100));
+        scheduler = new TimelineScheduler(new TimelineProperties(1, false), executor);
+        // Two slots, one queued stage, a 200ms wait
+        admission = new AdmissionController(new AdmissionProperties(true, 1, 2, 1, 1, 200, 1_000, false, 1.5),
+                scheduler, new AssistantMetrics(registry));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        scheduler.shutdown();
+        executor.shutdown();
+    }
+
+    @Test
+    void stagesBeyondTheLimitQueueAndAFullQueueRejects() throws Exception {
+        AdmissionController.Ticket first = admission.admitStage();
+        AdmissionController.Ticket second = admission.admitStage();
+        AdmissionController.Ticket queued = admission.admitStage();
+        AdmissionController.Ticket rejected = admission.admitStage();
+
+        assertTrue(first.granted().isDone());
+        assertTrue(second.granted().isDone());
+        assertFalse(queued.granted().isDone());
+        assertEquals("queue_full", rejection(rejected));
+        assertEquals(1, admission.queuedStages());
+
+        first.release("segment", true);
+        queued.granted().get(1, TimeUnit.SECONDS);
+        assertEquals(2, admission.inFlightStages());
+        assertEquals(0, admission.queuedStages());
+        assertEquals(1.0, rejections("queue_full"));
+    }
+
+    @Test
+    void queuedStageIsTurnedAwayAfterTheTimeout() throws Exception {
+        admission.admitStage();
+        AdmissionController.Ticket second = admission.admitStage();
+        AdmissionController.Ticket queued = admission.admitStage();
+
+        assertEquals("queue_timeout", rejection(queued));
+        assertEquals(0, admission.queuedStages());
+        assertEquals(2, admission.inFlightStages());
+        assertEquals(1.0, rejections("queue_timeout"));
+
+        // Releasing a turned-away ticket frees nothing; releasing a granted one frees its slot
+        queued.release("segment", false);
+        assertEquals(2, admission.inFlightStages());
+        second.release("segment", true);
+        assertTrue(admission.admitStage().granted().isDone());
+    }
+
+    @Test
+    void releaseIsIdempotentAndCancelledWaitersLeaveTheQueue() {
+        AdmissionController.Ticket first = admission.admitStage();
+        admission.admitStage();
+        AdmissionController.Ticket queued = admission.admitStage();
+
+        queued.release("segment", false);
+        assertEquals(0, admission.queuedStages());
+        first.release("segment", true);
+        first.release("segment", true);
+        assertEquals(1, admission.inFlightStages());
+        assertFalse(queued.granted().isDone());
+    }
+
+    @Test
+    void connectionsAreCountedOnceAndReleasedOnce() {
+        Map<String, Object> accepted = new HashMap<>();
+        Map<String, Object> refused = new HashMap<>();
+        assertTrue(admission.tryConnect(accepted));
+        assertFalse(admission.tryConnect(refused));
+        assertEquals(1, admission.connections());
+
+        admission.disconnected(refused);
+        assertEquals(1, admission.connections());
+        admission.disconnected(accepted);
+        admission.disconnected(accepted);
+        assertEquals(0, admission.connections());
+    }
+
+    /**
+     * Rejections counted for {@code reason}; the timer thread counts one just after the ticket fails.
+     */
+    private double rejections(String reason) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        double count = registry.counter("assistant.admission.rejections", "reason", reason).count();
+        while (count == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+            count = registry.counter("assistant.admission.rejections", "reason", reason).count();
+        }
+        return count;
+    }
+
+    private static String rejection(AdmissionController.Ticket ticket) {
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> ticket.granted().get(2, TimeUnit.SECONDS));
+        return assertInstanceOf(AdmissionRejectedException.class, failure.getCause()).reason();
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.smartmarketing.exec;
+
+import com.example.smartmarketing.config.ConversationExecutorProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConversationExecutorTest {
+
+    private ConversationExecutor executor;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        // One worker, one queued task
+        executor = new ConversationExecutor(new ConversationExecutorProperties(
+                ConversationExecutorProperties.Mode.PLATFORM, 1, 1));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void saturatedExecutorRefusesTheNewTaskAndKeepsTheQueuedOne() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch queuedRan = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        executor.execute(queuedRan::countDown);
+
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {
+        }));
+        assertEquals(1, executor.stats().rejectedTasks());
+        assertEquals(1, executor.stats().queuedTasks());
+
+        release.countDown();
+        assertTrue(queuedRan.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void refusalsAfterShutdownAreNotCountedAsSaturation() throws Exception {
+        executor.shutdown();
+
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {
+        }));
+        assertEquals(0, executor.stats().rejectedTasks());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
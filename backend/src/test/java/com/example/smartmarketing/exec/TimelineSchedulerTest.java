@@ -0,0 +1,139 @@
+package com.example.smartmarketing.exec;
+
+import com.example.smartmarketing.config.ConversationExecutorProperties;
+import com.example.smartmarketing.config.TimelineProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimelineSchedulerTest {
+
+    // A single worker: a pause that held it would starve every other task
+    private final ConversationExecutor executor = new ConversationExecutor(
+            new ConversationExecutorProperties(ConversationExecutorProperties.Mode.PLATFORM, 1, 100));
+    private TimelineScheduler scheduler = new TimelineScheduler(new TimelineProperties(1, false), executor);
+    private final List<String> steps = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        scheduler.shutdown();
+        executor.shutdown();
+    }
+
+    @Test
+    void pausedTimelineHoldsNoWorker() throws Exception {
+        TimelineRun run = scheduler.start(Timeline.builder()
+                .then(() -> steps.add("first"))
+                .pause(1_000)
+                .then(() -> steps.add("second"))
+                .build());
+
+        CountDownLatch otherTask = new CountDownLatch(1);
+        waitFor(() -> steps.size() == 1);
+        executor.execute(otherTask::countDown);
+        assertTrue(otherTask.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, scheduler.pendingTimers());
+
+        run.completion().get(3, TimeUnit.SECONDS);
+        assertEquals(List.of("first", "second"), steps);
+        assertEquals(0, scheduler.pendingTimers());
+    }
+
+    @Test
+    void cancelledTimelineSkipsItsRemainingStepsAndTimers() throws Exception {
+        TimelineRun run = scheduler.start(Timeline.builder()
+                .then(() -> steps.add("first"))
+                .pause(10_000)
+                .then(() -> steps.add("second"))
+                .build());
+        waitFor(() -> scheduler.pendingTimers() == 1);
+
+        assertTrue(run.cancel());
+
+        assertThrows(CancellationException.class, () -> run.completion().join());
+        run.settled().get(2, TimeUnit.SECONDS);
+        assertEquals(0, scheduler.pendingTimers());
+        assertEquals(List.of("first"), steps);
+    }
+
+    @Test
+    void awaitedStepResumesTheTimelineAndItsFailureFailsIt() throws Exception {
+        CompletableFuture<String> work = new CompletableFuture<>();
+        TimelineRun run = scheduler.start(Timeline.builder()
+                .thenAwait(() -> work)
+                .then(() -> steps.add(work.join()))
+                .build());
+        assertFalse(run.isDone());
+        work.complete("computed");
+        run.completion().get(2, TimeUnit.SECONDS);
+        assertEquals(List.of("computed"), steps);
+
+        IllegalStateException failure = new IllegalStateException("compute failed");
+        TimelineRun failed = scheduler.start(Timeline.builder()
+                .thenAwait(() -> CompletableFuture.failedFuture(failure))
+                .then(() -> steps.add("never"))
+                .build());
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> failed.completion().get(2, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        assertEquals(List.of("computed"), steps);
+    }
+
+    @Test
+    void workStartedBeforeAPauseOverlapsIt() throws Exception {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        long started = System.nanoTime();
+        // Like a stage computing its result from stage_start while its thinking steps are paced
+        TimelineRun run = scheduler.start(Timeline.builder()
+                .then(() -> CompletableFuture.delayedExecutor(500, TimeUnit.MILLISECONDS)
+                        .execute(() -> result.complete("computed")))
+                .pause(500)
+                .then(() -> steps.add("thinking"))
+                .thenAwait(() -> result)
+                .then(() -> steps.add(result.join()))
+                .build());
+
+        run.completion().get(3, TimeUnit.SECONDS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        assertEquals(List.of("thinking", "computed"), steps);
+        assertTrue(elapsedMs >= 500 && elapsedMs < 900, "took " + elapsedMs + " ms, not the longer of the two");
+    }
+
+    @Test
+    void zeroDelayIgnoresPauses() throws Exception {
+        scheduler.shutdown();
+        scheduler = new TimelineScheduler(new TimelineProperties(1, true), executor);
+
+        TimelineRun run = scheduler.start(Timeline.builder()
+                .pause(60_000)
+                .then(() -> steps.add("first"))
+                .pause(60_000)
+                .then(() -> steps.add("second"))
+                .build());
+
+        run.completion().get(2, TimeUnit.SECONDS);
+        assertEquals(List.of("first", "second"), steps);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not reached");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.smartmarketing.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AssistantMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AssistantMetrics metrics = new AssistantMetrics(registry);
+
+    @Test
+    void stageLatencyIsTimedPerStageAndOutcome() {
+        metrics.conversationStarted();
+        metrics.conversationStarted();
+        metrics.conversationStarted();
+        assertEquals(3, gauge("assistant.conversations.in_flight"));
+
+        metrics.conversationFinished("segment", TimeUnit.MILLISECONDS.toNanos(40), false);
+        metrics.conversationFinished("segment", TimeUnit.MILLISECONDS.toNanos(60), false);
+        metrics.conversationFinished("email", TimeUnit.MILLISECONDS.toNanos(5), true);
+
+        Timer segment = registry.get("assistant.stage.latency").tags("stage", "segment", "outcome", "success").timer();
+        assertEquals(2, segment.count());
+        assertEquals(100, segment.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(1, registry.get("assistant.stage.latency").tags("stage", "email", "outcome", "failure")
+                .timer().count());
+        assertEquals(0, gauge("assistant.conversations.in_flight"));
+    }
+
+    @Test
+    void cancelledStagesLeaveTheGaugeWithoutALatency() {
+        metrics.conversationStarted();
+        metrics.conversationCancelled();
+
+        assertEquals(0, gauge("assistant.conversations.in_flight"));
+        assertEquals(0, registry.find("assistant.stage.latency").timers().size());
+    }
+
+    @Test
+    void sessionsAndOutboundBuffersAreGauged() {
+        metrics.sessionOpened();
+        metrics.sessionOpened();
+        metrics.sessionClosed();
+        metrics.outboundBuffered(3, 1_200);
+        metrics.outboundBuffered(-1, -400);
+
+        assertEquals(1, gauge("assistant.sessions.active"));
+        assertEquals(2, gauge("assistant.outbound.buffered.frames"));
+        assertEquals(800, gauge("assistant.outbound.buffered.chars"));
+    }
+
+    @Test
+    void frameSizesAreSummarizedPerMessageType() {
+        metrics.frameSent("thinking", 40);
+        metrics.frameSent("thinking", 60);
+        metrics.frameSent("state_update", 4_096);
+
+        DistributionSummary thinking = registry.get("assistant.outbound.frame.size").tag("type", "thinking").summary();
+        assertEquals(2, thinking.count());
+        assertEquals(100, thinking.totalAmount());
+        assertEquals(4_096, registry.get("assistant.outbound.frame.size").tag("type", "state_update")
+                .summary().max());
+    }
+
+    @Test
+    void dataLoadsAreTimedPerFile() {
+        metrics.dataLoaded("segment-data.json", TimeUnit.MILLISECONDS.toNanos(3));
+        metrics.dataLoaded("segment-data.json", TimeUnit.MILLISECONDS.toNanos(5));
+        metrics.dataLoaded("snapshot", TimeUnit.MILLISECONDS.toNanos(20));
+
+        assertEquals(2, registry.get("assistant.data.load").tag("file", "segment-data.json").timer().count());
+        assertEquals(20, registry.get("assistant.data.load").tag("file", "snapshot").timer()
+                .totalTime(TimeUnit.MILLISECONDS), 0.001);
+    }
+
+    private double gauge(String name) {
+        return registry.get(name).gauge().value();
+    }
+}
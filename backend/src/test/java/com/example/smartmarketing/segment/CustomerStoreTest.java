@@ -0,0 +1,44 @@
+package com.example.smartmarketing.segment;
+
+import com.example.smartmarketing.config.CustomerStoreProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CustomerStoreTest {
+
+    private static final Pattern ADDRESS = Pattern.compile("[a-z]+\\.[a-z]+\\d+@example\\.com");
+
+    private final Locale defaultLocale = Locale.getDefault();
+    private final CustomerStore store = new CustomerStore(new CustomerStoreProperties(1_000, 42));
+
+    @AfterEach
+    void tearDown() {
+        Locale.setDefault(defaultLocale);
+    }
+
+    @Test
+    void emailIsDerivedFromTheName() {
+        assertEquals("Alice Chen", store.name(0));
+        assertEquals("alice.chen0@example.com", store.email(0));
+        assertEquals("leo.wang21@example.com", store.email(21));
+        assertEquals(store.email(21), store.recipient(21).email());
+    }
+
+    @Test
+    void emailsStayAsciiUnderTheDefaultLocale() {
+        for (Locale locale : new Locale[] {Locale.forLanguageTag("tr"), Locale.forLanguageTag("lt"),
+                Locale.forLanguageTag("az")}) {
+            Locale.setDefault(locale);
+            for (int customer = 0; customer < store.size(); customer++) {
+                String email = store.email(customer);
+                assertTrue(ADDRESS.matcher(email).matches(), locale + ": " + email);
+            }
+        }
+    }
+}
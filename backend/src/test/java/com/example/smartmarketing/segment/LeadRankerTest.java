@@ -0,0 +1,74 @@
+package com.example.smartmarketing.segment;
+
+import com.example.smartmarketing.config.CustomerStoreProperties;
+import com.example.smartmarketing.config.SegmentProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LeadRankerTest {
+
+    // Enough customers for several fork-join partitions
+    private static final CustomerStore STORE = new CustomerStore(new CustomerStoreProperties(200_000, 7));
+
+    private final LeadRanker ranker = new LeadRanker(STORE, new SegmentProperties(10, LeadTieBreak.ENGAGEMENT, 500, 4));
+
+    @Test
+    void topLeadsMatchAFullSortForEveryTieBreak() {
+        Bitmap members = members();
+        for (LeadTieBreak tieBreak : LeadTieBreak.values()) {
+            assertArrayEquals(fullSort(members, 250, tieBreak), ranker.top(members, 250, tieBreak), tieBreak.name());
+        }
+    }
+
+    @Test
+    void topLeadsUsesTheConfiguredSize() {
+        Bitmap members = members();
+        assertArrayEquals(fullSort(members, 10, LeadTieBreak.ENGAGEMENT),
+                ranker.topLeads(new SegmentMatch(members, members.cardinality(), 0)));
+    }
+
+    @Test
+    void smallSegmentsReturnEveryMember() {
+        Bitmap members = new Bitmap(STORE.size());
+        members.set(3);
+        members.set(70_000);
+        members.set(199_999);
+
+        assertEquals(3, ranker.top(members, 50, LeadTieBreak.CUSTOMER_ID).length);
+        assertArrayEquals(fullSort(members, 50, LeadTieBreak.CUSTOMER_ID),
+                ranker.top(members, 50, LeadTieBreak.CUSTOMER_ID));
+        assertEquals(0, ranker.top(members, 0, LeadTieBreak.CUSTOMER_ID).length);
+    }
+
+    private static Bitmap members() {
+        Bitmap members = new Bitmap(STORE.size());
+        for (int customer = 0; customer < STORE.size(); customer++) {
+            if (customer % 3 != 0) {
+                members.set(customer);
+            }
+        }
+        return members;
+    }
+
+    private static int[] fullSort(Bitmap members, int k, LeadTieBreak tieBreak) {
+        Comparator<Integer> bestFirst = Comparator.<Integer>comparingInt(STORE::score).reversed()
+                .thenComparing(switch (tieBreak) {
+                    case CUSTOMER_ID -> Comparator.<Integer>comparingInt(customer -> 0);
+                    case ENGAGEMENT -> Comparator.<Integer>comparingInt(STORE::engagement).reversed();
+                    case RECENT_ACTIVITY -> Comparator.<Integer>comparingInt(STORE::daysSinceActivity);
+                })
+                .thenComparingInt(customer -> customer);
+        return IntStream.range(0, STORE.size())
+                .filter(members::get)
+                .boxed()
+                .sorted(bestFirst)
+                .limit(k)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+}
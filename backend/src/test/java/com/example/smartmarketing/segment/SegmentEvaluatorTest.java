@@ -0,0 +1,61 @@
+package com.example.smartmarketing.segment;
+
+import com.example.smartmarketing.config.CustomerStoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SegmentEvaluatorTest {
+
+    // Several parallel chunks, and a size that leaves a partial last word
+    private static final CustomerStore STORE = new CustomerStore(new CustomerStoreProperties(150_037, 3));
+
+    private final SegmentEvaluator evaluator = new SegmentEvaluator(STORE);
+
+    @Test
+    void bitmapEvaluationMatchesARowByRowScan() {
+        List<SegmentFilter> filters = List.of(
+                SegmentFilter.ALL,
+                new SegmentFilter(EnumSet.of(LoyaltyTier.GOLD, LoyaltyTier.PLATINUM), 60, true, 0, 100),
+                new SegmentFilter(Set.of(), -1, false, 20, 70),
+                new SegmentFilter(EnumSet.of(LoyaltyTier.BRONZE), 30, null, 50, 50),
+                new SegmentFilter(Set.of(), 10_000, null, 0, 100));
+
+        for (SegmentFilter filter : filters) {
+            SegmentMatch match = evaluator.evaluate(filter);
+            int expected = 0;
+            for (int customer = 0; customer < STORE.size(); customer++) {
+                boolean matches = matches(filter, customer);
+                assertEquals(matches, match.members().get(customer), filter + " customer " + customer);
+                if (matches) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, match.count(), filter.toString());
+            assertEquals(expected, match.members().cardinality(), filter.toString());
+        }
+    }
+
+    @Test
+    void filtersAreParsedFromSegmentData() throws Exception {
+        SegmentFilter filter = SegmentFilter.from(new ObjectMapper().readTree("""
+                {"loyaltyTiers":["gold","Platinum"],"lastActivityDaysGreaterThan":60,"emailOptIn":true,
+                 "engagementScore":{"min":10}}"""));
+
+        assertEquals(new SegmentFilter(EnumSet.of(LoyaltyTier.GOLD, LoyaltyTier.PLATINUM), 60, true, 10, 100), filter);
+        assertEquals(SegmentFilter.ALL, SegmentFilter.from(null));
+    }
+
+    private static boolean matches(SegmentFilter filter, int customer) {
+        return (filter.loyaltyTiers().isEmpty() || filter.loyaltyTiers().contains(STORE.tier(customer)))
+                && (filter.emailOptIn() == null || filter.emailOptIn() == STORE.emailOptIn(customer))
+                && STORE.daysSinceActivity(customer) > filter.lastActivityDaysGreaterThan()
+                && STORE.engagement(customer) >= filter.engagementMin()
+                && STORE.engagement(customer) <= filter.engagementMax();
+    }
+}
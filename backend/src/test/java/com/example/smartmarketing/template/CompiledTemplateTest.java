@@ -0,0 +1,45 @@
+package com.example.smartmarketing.template;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompiledTemplateTest {
+
+    @Test
+    void rendersLikeReplacingEveryPlaceholder() {
+        String source = "<p>Hi {{firstName}},</p><p>Offer ends {{ deadline }}. See you, {{firstName}}!</p>";
+        CompiledTemplate template = CompiledTemplate.compile(source);
+
+        assertEquals(2, template.slotCount());
+        assertEquals(source.replace("{{firstName}}", "Maria").replace("{{ deadline }}", "2026-10-27"),
+                template.render(Map.of("firstName", "Maria", "deadline", "2026-10-27")));
+    }
+
+    @Test
+    void unboundPlaceholdersAndUnclosedBracesStayAsWritten() {
+        CompiledTemplate template = CompiledTemplate.compile("Hi {{firstName}}, score {{score}} {{oops");
+
+        assertEquals("Hi {{firstName}}, score 87 {{oops", template.render(Map.of("score", "87", "unused", "x")));
+        assertEquals(-1, template.slot("unused"));
+    }
+
+    @Test
+    void renderToReusesTheCallersBufferAndSlots() {
+        CompiledTemplate template = CompiledTemplate.compile("{{a}}-{{b}}");
+        String[] values = new String[template.slotCount()];
+        StringBuilder out = new StringBuilder();
+
+        values[template.slot("a")] = "1";
+        values[template.slot("b")] = "2";
+        template.renderTo(out, values);
+        out.setLength(0);
+        values[template.slot("b")] = "3";
+        template.renderTo(out, values);
+
+        assertEquals("1-3", out.toString());
+        assertEquals(1, template.literalLength());
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.smartmarketing.template;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EmailBatchRendererTest {
+
+    private static final CompiledTemplate TEMPLATE = CompiledTemplate.compile(
+            "<p>Hi {{firstName}} ({{name}}, {{email}}), your score is {{score}}. Ends {{deadline}}.</p>");
+    private static final Map<String, String> SHARED = Map.of("deadline", "2026-10-27");
+
+    @Test
+    void parallelBatchRendersEveryRecipientExactlyLikeOneByOne() {
+        List<EmailRecipient> recipients = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            recipients.add(new EmailRecipient("c" + i, "Name" + i + " Last", "n" + i + "@example.com", i % 100));
+        }
+        Map<String, String> rendered = new ConcurrentHashMap<>();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            new EmailBatchRenderer(pool).renderBatch(TEMPLATE, recipients, SHARED,
+                    (recipient, html) -> rendered.put(recipient.id(), html.toString()));
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(recipients.size(), rendered.size());
+        for (EmailRecipient recipient : recipients) {
+            assertEquals(expected(recipient), rendered.get(recipient.id()));
+        }
+    }
+
+    @Test
+    void renderEachRunsOnTheCallingThread() {
+        List<EmailRecipient> recipients = List.of(new EmailRecipient("c1", "Maria Gomez", "maria@example.com", 91));
+        Thread caller = Thread.currentThread();
+        List<String> rendered = new ArrayList<>();
+
+        new EmailBatchRenderer().renderEach(TEMPLATE, recipients, SHARED, (recipient, html) -> {
+            assertEquals(caller, Thread.currentThread());
+            rendered.add(html.toString());
+        });
+
+        assertEquals(List.of("<p>Hi Maria (Maria Gomez, maria@example.com), your score is 91. Ends 2026-10-27.</p>"),
+                rendered);
+    }
+
+    private static String expected(EmailRecipient recipient) {
+        return TEMPLATE.render(Map.of("firstName", recipient.firstName(), "name", recipient.name(),
+                "email", recipient.email(), "score", Integer.toString(recipient.score()), "deadline", "2026-10-27"));
+    }
+}
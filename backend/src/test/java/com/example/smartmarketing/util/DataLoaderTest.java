@@ -0,0 +1,94 @@
+package com.example.smartmarketing.util;
+
+import com.example.smartmarketing.config.DataProperties;
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DataLoaderTest {
+
+    @TempDir
+    Path directory;
+
+    private final AssistantMetrics metrics = new AssistantMetrics(new SimpleMeterRegistry());
+    private DataLoader loader;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (loader != null) {
+            loader.close();
+        }
+    }
+
+    @Test
+    void classpathFilesAreParsedOnceIntoOneSnapshot() throws Exception {
+        loader = new DataLoader(new DataProperties("", false, 250), metrics);
+
+        DataSnapshot snapshot = loader.snapshot();
+        assertSame(snapshot, loader.snapshot());
+        assertEquals(1, snapshot.version());
+        assertFalse(snapshot.thinkingSteps("segment").isEmpty());
+        assertEquals(snapshot.emailTemplate(), loader.loadText("email-template.html"));
+    }
+
+    @Test
+    void externalFilesOverrideTheClasspathCopies() throws Exception {
+        journeyPlan("Custom plan");
+        loader = new DataLoader(new DataProperties(directory.toString(), false, 250), metrics);
+
+        assertEquals("Custom plan", loader.snapshot().journey().plan());
+        // Files missing from the directory still come from the classpath
+        assertFalse(loader.snapshot().thinkingSteps("segment").isEmpty());
+    }
+
+    @Test
+    void editsSwapInANewSnapshotAndABrokenEditKeepsTheLastGoodOne() throws Exception {
+        journeyPlan("First plan");
+        loader = new DataLoader(new DataProperties(directory.toString(), true, 100), metrics);
+        List<DataSnapshot> reloaded = new CopyOnWriteArrayList<>();
+        loader.addReloadListener(reloaded::add);
+
+        journeyPlan("Second plan");
+        waitFor(() -> !reloaded.isEmpty());
+        DataSnapshot second = loader.snapshot();
+        assertEquals("Second plan", second.journey().plan());
+        assertTrue(second.version() > 1);
+        assertSame(second, reloaded.get(reloaded.size() - 1));
+
+        Files.writeString(directory.resolve("journey-plan.json"), "{\"plan\": ");
+        Thread.sleep(500);
+        assertSame(second, loader.snapshot());
+
+        journeyPlan("Third plan");
+        waitFor(() -> "Third plan".equals(loader.snapshot().journey().plan()));
+        assertTrue(loader.snapshot().version() > second.version());
+    }
+
+    private void journeyPlan(String plan) throws IOException {
+        Files.writeString(directory.resolve("journey-plan.json"),
+                "{\"plan\": \"" + plan + "\", \"scheduleHint\": \"Tuesday 10:00\"}");
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not reached");
+            Thread.sleep(10);
+        }
+    }
+}
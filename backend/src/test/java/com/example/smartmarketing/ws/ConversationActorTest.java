@@ -0,0 +1,174 @@
+package com.example.smartmarketing.ws;
+
+import com.example.smartmarketing.config.AdmissionProperties;
+import com.example.smartmarketing.config.ConversationExecutorProperties;
+import com.example.smartmarketing.config.TimelineProperties;
+import com.example.smartmarketing.exec.AdmissionController;
+import com.example.smartmarketing.exec.ConversationExecutor;
+import com.example.smartmarketing.exec.Timeline;
+import com.example.smartmarketing.exec.TimelineScheduler;
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ConversationActorTest {
+
+    /**
+     * One stage built by the actor: it waits on {@code thinking}, then its final step advances the
+     * conversation and blocks until {@code finish} is counted down.
+     */
+    private record Stage(String intent, ConversationStage stage, CompletableFuture<Void> thinking,
+                         CountDownLatch finalStepStarted, CountDownLatch finish, CompletableFuture<Void> sent) {
+    }
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<Stage> stages = new CopyOnWriteArrayList<>();
+    private ConversationExecutor executor;
+    private TimelineScheduler scheduler;
+    private AdmissionController admission;
+    private ConversationActor actor;
+
+    @BeforeEach
+    void setUp() {
+        AssistantMetrics metrics = new AssistantMetrics(registry);
+        executor = new ConversationExecutor(new ConversationExecutorProperties(
+                ConversationExecutorProperties.Mode.PLATFORM, 8, 100));
+        scheduler = new TimelineScheduler(new TimelineProperties(1, false), executor);
+        admission = new AdmissionController(
+                new AdmissionProperties(true, 100, 10, 1, 10, 2_000, 1_000, false, 1.5), scheduler, metrics);
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("session");
+        actor = new ConversationActor(session, scheduler, executor, admission, this::stage, metrics);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        stages.forEach(stage -> {
+            stage.thinking().complete(null);
+            stage.finish().countDown();
+        });
+        scheduler.shutdown();
+        executor.shutdown();
+    }
+
+    @Test
+    void newIntentPreemptsRunningStageAndRerunsIt() throws Exception {
+        actor.submit("inactive VIPs", System.nanoTime());
+        Stage first = awaitStage(0);
+
+        actor.submit("active VIPs", System.nanoTime());
+        Stage second = awaitStage(1);
+
+        // The cancelled stage never reaches its result
+        first.thinking().complete(null);
+        assertFalse(first.finalStepStarted().await(100, TimeUnit.MILLISECONDS));
+        assertEquals(ConversationStage.SEGMENT, second.stage());
+        assertEquals("active VIPs", second.intent());
+        assertEquals(1.0, registry.counter("assistant.stages.preempted").count());
+    }
+
+    @Test
+    void repeatedIntentIsCoalesced() throws Exception {
+        actor.submit("inactive VIPs", System.nanoTime());
+        Stage first = awaitStage(0);
+
+        actor.submit("inactive VIPs", System.nanoTime());
+        first.thinking().complete(null);
+        first.finish().countDown();
+        first.sent().get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, stages.size());
+        assertEquals(1.0, registry.counter("assistant.intents.coalesced").count());
+    }
+
+    @Test
+    void intentDuringFinalStepWaitsForTheResultInsteadOfCancellingIt() throws Exception {
+        actor.submit("inactive VIPs", System.nanoTime());
+        Stage first = awaitStage(0);
+        first.thinking().complete(null);
+        assertTrue(first.finalStepStarted().await(5, TimeUnit.SECONDS));
+
+        // The client answers before the final step has returned
+        actor.submit("inactive VIPs", System.nanoTime());
+        assertEquals(1, stages.size());
+        first.finish().countDown();
+
+        first.sent().get(5, TimeUnit.SECONDS);
+        Stage second = awaitStage(1);
+        assertEquals(ConversationStage.EMAIL, second.stage());
+        assertEquals(0.0, registry.counter("assistant.stages.preempted").count());
+    }
+
+    @Test
+    void burstWhileCancelledStageWindsDownRunsOnlyTheLatest() throws Exception {
+        actor.submit("first", System.nanoTime());
+        Stage first = awaitStage(0);
+        first.thinking().complete(null);
+        assertTrue(first.finalStepStarted().await(5, TimeUnit.SECONDS));
+
+        actor.submit("second", System.nanoTime());
+        actor.submit("third", System.nanoTime());
+        assertFalse(first.sent().isDone());
+        first.finish().countDown();
+
+        Stage next = awaitStage(1);
+        assertEquals("third", next.intent());
+        Thread.sleep(100);
+        assertEquals(2, stages.size());
+        assertEquals(1.0, registry.counter("assistant.intents.coalesced").count());
+    }
+
+    @Test
+    void admissionSlotIsGivenBackOnceTheWorkIsDone() throws Exception {
+        actor.submit("inactive VIPs", System.nanoTime());
+        Stage first = awaitStage(0);
+        assertEquals(1, admission.inFlightStages());
+
+        first.thinking().complete(null);
+        assertTrue(first.finalStepStarted().await(5, TimeUnit.SECONDS));
+        // The result is still being sent, but that holds no slot
+        assertEquals(0, admission.inFlightStages());
+        first.finish().countDown();
+        first.sent().get(5, TimeUnit.SECONDS);
+    }
+
+    private Timeline stage(ConversationActor owner, String intent, ConversationStage stage, Runnable workDone) {
+        Stage built = new Stage(intent, stage, new CompletableFuture<>(), new CountDownLatch(1),
+                new CountDownLatch(1), new CompletableFuture<>());
+        stages.add(built);
+        ConversationStage next = ConversationStage.values()[(stage.ordinal() + 1) % ConversationStage.values().length];
+        return Timeline.builder()
+                .thenAwait(() -> built.thinking().thenRun(workDone))
+                .then(() -> {
+                    owner.advanceTo(next);
+                    built.finalStepStarted().countDown();
+                    built.finish().await(5, TimeUnit.SECONDS);
+                    built.sent().complete(null);
+                })
+                .build();
+    }
+
+    private Stage awaitStage(int index) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (stages.size() <= index && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(stages.size() > index, "stage " + index + " was never started");
+        return stages.get(index);
+    }
+}
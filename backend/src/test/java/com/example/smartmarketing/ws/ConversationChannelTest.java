@@ -0,0 +1,97 @@
+package com.example.smartmarketing.ws;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class ConversationChannelTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private WebSocketSession first;
+    private WebSocketSession second;
+    private ConversationChannel channel;
+
+    @BeforeEach
+    void setUp() {
+        first = mock(WebSocketSession.class);
+        second = mock(WebSocketSession.class);
+        channel = new ConversationChannel(first, "first");
+        channel.enableReplay(3, 10_000);
+    }
+
+    @Test
+    void reconnectReplaysTheFramesAfterTheLastSeenOne() throws Exception {
+        send(1, 2);
+        long epoch = channel.detach("first");
+        send(3, 4);
+        assertTrue(channel.detachedSince(epoch));
+
+        assertFalse(channel.missedSince(2));
+        assertEquals(2, channel.attach(second, "second", 2));
+        send(5);
+
+        assertEquals(List.of(1L, 2L), seqs(first));
+        assertEquals(List.of(3L, 4L, 5L), seqs(second));
+        assertFalse(channel.detachedSince(epoch));
+    }
+
+    @Test
+    void framesDroppedOutOfTheLogAreReportedAsAGap() throws Exception {
+        send(1);
+        channel.detach("first");
+        // Only the last three frames are kept: 2 is gone
+        send(2, 3, 4, 5);
+
+        assertTrue(channel.missedSince(1));
+        assertFalse(channel.missedSince(2));
+        assertFalse(channel.missedSince(5));
+        assertEquals(3, channel.attach(second, "second", 1));
+        assertEquals(List.of(3L, 4L, 5L), seqs(second));
+    }
+
+    @Test
+    void failedSendToAConnectionGoingAwayKeepsTheFrameForReplay() throws Exception {
+        doThrow(new IOException("closed")).when(first).sendMessage(any());
+        send(1);
+
+        assertEquals(1, channel.attach(second, "second", 0));
+        assertEquals(List.of(1L), seqs(second));
+        // A late detach of the old connection leaves the new one attached
+        assertEquals(-1, channel.detach("first"));
+    }
+
+    private void send(int... steps) throws IOException {
+        for (int step : steps) {
+            channel.sendMessage(new TextMessage("{\"type\":\"thinking\",\"step\":" + step + "}"));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Long> seqs(WebSocketSession session) throws Exception {
+        ArgumentCaptor<WebSocketMessage<?>> sent = ArgumentCaptor.forClass((Class) WebSocketMessage.class);
+        verify(session, atLeastOnce()).sendMessage(sent.capture());
+        List<Long> seqs = new ArrayList<>();
+        for (WebSocketMessage<?> message : sent.getAllValues()) {
+            seqs.add(MAPPER.readTree(((TextMessage) message).getPayload()).path("seq").asLong());
+        }
+        return seqs;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.smartmarketing.ws;
+
+import com.example.smartmarketing.config.CompressionProperties;
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EncodingSessionTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String LARGE = "{\"type\":\"state_update\",\"state\":{\"emailHtml\":\""
+            + "<p>Hello VIP customer, here is your offer.</p>".repeat(8) + "\",\"count\":42,\"rate\":0.25}}";
+    private static final String SMALL = "{\"type\":\"thinking\",\"step\":1}";
+
+    private WebSocketSession delegate;
+    private EncodingSession session;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(WebSocketSession.class);
+        session = new EncodingSession(delegate, new CompressionProperties(true, 128, 6),
+                ThreadLocal.withInitial(() -> new Deflater(6, true)), new AssistantMetrics(new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void cborSessionSendsLargeFramesAsTheSameDocumentInCbor() throws Exception {
+        assertSame(EncodingSession.Encoding.CBOR, session.negotiate("cbor"));
+
+        session.sendMessage(new TextMessage(LARGE));
+        session.sendMessage(new TextMessage(SMALL));
+
+        List<WebSocketMessage<?>> sent = sent(2);
+        BinaryMessage binary = assertInstanceOf(BinaryMessage.class, sent.get(0));
+        assertEquals(MAPPER.readTree(LARGE), new CBORMapper().readTree(bytes(binary)));
+        assertEquals(SMALL, assertInstanceOf(TextMessage.class, sent.get(1)).getPayload());
+    }
+
+    @Test
+    void deflateSessionSendsLargeFramesAsRawDeflate() throws Exception {
+        assertSame(EncodingSession.Encoding.DEFLATE, session.negotiate("deflate"));
+
+        session.sendMessage(new TextMessage(LARGE));
+
+        BinaryMessage binary = assertInstanceOf(BinaryMessage.class, sent(1).get(0));
+        assertArrayEquals(LARGE.getBytes(), inflate(bytes(binary)));
+    }
+
+    @Test
+    void unknownEncodingsAndDeflateOverPermessageDeflateStayText() throws Exception {
+        when(delegate.getExtensions()).thenReturn(List.of(new WebSocketExtension("permessage-deflate")));
+
+        assertNull(session.negotiate("smile"));
+        assertNull(session.negotiate("deflate"));
+        session.sendMessage(new TextMessage(LARGE));
+        assertInstanceOf(TextMessage.class, sent(1).get(0));
+
+        // CBOR is not a compression, so it still applies on top of the extension
+        assertSame(EncodingSession.Encoding.CBOR, session.negotiate("cbor"));
+    }
+
+    private List<WebSocketMessage<?>> sent(int frames) throws Exception {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<WebSocketMessage<?>> captor = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(delegate, times(frames)).sendMessage(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private static byte[] bytes(BinaryMessage message) {
+        byte[] bytes = new byte[message.getPayloadLength()];
+        message.getPayload().get(bytes);
+        return bytes;
+    }
+
+    private static byte[] inflate(byte[] deflated) throws Exception {
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(deflated);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        while (!inflater.finished()) {
+            out.write(buffer, 0, inflater.inflate(buffer));
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.smartmarketing.ws;
+
+import com.example.smartmarketing.util.DataSnapshot;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class OutboundFramesTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    void constantsCarryTheirUtf8BytesAndAreNotReencoded() throws Exception {
+        TextMessage done = OutboundFrames.DEPLOYMENT_DONE;
+
+        assertSame(done.asBytes(), done.asBytes());
+        assertArrayEquals(done.getPayload().getBytes(StandardCharsets.UTF_8), done.asBytes());
+        JsonNode frame = MAPPER.readTree(done.asBytes());
+        assertEquals("assistant_message", frame.path("type").asText());
+        assertEquals("✅", frame.path("message").asText().substring(0, 1));
+    }
+
+    @Test
+    void snapshotFramesAreSharedUntilTheSnapshotChanges() throws Exception {
+        OutboundFrames first = OutboundFrames.forSnapshot(snapshot(-1));
+
+        assertSame(first, OutboundFrames.forSnapshot(snapshot(-1)));
+        assertEquals("{\"type\":\"stage_start\",\"stage\":\"email\"}", first.stageStart("email").getPayload());
+        assertEquals("{\"type\":\"thinking\",\"step\":\"Reading the brief…\"}",
+                first.thinking("segment").get(0).getPayload());
+        assertEquals(List.of(), first.thinking("journey"));
+
+        OutboundFrames reloaded = OutboundFrames.forSnapshot(snapshot(-2));
+        assertNotSame(first, reloaded);
+        assertSame(reloaded.stageStart("email"), OutboundFrames.forSnapshot(snapshot(-2)).stageStart("email"));
+    }
+
+    /**
+     * A snapshot with a version the DataLoader never hands out, so frames cached by other tests do not match.
+     */
+    private static DataSnapshot snapshot(long version) {
+        return new DataSnapshot(version, Instant.EPOCH, null, null, null, null, null, null,
+                Map.of("segment", List.of(new DataSnapshot.ThinkingStep("Reading the brief…", 200))));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.smartmarketing.ws;
+
+import com.example.smartmarketing.config.OutboundProperties;
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class OutboundSessionTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private final CountDownLatch blocked = new CountDownLatch(1);
+    private WebSocketSession delegate;
+    private SendWatchdog watchdog;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        delegate = mock(WebSocketSession.class);
+        // The first frame blocks until released, like a send to a client that stopped reading
+        doAnswer(invocation -> {
+            blocked.countDown();
+            unblock.await(5, TimeUnit.SECONDS);
+            return null;
+        }).doNothing().when(delegate).sendMessage(any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        unblock.countDown();
+        if (watchdog != null) {
+            watchdog.shutdown();
+        }
+    }
+
+    @Test
+    void stuckSendIsClosedWithoutAnotherFrameQueued() throws Exception {
+        OutboundSession session = session(100);
+        Thread sender = new Thread(() -> send(session, "{\"type\":\"thinking\",\"step\":\"Reading\"}"));
+        sender.start();
+        assertTrue(blocked.await(2, TimeUnit.SECONDS));
+
+        verify(delegate, timeout(2_000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(1.0, registry.counter("assistant.outbound.slow_sessions_closed").count());
+        unblock.countDown();
+        sender.join(2_000);
+    }
+
+    @Test
+    void onlyDeploymentProgressIsCoalescedWhileTheClientLags() throws Exception {
+        OutboundSession session = session(10_000);
+        Thread sender = new Thread(() -> send(session, "{\"type\":\"stage_start\",\"stage\":\"deployment\"}"));
+        sender.start();
+        assertTrue(blocked.await(2, TimeUnit.SECONDS));
+
+        session.sendMessage(new TextMessage("{\"type\":\"thinking\",\"step\":\"one\"}"));
+        session.sendMessage(new TextMessage("{\"type\":\"deployment_progress\",\"progress\":{\"successCount\":1}}"));
+        session.sendMessage(new TextMessage("{\"type\":\"thinking\",\"step\":\"two\"}"));
+        session.sendMessage(new TextMessage("{\"type\":\"deployment_progress\",\"progress\":{\"successCount\":2}}"));
+        unblock.countDown();
+        sender.join(2_000);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<WebSocketMessage<?>> sent = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(delegate, times(4)).sendMessage(sent.capture());
+        assertEquals(List.of(
+                "{\"type\":\"stage_start\",\"stage\":\"deployment\"}",
+                "{\"type\":\"thinking\",\"step\":\"one\"}",
+                "{\"type\":\"thinking\",\"step\":\"two\"}",
+                "{\"type\":\"deployment_progress\",\"progress\":{\"successCount\":2}}"),
+                sent.getAllValues().stream().map(WebSocketMessage::getPayload).toList());
+        verify(delegate, never()).close(any());
+    }
+
+    private OutboundSession session(long sendTimeLimitMs) {
+        watchdog = new SendWatchdog(sendTimeLimitMs);
+        return new OutboundSession(delegate, new OutboundProperties(sendTimeLimitMs, 524_288,
+                List.of("deployment_progress")), watchdog, new AssistantMetrics(registry));
+    }
+
+    private static void send(OutboundSession session, String frame) {
+        try {
+            session.sendMessage(new TextMessage(frame));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
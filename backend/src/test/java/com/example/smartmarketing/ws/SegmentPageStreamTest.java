@@ -0,0 +1,95 @@
+package com.example.smartmarketing.ws;
+
+import com.example.smartmarketing.config.CustomerStoreProperties;
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import com.example.smartmarketing.segment.CustomerStore;
+import com.example.smartmarketing.segment.SegmentEvaluator;
+import com.example.smartmarketing.segment.SegmentFilter;
+import com.example.smartmarketing.segment.SegmentMatch;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class SegmentPageStreamTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final CustomerStore STORE = new CustomerStore(new CustomerStoreProperties(1_000, 42));
+
+    private WebSocketSession session;
+    private AssistantMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        session = mock(WebSocketSession.class);
+        metrics = new AssistantMetrics(new SimpleMeterRegistry());
+    }
+
+    @Test
+    void sendsOnePagePerCreditUntilTheLastPage() throws Exception {
+        SegmentMatch match = new SegmentEvaluator(STORE).evaluate(SegmentFilter.ALL);
+        SegmentPageStream stream = stream(() -> match, 400);
+
+        stream.grant(2);
+        assertFalse(stream.isClosed());
+        stream.grant(5);
+
+        List<JsonNode> pages = sentPages();
+        assertEquals(3, pages.size());
+        assertEquals(800, pages.get(2).get("offset").asInt());
+        assertEquals(match.count() - 800, pages.get(2).get("users").size());
+        assertTrue(pages.get(2).get("last").asBoolean());
+        assertTrue(stream.isClosed());
+    }
+
+    @Test
+    void aFailedStreamEndsWithAnErrorPage() throws Exception {
+        SegmentPageStream stream = stream(() -> {
+            throw new IllegalStateException("store unavailable");
+        }, 400);
+
+        stream.grant(1);
+
+        List<JsonNode> pages = sentPages();
+        assertEquals(1, pages.size());
+        JsonNode page = pages.get(0);
+        assertEquals(0, page.get("page").asInt());
+        assertEquals(0, page.get("users").size());
+        assertTrue(page.get("last").asBoolean());
+        assertTrue(page.hasNonNull("error"));
+        assertTrue(stream.isClosed());
+    }
+
+    private SegmentPageStream stream(Supplier<SegmentMatch> segment, int pageSize) {
+        // Pumps run on the caller's thread
+        return new SegmentPageStream(session, segment, STORE, new StateFrameWriter(MAPPER), Runnable::run,
+                metrics, pageSize, 8);
+    }
+
+    private List<JsonNode> sentPages() throws Exception {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<WebSocketMessage<?>> sent = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(session, atLeastOnce()).sendMessage(sent.capture());
+        List<JsonNode> pages = new ArrayList<>();
+        for (WebSocketMessage<?> message : sent.getAllValues()) {
+            pages.add(MAPPER.readTree(((TextMessage) message).getPayload()));
+        }
+        return pages;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.smartmarketing.ws;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class SessionStateTrackerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final MockStateUpdate SEGMENT = new MockStateUpdate("Inactive VIPs",
+            List.of(new MockSegmentUser("C-1", "Ada", "ada@example.com", 97),
+                    new MockSegmentUser("C-2", "Bob", "bob@example.com", 91)),
+            2, null, null, null, null, "segment");
+    private static final MockStateUpdate EMAIL =
+            new MockStateUpdate(null, null, null, "<p>Hi {{firstName}}</p>", null, null, null, "email");
+    private static final MockStateUpdate RESCORED = new MockStateUpdate("Inactive VIPs",
+            List.of(new MockSegmentUser("C-1", "Ada", "ada@example.com", 97),
+                    new MockSegmentUser("C-2", "Bob", "bob@example.com", 93)),
+            2, null, null, null, null, "segment");
+    private static final MockStateUpdate ANALYTICS = analytics(1200, 4.5,
+            new MockBottleneck("click", 0.62, List.of("Weak subject line"), List.of("A/B test the subject")));
+    private static final MockStateUpdate ANALYTICS_RECOVERED = analytics(1204, null, null);
+
+    private WebSocketSession session;
+    private SessionStateTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        session = mock(WebSocketSession.class);
+        tracker = new SessionStateTracker(MAPPER, new StateFrameWriter(MAPPER));
+    }
+
+    @Test
+    void plainClientsGetThePreEncodedFrameAndCheckpointsMergeEveryUpdate() throws Exception {
+        TextMessage encoded = new StateFrameWriter(MAPPER).stateUpdate(SEGMENT);
+        tracker.send(session, SEGMENT, encoded);
+        tracker.send(session, EMAIL);
+
+        ArgumentCaptor<WebSocketMessage<?>> sent = sentMessages(2);
+        assertSame(encoded, sent.getAllValues().get(0));
+
+        ObjectNode expected = (ObjectNode) SEGMENT.toStateNode(MAPPER);
+        expected.setAll((ObjectNode) EMAIL.toStateNode(MAPPER));
+        assertEquals(expected, tracker.snapshot());
+    }
+
+    @Test
+    void enablingPatchesAfterPlainUpdatesSyncsTheMergedState() throws Exception {
+        tracker.send(session, SEGMENT);
+        tracker.enablePatches(session);
+
+        JsonNode sync = MAPPER.readTree(lastPayload(2));
+        assertEquals("state_sync", sync.path("type").asText());
+        assertEquals(SEGMENT.toStateNode(MAPPER), sync.path("state"));
+    }
+
+    @Test
+    void patchesAppliedInOrderRebuildTheMergedState() throws Exception {
+        tracker.enablePatches(session);
+        ObjectNode client = MAPPER.createObjectNode();
+        List<MockStateUpdate> updates = List.of(SEGMENT, RESCORED, EMAIL, ANALYTICS, ANALYTICS_RECOVERED);
+        for (int i = 0; i < updates.size(); i++) {
+            tracker.send(session, updates.get(i));
+
+            JsonNode patch = MAPPER.readTree(lastPayload(i + 1));
+            assertEquals("state_patch", patch.path("type").asText());
+            assertEquals(i + 1, patch.path("version").asLong());
+            apply(client, patch.path("ops"));
+            assertEquals(tracker.snapshot(), client);
+        }
+    }
+
+    @Test
+    void smallChangesBecomeFineGrainedOps() throws Exception {
+        tracker.enablePatches(session);
+        tracker.send(session, SEGMENT);
+        tracker.send(session, RESCORED);
+
+        JsonNode patch = MAPPER.readTree(lastPayload(2));
+        assertEquals(MAPPER.readTree("[\"segmentSuggestion\",\"segmentResult\",\"segmentTotalMatched\",\"conversationStep\"]"),
+                patch.path("fields"));
+        assertEquals(MAPPER.readTree("[{\"op\":\"replace\",\"path\":\"/segmentResult/1/score\",\"value\":93}]"),
+                patch.path("ops"));
+    }
+
+    @Test
+    void removedNestedFieldsBecomeRemoveOps() throws Exception {
+        tracker.enablePatches(session);
+        tracker.send(session, ANALYTICS);
+        tracker.send(session, ANALYTICS_RECOVERED);
+
+        JsonNode ops = MAPPER.readTree(lastPayload(2)).path("ops");
+        List<String> removed = new ArrayList<>();
+        for (JsonNode op : ops) {
+            if (op.path("op").asText().equals("remove")) {
+                removed.add(op.path("path").asText());
+            }
+        }
+        assertEquals(List.of("/analyticsData/funnelStages/1/change", "/analyticsData/bottleneck"), removed);
+    }
+
+    private static MockStateUpdate analytics(int clicks, Double clickChange, MockBottleneck bottleneck) {
+        List<MockFunnelStage> stages = List.of(
+                new MockFunnelStage("Impressions", 10_000, 100.0, null),
+                new MockFunnelStage("Clicks", clicks, clicks / 100.0, clickChange),
+                new MockFunnelStage("Leads", 300, 3.0, null));
+        return new MockStateUpdate(null, null, null, null, null, null,
+                new MockAnalyticsData(stages, 10_000, 300, 3.0, bottleneck), "analytics");
+    }
+
+    /**
+     * The client's side of a state_patch: JSON-Patch add, replace and remove.
+     */
+    private static void apply(ObjectNode target, JsonNode ops) {
+        for (JsonNode op : ops) {
+            JsonPointer path = JsonPointer.compile(op.path("path").asText());
+            JsonNode parent = target.at(path.head());
+            JsonPointer last = path.last();
+            String kind = op.path("op").asText();
+            if (parent.isArray()) {
+                ArrayNode array = (ArrayNode) parent;
+                int index = last.getMatchingIndex();
+                switch (kind) {
+                    case "add" -> array.insert(index, op.get("value"));
+                    case "replace" -> array.set(index, op.get("value"));
+                    default -> array.remove(index);
+                }
+            } else {
+                ObjectNode object = (ObjectNode) parent;
+                if (kind.equals("remove")) {
+                    object.remove(last.getMatchingProperty());
+                } else {
+                    object.set(last.getMatchingProperty(), op.get("value"));
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArgumentCaptor<WebSocketMessage<?>> sentMessages(int count) throws Exception {
+        ArgumentCaptor<WebSocketMessage<?>> captor = ArgumentCaptor.forClass((Class) WebSocketMessage.class);
+        verify(session, atLeastOnce()).sendMessage(captor.capture());
+        assertEquals(count, captor.getAllValues().size());
+        return captor;
+    }
+
+    private String lastPayload(int count) throws Exception {
+        List<WebSocketMessage<?>> sent = sentMessages(count).getAllValues();
+        return ((TextMessage) sent.get(sent.size() - 1)).getPayload();
+    }
+}
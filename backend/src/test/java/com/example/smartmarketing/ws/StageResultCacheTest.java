@@ -0,0 +1,81 @@
+package com.example.smartmarketing.ws;
+
+import com.example.smartmarketing.config.ResultCacheProperties;
+import com.example.smartmarketing.metrics.AssistantMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class StageResultCacheTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final StageResultCache cache = new StageResultCache(new StateFrameWriter(new ObjectMapper()),
+            new ResultCacheProperties(true, 4_194_304, 300_000, false), new AssistantMetrics(registry));
+    private final AtomicInteger builds = new AtomicInteger();
+
+    @Test
+    void normalizeTrimsAndCollapsesWhitespace() {
+        assertEquals("Target inactive VIPs", StageResultCache.normalize("  Target\tinactive \n VIPs "));
+    }
+
+    @Test
+    void intentsDifferingInSpacingShareTheResultBuiltFromTheFirstIntentAsTyped() {
+        String typed = "Target  inactive VIPs ";
+
+        StageResultCache.Result first = segment(typed, 1);
+        StageResultCache.Result second = segment("Target inactive VIPs", 1);
+
+        assertSame(first, second);
+        assertEquals(1, builds.get());
+        assertEquals("Derived from intent \"" + typed + "\"", first.update().segmentSuggestion());
+        assertEquals(first.frame().getPayload(), new StateFrameWriter(new ObjectMapper())
+                .stateUpdate(first.update()).getPayload());
+    }
+
+    @Test
+    void newSnapshotVersionRebuilds() {
+        StageResultCache.Result first = segment("Target inactive VIPs", 1);
+
+        assertNotSame(first, segment("Target inactive VIPs", 2));
+        assertEquals(2, builds.get());
+    }
+
+    @Test
+    void prefetchedResultIsServedToTheStageWithoutABuild() throws Exception {
+        // The previous stage warms the cache in the background while the client reads its result
+        CompletableFuture.runAsync(() -> segment("Target inactive VIPs", 1)).get(2, TimeUnit.SECONDS);
+
+        segment("Target inactive VIPs", 1);
+
+        assertEquals(1, builds.get());
+        assertEquals(1, registry.get("assistant.result_cache.hits").counter().count());
+    }
+
+    @Test
+    void encodedResultsAreNotCached() {
+        MockStateUpdate update = new MockStateUpdate(null, null, null, null, null, null, null, "analytics");
+
+        StageResultCache.Result encoded = cache.encode(update);
+
+        assertSame(update, encoded.update());
+        assertEquals(new StateFrameWriter(new ObjectMapper()).stateUpdate(update).getPayload(),
+                encoded.frame().getPayload());
+        assertEquals(0, registry.get("assistant.result_cache.hits").counter().count());
+    }
+
+    private StageResultCache.Result segment(String intent, long snapshotVersion) {
+        return cache.get(ConversationStage.SEGMENT, StageResultCache.normalize(intent), snapshotVersion, () -> {
+            builds.incrementAndGet();
+            return new MockStateUpdate("Derived from intent \"" + intent + "\"", null, null, null, null, null,
+                    null, "segment");
+        });
+    }
+}
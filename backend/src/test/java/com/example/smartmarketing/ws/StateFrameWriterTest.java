@@ -0,0 +1,76 @@
+package com.example.smartmarketing.ws;
+
+import com.example.smartmarketing.util.DataSnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The streamed state_update frames must match the tree serialization they replaced: byte for byte, except that
+ * emoji are escaped.
+ */
+class StateFrameWriterTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static HandlerFixture fixture;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        fixture = new HandlerFixture();
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Test
+    void stateUpdateMatchesTreeSerializationForEveryStageResult() throws Exception {
+        DataSnapshot data = fixture.dataLoader.snapshot();
+        MarketingAssistantHandler.MockStateFactory factory = fixture.handler.stateFactory();
+        List<MockStateUpdate> updates = List.of(
+                factory.segmentFromIntent(data, "Re-engage inactive VIPs"),
+                factory.emailFromIntent(data, "Make it \"urgent\" ✨"),
+                factory.journeyFromIntent(data, "3 touches over 2 weeks"),
+                factory.analyticsFromIntent(data, "How did it do?"),
+                OutboundFrames.DEPLOYMENT_COMPLETE_UPDATE,
+                new MockStateUpdate(null, null, null, null, null, null, null, null));
+
+        StateFrameWriter writer = new StateFrameWriter(MAPPER);
+        for (MockStateUpdate update : updates) {
+            String frame = writer.stateUpdate(update).getPayload();
+            assertEquals(MAPPER.readTree(treeFrame(update)), MAPPER.readTree(frame), update.conversationStep());
+            assertEquals(treeFrame(update).length(), frame.length() - 5 * surrogates(frame), update.conversationStep());
+        }
+    }
+
+    @Test
+    void deploymentCompleteFrameMatchesItsState() throws Exception {
+        assertEquals(treeFrame(OutboundFrames.DEPLOYMENT_COMPLETE_UPDATE),
+                OutboundFrames.DEPLOYMENT_COMPLETE_STATE.getPayload());
+    }
+
+    /**
+     * Characters escaped as {@code \\uXXXX}, six characters where the tree wrote one.
+     */
+    private static int surrogates(String frame) {
+        int count = 0;
+        for (int at = frame.indexOf("\\uD"); at >= 0; at = frame.indexOf("\\uD", at + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static String treeFrame(MockStateUpdate update) throws Exception {
+        var root = MAPPER.createObjectNode();
+        root.put("type", "state_update");
+        root.set("state", update.toStateNode(MAPPER));
+        return MAPPER.writeValueAsString(root);
+    }
+}
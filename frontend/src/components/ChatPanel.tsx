@@ -1,4 +1,4 @@
-import { useEffect, useRef, useState } from "react";
+import { useCallback, useEffect, useRef, useState } from "react";
 import { AssistantMessage, MarketingState } from "../types";
 import { useMarketingSocket } from "../hooks/useMarketingSocket";
 import { MessageBubble } from "./MessageBubble";
@@ -25,7 +25,22 @@ export function ChatPanel({ state, onStateChange }: Props) {
   const viewportRef = useRef<HTMLDivElement | null>(null);
   const lastPayloadIdRef = useRef<string>("");
 
-  const { status, sendMessage, lastPayload } = useMarketingSocket();
+  const { status, sendMessage, lastPayload, exportSegment } = useMarketingSocket();
+
+  const downloadSegment = useCallback(() => {
+    exportSegment()
+      .then((csv) => {
+        const url = URL.createObjectURL(csv);
+        const link = document.createElement("a");
+        link.href = url;
+        link.download = "segment.csv";
+        link.click();
+        URL.revokeObjectURL(url);
+      })
+      .catch(() => {
+        // Connection dropped mid-export; the user can start it again.
+      });
+  }, [exportSegment]);
 
   const currentStep = state.conversationStep ?? "segment";
 
@@ -115,6 +130,19 @@ export function ChatPanel({ state, onStateChange }: Props) {
       });
     }
 
+    if (lastPayload.type === "busy") {
+      // The intent was not run: drop its thinking steps and tell the user when to send it again
+      const seconds = Math.ceil(lastPayload.retryAfterMs / 1000);
+      setMessages((prev) => [
+        ...prev.filter(m => m.role !== "thinking"),
+        {
+          role: "assistant",
+          content: `${lastPayload.message} (retry in about ${seconds}s)`,
+          timestamp: new Date().toISOString()
+        }
+      ]);
+    }
+
     if (lastPayload.type === "state_update") {
       const stateData = lastPayload.state;
       
@@ -274,7 +302,7 @@ export function ChatPanel({ state, onStateChange }: Props) {
           </div>
         )}
         {messages.map((msg, idx) => (
-          <MessageBubble key={`${msg.timestamp}-${idx}`} message={msg} />
+          <MessageBubble key={`${msg.timestamp}-${idx}`} message={msg} onExportSegment={downloadSegment} />
         ))}
       </div>
 
@@ -5,9 +5,10 @@ import { DeploymentProgress } from "./DeploymentProgress";
 
 interface Props {
   message: AssistantMessage;
+  onExportSegment?(): void;
 }
 
-export const MessageBubble = memo(function MessageBubble({ message }: Props) {
+export const MessageBubble = memo(function MessageBubble({ message, onExportSegment }: Props) {
   const { role, content, segmentData, emailData, journeyData, analyticsData, deploymentProgress, thinkingSteps, timestamp } = message;
 
   // Special rendering for deployment state
@@ -103,6 +104,11 @@ export const MessageBubble = memo(function MessageBubble({ message }: Props) {
               <div className="segment-crowd-header">
                 <span className="rich-icon">🏆</span>
                 Top {segmentData.result.length} Leads Preview
+                {onExportSegment && (
+                  <button className="segment-export-button" onClick={onExportSegment}>
+                    Export all {segmentData.totalMatched.toLocaleString()} (CSV)
+                  </button>
+                )}
               </div>
               <div className="segment-table">
                 <div className="segment-table-header">
@@ -1,24 +1,45 @@
-import { useEffect, useRef, useState } from "react";
+import { useCallback, useEffect, useRef, useState } from "react";
 import { SegmentUser, AnalyticsData, DeploymentProgress } from "../types";
 
+type ConversationState = {
+  segmentSuggestion?: string;
+  segmentResult?: SegmentUser[];
+  segmentTotalMatched?: number;
+  emailHtml?: string;
+  journeyPlan?: string;
+  scheduleHint?: string;
+  analyticsData?: AnalyticsData;
+  conversationStep?: "segment" | "email" | "journey" | "deployment" | "analytics";
+};
+
 type Payload =
-  | { type: "assistant_message"; message: string }
+  | { type: "assistant_message"; message: string; conversationId?: string }
+  | { type: "busy"; message: string; retryAfterMs: number }
   | { type: "thinking"; step: string }
   | { type: "stage_start"; stage: string }
   | { type: "deployment_progress"; progress: DeploymentProgress }
-  | {
-      type: "state_update";
-      state: {
-        segmentSuggestion?: string;
-        segmentResult?: SegmentUser[];
-        segmentTotalMatched?: number;
-        emailHtml?: string;
-        journeyPlan?: string;
-        scheduleHint?: string;
-        analyticsData?: AnalyticsData;
-        conversationStep?: "segment" | "email" | "journey" | "deployment" | "analytics";
-      };
-    };
+  | { type: "state_update"; state: ConversationState };
+
+type PatchOp = { op: "add" | "replace" | "remove"; path: string; value?: unknown };
+
+type SegmentPage = {
+  type: "segment_page";
+  page: number;
+  offset: number;
+  total: number;
+  users: SegmentUser[];
+  last: boolean;
+  // Set on the last page of a stream the server could not finish
+  error?: string;
+};
+
+// Frames consumed here and turned back into state_update payloads; seq numbers frames for replay
+type Frame = (
+  | Payload
+  | { type: "state_patch"; version: number; fields: (keyof ConversationState)[]; ops: PatchOp[] }
+  | { type: "state_sync"; version: number; state: ConversationState }
+  | SegmentPage
+) & { seq?: number };
 
 type Outgoing =
   | {
@@ -27,48 +48,196 @@ type Outgoing =
     }
   | {
       type: "ping";
+      encoding?: "deflate";
+      statePatches?: boolean;
+      conversationId?: string;
+      replay?: boolean;
+      lastSeq?: number;
+    }
+  | {
+      type: "resync";
+    }
+  | {
+      type: "segment_pages";
+      credits?: number;
+      cancel?: boolean;
     };
 
 type Status = "connecting" | "connected" | "disconnected";
 
+// Kept per tab so a reload or reconnect resumes the same conversation, on whichever backend node
+const CONVERSATION_KEY = "smart-marketing.conversationId";
+
+// Pages of the segment export requested ahead; one more is granted for every page received
+const SEGMENT_PAGE_CREDITS = 4;
+
+const RECONNECT_MIN_MS = 1000;
+const RECONNECT_MAX_MS = 10000;
+
+const csvField = (value: string | number) => {
+  const text = String(value);
+  return /[",\n]/.test(text) ? `"${text.replace(/"/g, '""')}"` : text;
+};
+
+// Large frames arrive as binary raw-DEFLATE JSON once the ping below asks for it; older browsers have
+// DecompressionStream without the "deflate-raw" format
+const supportsDeflate = (() => {
+  try {
+    new DecompressionStream("deflate-raw");
+    return true;
+  } catch {
+    return false;
+  }
+})();
+
+async function decodeFrame(data: string | ArrayBuffer): Promise<string> {
+  if (typeof data === "string") {
+    return data;
+  }
+  const stream = new Blob([data]).stream().pipeThrough(new DecompressionStream("deflate-raw"));
+  return new Response(stream).text();
+}
+
+// JSON-Patch ops on a copy, so state already handed to React is never mutated
+function applyPatch(state: ConversationState, ops: PatchOp[]): ConversationState {
+  const next = structuredClone(state) as Record<string, unknown>;
+  for (const { op, path, value } of ops) {
+    const keys = path
+      .split("/")
+      .slice(1)
+      .map((key) => key.replace(/~1/g, "/").replace(/~0/g, "~"));
+    const last = keys.pop() as string;
+    let target = next;
+    for (const key of keys) {
+      target = target[key] as Record<string, unknown>;
+    }
+    if (op === "remove") {
+      delete target[last];
+    } else {
+      target[last] = value;
+    }
+  }
+  return next as ConversationState;
+}
+
 export function useMarketingSocket() {
   const [status, setStatus] = useState<Status>("connecting");
   const [lastPayload, setLastPayload] = useState<Payload | null>(null);
   const socketRef = useRef<WebSocket | null>(null);
+  const segmentExportRef = useRef<{ onPage(page: SegmentPage): void; abort(): void } | null>(null);
 
   useEffect(() => {
     const wsUrl =
       (import.meta.env.VITE_WS_URL as string | undefined) ??
       "ws://localhost:8080/ws/assistant";
 
-    const socket = new WebSocket(wsUrl);
-    socketRef.current = socket;
-    setStatus("connecting");
+    // Decoding is async: chain frames so they are applied in arrival order
+    let decoded = Promise.resolve();
+    // The state this client holds, kept in step with the server through state_patch frames
+    let state: ConversationState = {};
+    let version = 0;
+    let awaitingSync = false;
+    // Last frame seen, so a reconnect only gets the frames it missed while the stage keeps running
+    let lastSeq: number | undefined;
+    let reconnectDelay = RECONNECT_MIN_MS;
+    let reconnectTimer: ReturnType<typeof setTimeout> | undefined;
+    let disposed = false;
 
-    socket.onopen = () => {
-      setStatus("connected");
-      socket.send(JSON.stringify({ type: "ping" }));
+    const reconcile = (frame: Frame): Payload | null => {
+      if (frame.type === "segment_page") {
+        segmentExportRef.current?.onPage(frame);
+        return null;
+      }
+      if (frame.seq !== undefined) {
+        lastSeq = frame.seq;
+      }
+      if (frame.type === "state_sync") {
+        state = frame.state;
+        version = frame.version;
+        awaitingSync = false;
+        // Only the step indicator follows a sync; the messages already shown stay as they are
+        return state.conversationStep
+          ? { type: "state_update", state: { conversationStep: state.conversationStep } }
+          : null;
+      }
+      if (frame.type === "assistant_message" && frame.conversationId) {
+        sessionStorage.setItem(CONVERSATION_KEY, frame.conversationId);
+      }
+      if (frame.type !== "state_patch") {
+        return frame;
+      }
+      if (awaitingSync || frame.version <= version) {
+        return null;
+      }
+      if (frame.version !== version + 1) {
+        awaitingSync = true;
+        socketRef.current?.send(JSON.stringify({ type: "resync" } satisfies Outgoing));
+        return null;
+      }
+      state = applyPatch(state, frame.ops);
+      version = frame.version;
+      const update: ConversationState = {};
+      for (const field of frame.fields) {
+        Object.assign(update, { [field]: state[field] });
+      }
+      return { type: "state_update", state: update };
     };
 
-    socket.onclose = () => {
-      setStatus("disconnected");
-    };
+    const connect = () => {
+      const socket = new WebSocket(wsUrl);
+      socket.binaryType = "arraybuffer";
+      socketRef.current = socket;
+      setStatus("connecting");
 
-    socket.onerror = () => {
-      setStatus("disconnected");
-    };
+      socket.onopen = () => {
+        setStatus("connected");
+        reconnectDelay = RECONNECT_MIN_MS;
+        const ping: Outgoing = {
+          type: "ping",
+          statePatches: true,
+          replay: true,
+          conversationId: sessionStorage.getItem(CONVERSATION_KEY) ?? undefined,
+          lastSeq,
+          encoding: supportsDeflate ? "deflate" : undefined,
+        };
+        socket.send(JSON.stringify(ping));
+      };
 
-    socket.onmessage = (event) => {
-      try {
-        const payload = JSON.parse(event.data) as Payload;
-        setLastPayload(payload);
-      } catch {
-        // For POC we simply ignore malformed data.
-      }
+      socket.onclose = () => {
+        setStatus("disconnected");
+        // The server drops a connection's segment stream with it
+        segmentExportRef.current?.abort();
+        if (!disposed) {
+          reconnectTimer = setTimeout(connect, reconnectDelay);
+          reconnectDelay = Math.min(reconnectDelay * 2, RECONNECT_MAX_MS);
+        }
+      };
+
+      socket.onerror = () => {
+        setStatus("disconnected");
+      };
+
+      socket.onmessage = (event) => {
+        decoded = decoded
+          .then(() => decodeFrame(event.data))
+          .then((text) => {
+            const payload = reconcile(JSON.parse(text) as Frame);
+            if (payload) {
+              setLastPayload(payload);
+            }
+          })
+          .catch(() => {
+            // For POC we simply ignore malformed data.
+          });
+      };
     };
 
+    connect();
+
     return () => {
-      socket.close();
+      disposed = true;
+      clearTimeout(reconnectTimer);
+      socketRef.current?.close();
     };
   }, []);
 
@@ -78,7 +247,55 @@ export function useMarketingSocket() {
     }
   };
 
-  return { status, lastPayload, sendMessage };
+  // Streams the full segment membership page by page into a CSV file
+  const exportSegment = useCallback(
+    () =>
+      new Promise<Blob>((resolve, reject) => {
+        const socket = socketRef.current;
+        if (!socket || socket.readyState !== WebSocket.OPEN) {
+          reject(new Error("Not connected"));
+          return;
+        }
+        const send = (msg: Outgoing) => socketRef.current?.send(JSON.stringify(msg));
+        if (segmentExportRef.current) {
+          segmentExportRef.current.abort();
+          send({ type: "segment_pages", cancel: true });
+        }
+        const rows = ["id,name,email,score\n"];
+        let nextPage = 0;
+        segmentExportRef.current = {
+          onPage(page) {
+            // A page of a cancelled export may still arrive before the new one starts
+            if (page.page !== nextPage) {
+              return;
+            }
+            nextPage++;
+            if (page.error) {
+              segmentExportRef.current = null;
+              reject(new Error(page.error));
+              return;
+            }
+            for (const user of page.users) {
+              rows.push([user.id, user.name, user.email, user.score].map(csvField).join(",") + "\n");
+            }
+            if (page.last) {
+              segmentExportRef.current = null;
+              resolve(new Blob(rows, { type: "text/csv" }));
+            } else {
+              send({ type: "segment_pages", credits: 1 });
+            }
+          },
+          abort() {
+            segmentExportRef.current = null;
+            reject(new Error("Segment export interrupted"));
+          },
+        };
+        send({ type: "segment_pages", credits: SEGMENT_PAGE_CREDITS });
+      }),
+    []
+  );
+
+  return { status, lastPayload, sendMessage, exportSegment };
 }
 
 